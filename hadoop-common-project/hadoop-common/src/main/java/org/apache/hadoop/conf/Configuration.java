@@ -159,13 +159,18 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         }
         this.classLoader=other.classLoader;
         this.loadDefaults=other.loadDefaults;
-        setQuietMode(other.getQuietMode());
+        this.quietmode=other.getQuietMode();
     }
+    /**
+     * Add a default resource and reload the configurations which load
+     * defaults. Frozen configurations are skipped: they keep the properties
+     * they were resolved from.
+     */
     public static synchronized void addDefaultResource(String name){
         if (!defaultResources.contains(name)) {
             defaultResources.add(name);
             for (Configuration conf : REGISTRY.keySet()) {
-                if (conf.loadDefaults) {
+                if (conf.loadDefaults && !(conf instanceof FrozenConfiguration)) {
                     conf.reloadConfiguration();
                 }
             }
@@ -297,6 +302,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
     }
 
     private synchronized void addResourceObject(Resource resource){
+        checkMutable();
         resources.add(resource);
         restrictSystemProps|=resource.isRestrictParser();
         loadProps(properties,resources.size()-1,false);
@@ -338,6 +344,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         }
     }
     public void clear(){
+        checkMutable();
         getProps().clear();
         getOverlay().clear();
     }
@@ -622,6 +629,22 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         }
         return null;
     }
+    private void logDeprecation(String message){
+        LOG_DEPRECATION.info(message);
+    }
+    void logDeprecationOnce(String name,String source){
+        DeprecatedKeyInfo keyInfo=getDeprecatedKeyInfo(name);
+        if (keyInfo != null && !keyInfo.getAndSetAccessed()) {
+            LOG_DEPRECATION.info(keyInfo.getWarningMessage(name,source));
+        }
+    }
+    static Map<String ,String[]> getDeprecatedKeyMappings(){
+        Map<String ,String[]> mappings=new HashMap<>();
+        for (Map.Entry<String, DeprecatedKeyInfo> entry : deprecationContext.get().getDeprecatedKeyInfoMap().entrySet()) {
+            mappings.put(entry.getKey(),entry.getValue().newKeys);
+        }
+        return mappings;
+    }
     private static String getDeprecatedKey(String key){
         return deprecationContext.get().getRevereDeprecatedKeyMap().get(key);
     }
@@ -674,7 +697,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         return Float.parseFloat(valueString);
     }
 
-    private String getHexDigits(String value){
+    static String getHexDigits(String value){
         boolean negative=false;
         String str=value;
         String hexString=null;
@@ -746,7 +769,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         if (hexString != null) {
             return Long.parseLong(hexString,16);
         }
-        return Long.parseLong(hexString);
+        return Long.parseLong(valueString);
     }
 
     public long getLongBytes(String name,long defaultValue){
@@ -1182,6 +1205,17 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
             } else if (resource instanceof Properties) {
                 overlay(properties,(Properties)resource);
             }
+            ConfigurationCache cache=ConfigurationCache.get();
+            if (cache != null && !returnCachedProperties) {
+                List<ParsedItem> items=loadCompiledResource(cache,wrapper,quiet);
+                if (items != null) {
+                    for (ParsedItem item : items) {
+                        loadProperty(properties,item.name,item.key,item.value,
+                                item.isFinal,item.sources);
+                    }
+                    return null;
+                }
+            }
             XMLStreamReader2 reader2=getStreamReader(wrapper,quiet);
             if (reader2 == null) {
                 if (quiet) {
@@ -1209,6 +1243,73 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
             throw new RuntimeException(e);
         }
     }
+    private List<ParsedItem> loadCompiledResource(ConfigurationCache cache,Resource wrapper,boolean quiet)
+            throws IOException,XMLStreamException{
+        Object resource=wrapper.getResource();
+        URL url=null;
+        if (resource instanceof URL) {
+            url=(URL) resource;
+        } else if (resource instanceof String) {
+            url=getResource((String) resource);
+        } else if (resource instanceof Path) {
+            File file=new File(((Path)resource).toUri().getPath()).getAbsoluteFile();
+            if (file.exists()) {
+                url=file.toURI().toURL();
+            }
+        }
+        if (url == null) {
+            return null;
+        }
+        String id=url.toString();
+        boolean restricted=wrapper.isRestrictParser();
+        // a local file still having the stamp it was compiled with is
+        // neither read nor hashed; the stamp is taken before the content
+        long length=-1;
+        long modified;
+        File file=localFile(url);
+        if (file != null && (modified=file.lastModified()) > 0) {
+            length=file.length();
+            List<ConfigurationCache.Property> compiled=cache.load(id,restricted,length,modified);
+            if (compiled != null) {
+                return new Parser(null,wrapper,quiet).replay(compiled);
+            }
+        }else {
+            modified=-1;
+        }
+        URLConnection connection=url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            connection.setUseCaches(false);
+        }
+        byte[] content=ConfigurationCache.readContent(connection.getInputStream());
+        byte[] digest=ConfigurationCache.digest(content);
+        List<ConfigurationCache.Property> compiled=cache.load(id,restricted,digest);
+        if (compiled != null) {
+            if (modified > 0) {
+                // same content under a new stamp: record it for the next load
+                cache.store(id,restricted,length,modified,digest,compiled);
+            }
+            return new Parser(null,wrapper,quiet).replay(compiled);
+        }
+        XMLStreamReader2 reader2=(XMLStreamReader2) parse(new ByteArrayInputStream(content),id,restricted);
+        Parser parser=new Parser(reader2,wrapper,quiet);
+        List<ParsedItem> items=parser.parse();
+        reader2.close();
+        if (parser.cacheable) {
+            cache.store(id,restricted,length,modified,digest,parser.properties);
+        }
+        return items;
+    }
+    /** The file of a {@code file:} URL, or null. */
+    private static File localFile(URL url){
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        }catch (URISyntaxException|IllegalArgumentException e){
+            return null;
+        }
+    }
     private void loadResources(Properties properties,
                                ArrayList<Resource> resources,
                                int startIdx,
@@ -1322,17 +1423,26 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
             }
         }
     }
+    void checkMutable(){
+    }
+    public FrozenConfiguration freeze(){
+        return new FrozenConfiguration(this);
+    }
     public synchronized void reloadConfiguration(){
+        checkMutable();
         properties=null;
         finalParameters.clear();
     }
+    /** Reload every configuration except frozen ones, which cannot change. */
     public static synchronized void reloadExistingConfigurations(){
         if (LOG.isDebugEnabled()) {
             LOG.debug("Reloading "+REGISTRY.keySet().size()
             +" existing configurations");
         }
         for (Configuration conf : REGISTRY.keySet()) {
-            conf.reloadConfiguration();
+            if (!(conf instanceof FrozenConfiguration)) {
+                conf.reloadConfiguration();
+            }
         }
     }
     public void set(String name,String value){
@@ -1343,6 +1453,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
                 "Property name must not be null");
         Preconditions.checkArgument(value!=null,
                 "The value property %s must not be null",name);
+        checkMutable();
         name=name.trim();
         DeprecationContext deprecations = Configuration.deprecationContext.get();
         if (deprecations.getRevereDeprecatedKeyMap().isEmpty()) {
@@ -1375,6 +1486,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
     }
     @VisibleForTesting
     public void setAllowNullValueProperties(boolean value){
+        checkMutable();
         this.allowNullValueProperties=value;
     }
     public void setBoolean(String name,boolean value){
@@ -1390,9 +1502,11 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         set(name,theClass.getName());
     }
     public void setClassLoader(ClassLoader classLoader){
+        checkMutable();
         this.classLoader=classLoader;
     }
     public void setDeprecatedProperties(){
+        checkMutable();
         DeprecationContext deprecations = Configuration.deprecationContext.get();
         Properties props = getProps();
         Properties overlay = getOverlay();
@@ -1435,9 +1549,11 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         set(name,pattern.pattern());
     }
     public synchronized void setQuietmode(boolean quietmode){
+        checkMutable();
         this.quietmode=quietmode;
     }
     public void setRestrictSystemProps(boolean val){
+        checkMutable();
         this.restrictSystemProps=val;
     }
     public void setRestrictSystemPropsDefault(boolean val){
@@ -1546,6 +1662,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         }
     }
     public synchronized void unset(String name){
+        checkMutable();
         String[] names=null;
         if (!isDeprecated(name)) {
             names=getAlternativeNames(name);
@@ -1970,6 +2087,8 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
         private boolean parseToken=false;
         private List<String > confSource=new ArrayList<>();
         private List<ParsedItem> results=new ArrayList<>();
+        private final List<ConfigurationCache.Property> properties=new ArrayList<>();
+        private boolean cacheable=true;
 
         Parser(XMLStreamReader2 reader2,Resource wrapper,boolean quiet){
             this.reader2=reader2;
@@ -2029,6 +2148,12 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
                 confSource.add(name);
                 confSourceArray=confSource.toArray(new String[0]);
             }
+            properties.add(new ConfigurationCache.Property(confName,confValue,confTag,
+                    confFinal,confSourceArray));
+            addProperty(confName,confValue,confTag,confFinal,confSourceArray);
+        }
+        private void addProperty(String confName,String confValue,String confTag,
+                                 boolean confFinal,String[] confSourceArray){
             if (confTag != null) {
                 readTagFromConfig(confTag,confName,confValue,confSourceArray);
             }
@@ -2059,6 +2184,7 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
             if (confInclude == null) {
                 return;
             }
+            cacheable=false;
             if (isRestricted) {
                 throw new RuntimeException("Error parsing resource "+wrapper
                 +": XInclude is not supported for restricted resources");
@@ -2155,6 +2281,12 @@ public class Configuration implements Iterable<Map.Entry<String ,String >>, Writ
                 }
             }
         }
+        List<ParsedItem> replay(List<ConfigurationCache.Property> compiled){
+            for (ConfigurationCache.Property p : compiled) {
+                addProperty(p.name,p.value,p.tag,p.isFinal,p.sources);
+            }
+            return results;
+        }
         List<ParsedItem> parse() throws XMLStreamException, IOException {
             while (reader2.hasNext()) {
                 parseNext();
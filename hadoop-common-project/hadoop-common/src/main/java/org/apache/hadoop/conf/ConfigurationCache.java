@@ -0,0 +1,343 @@
+package org.apache.hadoop.conf;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.util.StringInterner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of parsed configuration resources.
+ * <p>
+ * The properties of an XML resource are compiled into a binary file which
+ * is read back when the resource is loaded again, so processes that load
+ * the same files over and over skip the XML parser. A compiled file
+ * records the SHA-256 digest of the XML it was compiled from and is only
+ * used while the resource still has that content; otherwise the XML is
+ * parsed and the file rewritten. For a local file it also records the
+ * length and modification time, and while the file still has those the
+ * XML is neither read nor hashed. The properties are stored as they appear
+ * in the XML, before deprecated names are mapped, so a cached resource
+ * picks up the deprecations of the loading process.
+ * <p>
+ * Layout, all integers big endian:
+ * <pre>
+ *   int magic, int version, long length, long modification time,
+ *   byte[32] digest
+ *   int stringCount, int propertyCount, int sourceCount
+ *   int[stringCount + 1] string offsets into the string data
+ *   int[propertyCount * 6] properties:
+ *       name, value, tag, final, first source, number of sources
+ *   int[sourceCount] source strings of all properties
+ *   byte[] UTF-8 string data
+ * </pre>
+ * Strings are referenced by index, -1 standing for null. The length and
+ * modification time are -1 unless the resource is a local file.
+ * <p>
+ * The cache is enabled by setting the system property
+ * {@value #CACHE_DIR_PROPERTY} to a writable directory.
+ */
+@InterfaceAudience.Private
+final class ConfigurationCache {
+    private static final Logger LOG=LoggerFactory.getLogger(ConfigurationCache.class);
+    static final String CACHE_DIR_PROPERTY="hadoop.conf.cache.dir";
+    private static final int MAGIC=0x48434643;
+    private static final int VERSION=2;
+    private static final int DIGEST_LENGTH=32;
+    private static final int HEADER_LENGTH=8+16+DIGEST_LENGTH+12;
+    /**
+     * A file modified this recently may change again without changing its
+     * modification time, so its stamp is not recorded.
+     */
+    private static final long STAMP_MARGIN_MS=2000;
+    private static final int PROPERTY_INTS=6;
+    private static final String SUFFIX=".conf.bin";
+    private static volatile ConfigurationCache instance;
+
+    private final File dir;
+
+    @VisibleForTesting
+    ConfigurationCache(File dir){
+        this.dir=dir;
+    }
+
+    /** Return the cache, or null if it is not enabled. */
+    static ConfigurationCache get(){
+        String dirName=System.getProperty(CACHE_DIR_PROPERTY);
+        if (dirName == null || dirName.isEmpty()) {
+            return null;
+        }
+        ConfigurationCache cache=instance;
+        if (cache == null || !cache.dir.getPath().equals(dirName)) {
+            cache=new ConfigurationCache(new File(dirName));
+            instance=cache;
+        }
+        return cache;
+    }
+
+    /** A property as it appears in the XML. */
+    static final class Property {
+        final String name;
+        final String value;
+        final String tag;
+        final boolean isFinal;
+        final String[] sources;
+
+        Property(String name,String value,String tag,boolean isFinal,String[] sources){
+            this.name=name;
+            this.value=value;
+            this.tag=tag;
+            this.isFinal=isFinal;
+            this.sources=sources;
+        }
+    }
+
+    static byte[] readContent(InputStream in)throws IOException{
+        try {
+            ByteArrayOutputStream out=new ByteArrayOutputStream(8192);
+            byte[] buf=new byte[8192];
+            int n;
+            while ((n=in.read(buf)) > 0) {
+                out.write(buf,0,n);
+            }
+            return out.toByteArray();
+        }finally {
+            in.close();
+        }
+    }
+
+    static byte[] digest(byte[] content){
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        }catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File fileFor(String resourceId,boolean restricted){
+        byte[] id=digest((resourceId+(restricted?"#restricted":"")).getBytes(StandardCharsets.UTF_8));
+        StringBuilder name=new StringBuilder(2*16+SUFFIX.length());
+        for (int i = 0; i < 16; i++) {
+            name.append(Character.forDigit((id[i]>>4)&0xf,16))
+                    .append(Character.forDigit(id[i]&0xf,16));
+        }
+        return new File(dir,name.append(SUFFIX).toString());
+    }
+
+    /**
+     * Load the compiled properties of a local file resource without reading
+     * it, if it was compiled when the file had the given stamp.
+     * @param resourceId identifies the resource, e.g. its URL.
+     * @param restricted whether the resource is parsed restricted.
+     * @param length the current length of the file.
+     * @param modified the current modification time of the file.
+     * @return the properties, or null if there is no compiled file for
+     * this stamp.
+     */
+    List<Property> load(String resourceId,boolean restricted,long length,long modified){
+        return load(resourceId,restricted,length,modified,null);
+    }
+
+    /**
+     * Load the compiled properties of a resource.
+     * @param resourceId identifies the resource, e.g. its URL.
+     * @param restricted whether the resource is parsed restricted.
+     * @param digest digest of the current content of the resource.
+     * @return the properties, or null if there is no valid compiled file
+     * for this content.
+     */
+    List<Property> load(String resourceId,boolean restricted,byte[] digest){
+        return load(resourceId,restricted,-1,-1,digest);
+    }
+
+    private List<Property> load(String resourceId,boolean restricted,
+                                long length,long modified,byte[] digest){
+        File file=fileFor(resourceId,restricted);
+        try {
+            // compiled files are small; a heap copy leaves nothing mapped
+            ByteBuffer buf=ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            return decode(buf,length,modified,digest);
+        }catch (NoSuchFileException e){
+            return null;
+        }catch (IOException|RuntimeException e){
+            LOG.debug("Ignoring unreadable configuration cache file {}",file,e);
+            return null;
+        }
+    }
+
+    /** Decode a compiled file if it matches the digest, or without one the stamp. */
+    private static List<Property> decode(ByteBuffer buf,long sourceLength,long sourceModified,
+                                         byte[] digest)throws IOException{
+        if (buf.remaining() < HEADER_LENGTH || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("Not a configuration cache file");
+        }
+        long storedLength=buf.getLong();
+        long storedModified=buf.getLong();
+        byte[] stored=new byte[DIGEST_LENGTH];
+        buf.get(stored);
+        boolean current=digest==null
+                ?storedModified >= 0 && storedModified == sourceModified
+                        && storedLength == sourceLength
+                :Arrays.equals(stored,digest);
+        if (!current) {
+            return null;
+        }
+        int stringCount=buf.getInt();
+        int propertyCount=buf.getInt();
+        int sourceCount=buf.getInt();
+        int offsetsAt=buf.position();
+        int propertiesAt=offsetsAt+4*(stringCount+1);
+        int sourcesAt=propertiesAt+4*PROPERTY_INTS*propertyCount;
+        int dataAt=sourcesAt+4*sourceCount;
+        String[] strings=new String[stringCount];
+        byte[] bytes=new byte[256];
+        for (int i = 0; i < stringCount; i++) {
+            int start=buf.getInt(offsetsAt+4*i);
+            int length=buf.getInt(offsetsAt+4*i+4)-start;
+            if (length > bytes.length) {
+                bytes=new byte[Math.max(length,2*bytes.length)];
+            }
+            buf.position(dataAt+start);
+            buf.get(bytes,0,length);
+            strings[i]=StringInterner.weakIntern(new String(bytes,0,length,StandardCharsets.UTF_8));
+        }
+        List<Property> properties=new ArrayList<>(propertyCount);
+        for (int i = 0; i < propertyCount; i++) {
+            int at=propertiesAt+4*PROPERTY_INTS*i;
+            int firstSource=buf.getInt(at+16);
+            String[] sources=new String[buf.getInt(at+20)];
+            for (int j = 0; j < sources.length; j++) {
+                sources[j]=string(strings,buf.getInt(sourcesAt+4*(firstSource+j)));
+            }
+            properties.add(new Property(string(strings,buf.getInt(at)),
+                    string(strings,buf.getInt(at+4)),
+                    string(strings,buf.getInt(at+8)),
+                    buf.getInt(at+12) != 0,sources));
+        }
+        return properties;
+    }
+
+    private static String string(String[] strings,int index){
+        return index<0?null:strings[index];
+    }
+
+    /**
+     * Compile the properties of a resource. Failures are logged and
+     * ignored; the resource is parsed again next time.
+     * @param length length of a local file resource, read before its
+     *               content; -1 for other resources.
+     * @param modified modification time of a local file resource, read
+     *                 with the length; -1 for other resources.
+     */
+    void store(String resourceId,boolean restricted,long length,long modified,
+               byte[] digest,List<Property> properties){
+        File file=fileFor(resourceId,restricted);
+        if (modified > System.currentTimeMillis()-STAMP_MARGIN_MS) {
+            length=-1;
+            modified=-1;
+        }
+        File tmp=null;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Cannot create "+dir);
+            }
+            tmp=File.createTempFile(file.getName(),".tmp",dir);
+            try (OutputStream out=Files.newOutputStream(tmp.toPath())) {
+                encode(out,length,modified,digest,properties);
+            }
+            Files.move(tmp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            tmp=null;
+        }catch (IOException|RuntimeException e){
+            LOG.debug("Failed to write configuration cache file {}",file,e);
+        }finally {
+            if (tmp != null && !tmp.delete()) {
+                LOG.debug("Failed to delete {}",tmp);
+            }
+        }
+    }
+
+    private static void encode(OutputStream os,long length,long modified,byte[] digest,
+                               List<Property> properties)throws IOException{
+        Map<String, Integer> indexes=new HashMap<>();
+        List<byte[]> strings=new ArrayList<>();
+        int[] propertyInts=new int[PROPERTY_INTS*properties.size()];
+        int sourceCount=0;
+        for (Property p : properties) {
+            sourceCount+=p.sources.length;
+        }
+        int[] sources=new int[sourceCount];
+        int s=0;
+        for (int i = 0; i < properties.size(); i++) {
+            Property p=properties.get(i);
+            int at=PROPERTY_INTS*i;
+            propertyInts[at]=index(p.name,indexes,strings);
+            propertyInts[at+1]=index(p.value,indexes,strings);
+            propertyInts[at+2]=index(p.tag,indexes,strings);
+            propertyInts[at+3]=p.isFinal?1:0;
+            propertyInts[at+4]=s;
+            propertyInts[at+5]=p.sources.length;
+            for (String source : p.sources) {
+                sources[s++]=index(source,indexes,strings);
+            }
+        }
+        DataOutputStream out=new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(length);
+        out.writeLong(modified);
+        out.write(digest);
+        out.writeInt(strings.size());
+        out.writeInt(properties.size());
+        out.writeInt(sourceCount);
+        int offset=0;
+        out.writeInt(offset);
+        for (byte[] string : strings) {
+            offset+=string.length;
+            out.writeInt(offset);
+        }
+        for (int v : propertyInts) {
+            out.writeInt(v);
+        }
+        for (int v : sources) {
+            out.writeInt(v);
+        }
+        for (byte[] string : strings) {
+            out.write(string);
+        }
+        out.flush();
+    }
+
+    private static int index(String s,Map<String, Integer> indexes,List<byte[]> strings){
+        if (s == null) {
+            return -1;
+        }
+        Integer index=indexes.get(s);
+        if (index == null) {
+            index=strings.size();
+            indexes.put(s,index);
+            strings.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,295 @@
+package org.apache.hadoop.conf;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of a {@link Configuration}, returned by
+ * {@link Configuration#freeze()}.
+ * <p>
+ * Every property is resolved once when the snapshot is taken: deprecated
+ * names are mapped to the values of their replacements and variables are
+ * substituted, including system properties and environment variables.
+ * The results are kept in an open addressing table, so {@link #get(String)}
+ * takes no lock and does no parsing; the parsed forms used by
+ * {@link #getInt}, {@link #getLong} and {@link #getTimeDuration} are cached
+ * per property on first use.
+ * <p>
+ * Setting, unsetting, adding resources, reloading and the other mutators
+ * fail with {@link UnsupportedOperationException}. The snapshot does not
+ * see default resources added later, as
+ * {@link Configuration#reloadExistingConfigurations()} skips it.
+ * {@link Configuration#Configuration(Configuration)} turns a snapshot back
+ * into a mutable configuration.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class FrozenConfiguration extends Configuration {
+    private final PropertyTable table;
+
+    FrozenConfiguration(Configuration other){
+        super(other);
+        this.table=resolve();
+    }
+
+    private PropertyTable resolve(){
+        Map<String ,String[]> deprecations=getDeprecatedKeyMappings();
+        Set<String> names=new HashSet<>();
+        synchronized (this){
+            for (Object key : getProps().keySet()) {
+                if (key instanceof String) {
+                    String[] newKeys=deprecations.get(key);
+                    if (newKeys == null) {
+                        names.add((String) key);
+                    }else {
+                        for (String newKey : newKeys) {
+                            names.add(newKey);
+                        }
+                    }
+                }
+            }
+        }
+        names.removeAll(deprecations.keySet());
+        List<String> keys=new ArrayList<>(names.size()+deprecations.size());
+        List<String> rawValues=new ArrayList<>(keys.size());
+        List<String> values=new ArrayList<>(keys.size());
+        for (String name : names) {
+            keys.add(name);
+            rawValues.add(super.getRaw(name));
+            values.add(super.get(name));
+        }
+        PropertyTable current=new PropertyTable(keys,rawValues,values,keys.size());
+        // a deprecated name reads the value of its last replacement
+        for (Map.Entry<String, String[]> entry : deprecations.entrySet()) {
+            String[] newKeys=entry.getValue();
+            int slot=current.find(newKeys[newKeys.length-1]);
+            keys.add(entry.getKey());
+            rawValues.add(slot<0?null:current.rawValues[slot]);
+            values.add(slot<0?null:current.values[slot]);
+        }
+        return new PropertyTable(keys,rawValues,values,names.size());
+    }
+
+    /** Find the slot of a property, logging the use of a deprecated name. */
+    private int slot(String name){
+        int slot=table.find(name);
+        if (slot < 0) {
+            String trimmed=name.trim();
+            if (trimmed.length() != name.length()) {
+                slot=table.find(trimmed);
+            }
+        }
+        if (slot >= 0 && table.deprecated[slot]) {
+            logDeprecationOnce(table.keys[slot],null);
+        }
+        return slot;
+    }
+
+    @Override
+    public String get(String name) {
+        if (table == null) {
+            return super.get(name);
+        }
+        int slot=slot(name);
+        return slot<0?null:table.values[slot];
+    }
+
+    @Override
+    public String get(String name, String defaultValue) {
+        String value=get(name);
+        if (value != null) {
+            return value;
+        }
+        if (defaultValue == null || defaultValue.indexOf('$') < 0) {
+            return defaultValue;
+        }
+        return substituteCommonVariables(defaultValue);
+    }
+
+    @Override
+    public String getRaw(String name) {
+        if (table == null) {
+            return super.getRaw(name);
+        }
+        int slot=slot(name);
+        return slot<0?null:table.rawValues[slot];
+    }
+
+    @Override
+    public int getInt(String name, int defaultValue) {
+        int slot=slot(name);
+        if (slot < 0 || table.values[slot] == null) {
+            return defaultValue;
+        }
+        TypedValue typed=table.typed(slot);
+        if (!typed.isInt) {
+            // reports the malformed value
+            return super.getInt(name,defaultValue);
+        }
+        return typed.intValue;
+    }
+
+    @Override
+    public long getLong(String name, long defaultValue) {
+        int slot=slot(name);
+        if (slot < 0 || table.values[slot] == null) {
+            return defaultValue;
+        }
+        TypedValue typed=table.typed(slot);
+        if (!typed.isLong) {
+            return super.getLong(name,defaultValue);
+        }
+        return typed.longValue;
+    }
+
+    @Override
+    public long getTimeDuration(String name, long defaultValue, TimeUnit defaultUnit, TimeUnit returnUnit) {
+        int slot=slot(name);
+        if (slot < 0 || table.values[slot] == null) {
+            return returnUnit.convert(defaultValue,defaultUnit);
+        }
+        TypedValue typed=table.typed(slot);
+        if (!typed.isDuration) {
+            return super.getTimeDuration(name,defaultValue,defaultUnit,returnUnit);
+        }
+        TimeUnit unit=typed.durationUnit==null?defaultUnit:typed.durationUnit.unit();
+        long converted=returnUnit.convert(typed.duration,unit);
+        if (unit.convert(converted,returnUnit) < typed.duration) {
+            // logs the loss of precision
+            return getTimeDurationHelper(name,table.values[slot],defaultUnit,returnUnit);
+        }
+        return converted;
+    }
+
+    @Override
+    public FrozenConfiguration freeze() {
+        return this;
+    }
+
+    @Override
+    void checkMutable() {
+        throw new UnsupportedOperationException("Configuration is frozen");
+    }
+
+    /** The parsed forms of a value; a form which does not parse is absent. */
+    private static final class TypedValue {
+        private final boolean isInt;
+        private final int intValue;
+        private final boolean isLong;
+        private final long longValue;
+        private final boolean isDuration;
+        private final long duration;
+        /** Unit given by the suffix; null when the value has none. */
+        private final ParseTimeDuration durationUnit;
+
+        TypedValue(String value){
+            String trimmed=value.trim();
+            String hex=getHexDigits(trimmed);
+            boolean parsedInt=false;
+            int i=0;
+            try {
+                i=hex==null?Integer.parseInt(trimmed):Integer.parseInt(hex,16);
+                parsedInt=true;
+            }catch (NumberFormatException ignored){
+            }
+            boolean parsedLong=false;
+            long l=0;
+            try {
+                l=hex==null?Long.parseLong(trimmed):Long.parseLong(hex,16);
+                parsedLong=true;
+            }catch (NumberFormatException ignored){
+            }
+            String v=StringUtils.toLowerCase(trimmed);
+            ParseTimeDuration unit=ParseTimeDuration.unitFor(v);
+            if (unit != null) {
+                v=v.substring(0,v.lastIndexOf(unit.suffix()));
+            }
+            boolean parsedDuration=false;
+            long d=0;
+            try {
+                d=Long.parseLong(v);
+                parsedDuration=true;
+            }catch (NumberFormatException ignored){
+            }
+            this.isInt=parsedInt;
+            this.intValue=i;
+            this.isLong=parsedLong;
+            this.longValue=l;
+            this.isDuration=parsedDuration;
+            this.duration=d;
+            this.durationUnit=unit;
+        }
+    }
+
+    /**
+     * Open addressing table of resolved properties with linear probing.
+     * The slots are written only while the table is built; typed values are
+     * immutable, so racing first reads at worst parse a value twice.
+     */
+    private static final class PropertyTable {
+        private final String[] keys;
+        private final String[] rawValues;
+        private final String[] values;
+        private final boolean[] deprecated;
+        private final TypedValue[] typed;
+        private final int mask;
+
+        /**
+         * @param firstDeprecated index of the first deprecated name in the
+         *                        lists; all names from it on are deprecated.
+         */
+        PropertyTable(List<String> keys,List<String> rawValues,List<String> values,int firstDeprecated){
+            int capacity=Integer.highestOneBit(Math.max(keys.size(),1)*2-1)<<1;
+            this.keys=new String[capacity];
+            this.rawValues=new String[capacity];
+            this.values=new String[capacity];
+            this.deprecated=new boolean[capacity];
+            this.typed=new TypedValue[capacity];
+            this.mask=capacity-1;
+            for (int i = 0; i < keys.size(); i++) {
+                String key=keys.get(i);
+                int slot=spread(key.hashCode())&mask;
+                while (this.keys[slot] != null) {
+                    slot=(slot+1)&mask;
+                }
+                this.keys[slot]=key;
+                this.rawValues[slot]=rawValues.get(i);
+                this.values[slot]=values.get(i);
+                this.deprecated[slot]=i>=firstDeprecated;
+            }
+        }
+
+        private static int spread(int h){
+            return h^(h>>>16);
+        }
+
+        int find(String key){
+            int slot=spread(key.hashCode())&mask;
+            String k;
+            while ((k=keys[slot]) != null) {
+                if (k.equals(key)) {
+                    return slot;
+                }
+                slot=(slot+1)&mask;
+            }
+            return -1;
+        }
+
+        TypedValue typed(int slot){
+            TypedValue t=typed[slot];
+            if (t == null) {
+                t=new TypedValue(values[slot]);
+                typed[slot]=t;
+            }
+            return t;
+        }
+    }
+}
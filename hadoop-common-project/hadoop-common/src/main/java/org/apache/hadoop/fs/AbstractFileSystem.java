@@ -5,6 +5,7 @@ import com.apache.hadoop.classification.InterfaceStability;
 import com.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem.Statistics;
 import org.apache.hadoop.fs.impl.AbstractFSBuilderImpl;
 import org.apache.hadoop.fs.impl.OpenFileParameters;
 import org.apache.hadoop.fs.permission.AclEntry;
@@ -102,6 +103,16 @@ public abstract class AbstractFileSystem implements PathCapabilities{
         return (AbstractFileSystem)newInstance(clazz,uri,conf);
     }
     protected static synchronized Statistics getStatistics(URI uri){
+        return getStatistics(uri,null);
+    }
+    /**
+     * Get the statistics of a file system, creating them with the backend
+     * selected by the configuration if there are none yet. The statistics
+     * are shared by everything with the same base URI, so the configuration
+     * of the first file system created for it decides.
+     * @param conf selects striped statistics; may be null for the default.
+     */
+    protected static synchronized Statistics getStatistics(URI uri,Configuration conf){
         String scheme = uri.getScheme();
         if (scheme == null) {
             throw new IllegalArgumentException("Scheme not defined in the uri: "+uri);
@@ -109,7 +120,7 @@ public abstract class AbstractFileSystem implements PathCapabilities{
         URI baseUri=getBaseUri(uri);
         Statistics result = STATISTICS_TABLE.get(baseUri);
         if (result == null) {
-            result=new Statistics(scheme);
+            result=conf==null?new Statistics(scheme):new Statistics(scheme,conf);
             STATISTICS_TABLE.put(baseUri,result);
         }
         return result;
@@ -152,8 +163,14 @@ public abstract class AbstractFileSystem implements PathCapabilities{
     public AbstractFileSystem(final URI uri,String supportedScheme,
                               final boolean authorityNeeded,
                               final int defaultPort)throws URISyntaxException{
+        this(uri,supportedScheme,authorityNeeded,defaultPort,null);
+    }
+    public AbstractFileSystem(final URI uri,String supportedScheme,
+                              final boolean authorityNeeded,
+                              final int defaultPort,
+                              final Configuration conf)throws URISyntaxException{
         myUri=getUri(uri,supportedScheme,authorityNeeded,defaultPort);
-        statistics=getStatistics(uri);
+        statistics=getStatistics(uri,conf);
     }
     public void checkScheme(URI uri,String supportedScheme){
         String scheme = uri.getScheme();
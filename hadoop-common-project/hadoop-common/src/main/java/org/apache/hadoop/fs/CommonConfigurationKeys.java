@@ -487,6 +487,104 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final boolean IOSTATISTICS_THREAD_LEVEL_ENABLED_DEFAULT =
       true;
 
+  /**
+   * Implementation of {@link org.apache.hadoop.io.ByteBufferPool} created by
+   * {@link org.apache.hadoop.io.ByteBufferPools#createPool}: either
+   * "elastic" or "striped".
+   */
+  public static final String IO_BYTE_BUFFER_POOL_IMPL_KEY =
+      "io.bytebuffer.pool.impl";
+  public static final String IO_BYTE_BUFFER_POOL_IMPL_DEFAULT = "elastic";
+
+  /** Upper bound on the bytes retained by the striped pool, per arena. */
+  public static final String IO_BYTE_BUFFER_POOL_MAX_BYTES_KEY =
+      "io.bytebuffer.pool.striped.max.bytes";
+  public static final long IO_BYTE_BUFFER_POOL_MAX_BYTES_DEFAULT =
+      256L * 1024 * 1024;
+
+  /** Upper bound on the buffers retained per size class and arena. */
+  public static final String IO_BYTE_BUFFER_POOL_MAX_BUFFERS_PER_CLASS_KEY =
+      "io.bytebuffer.pool.striped.max.buffers.per.class";
+  public static final int IO_BYTE_BUFFER_POOL_MAX_BUFFERS_PER_CLASS_DEFAULT =
+      256;
+
+  /** Per-thread magazine size per size class; 0 disables magazines. */
+  public static final String IO_BYTE_BUFFER_POOL_MAGAZINE_SIZE_KEY =
+      "io.bytebuffer.pool.striped.magazine.size";
+  public static final int IO_BYTE_BUFFER_POOL_MAGAZINE_SIZE_DEFAULT = 0;
+
+  /**
+   * Number of threads compressing sealed blocks of a
+   * {@link org.apache.hadoop.io.BlockCompressedSequenceFile.Writer}.
+   */
+  public static final String IO_SEQFILE_COMPRESS_THREADS_KEY =
+      "io.seqfile.compress.threads";
+  public static final int IO_SEQFILE_COMPRESS_THREADS_DEFAULT = 4;
+
+  /** Maximum number of sealed blocks waiting to be compressed or written. */
+  public static final String IO_SEQFILE_COMPRESS_MAX_INFLIGHT_BLOCKS_KEY =
+      "io.seqfile.compress.max.inflight.blocks";
+  public static final int IO_SEQFILE_COMPRESS_MAX_INFLIGHT_BLOCKS_DEFAULT = 8;
+
+  /** Number of blocks a block-compressed reader decompresses ahead. */
+  public static final String IO_SEQFILE_DECOMPRESS_READAHEAD_BLOCKS_KEY =
+      "io.seqfile.decompress.readahead.blocks";
+  public static final int IO_SEQFILE_DECOMPRESS_READAHEAD_BLOCKS_DEFAULT = 2;
+
+  /**
+   * Upper bound on the memory of the MapFile indexes shared through
+   * {@link org.apache.hadoop.io.MapFileIndexCache}.
+   */
+  public static final String IO_MAP_INDEX_CACHE_MAX_BYTES_KEY =
+      "io.map.index.cache.max.bytes";
+  public static final long IO_MAP_INDEX_CACHE_MAX_BYTES_DEFAULT =
+      512L * 1024 * 1024;
+
+  /**
+   * Initial readahead window of local file input streams; the window
+   * doubles on sequential reads up to the maximum. 0, the default,
+   * disables readahead.
+   */
+  public static final String IO_FILE_READAHEAD_BYTES_KEY =
+      "io.file.readahead.bytes";
+  public static final long IO_FILE_READAHEAD_BYTES_DEFAULT = 0;
+
+  /** Maximum readahead window of local file input streams. */
+  public static final String IO_FILE_READAHEAD_MAX_BYTES_KEY =
+      "io.file.readahead.max.bytes";
+  public static final long IO_FILE_READAHEAD_MAX_BYTES_DEFAULT =
+      4L * 1024 * 1024;
+
+  /**
+   * Bytes per write-behind window of local file output streams: the
+   * writeback of every full window is started in the background.
+   * 0, the default, disables write-behind except for streams that turn
+   * on drop behind.
+   */
+  public static final String IO_FILE_WRITE_BEHIND_BYTES_KEY =
+      "io.file.write-behind.bytes";
+  public static final long IO_FILE_WRITE_BEHIND_BYTES_DEFAULT = 0;
+
+  /**
+   * Whether local file output streams drop written windows from the page
+   * cache; streams may override it with setDropBehind.
+   */
+  public static final String IO_FILE_DROP_BEHIND_KEY =
+      "io.file.drop-behind";
+  public static final boolean IO_FILE_DROP_BEHIND_DEFAULT = false;
+
+  /**
+   * Whether FileSystem.Statistics count in striped cells shared by all
+   * threads instead of per-thread data. May be set per scheme with
+   * {@link #FS_STATISTICS_STRIPED_SCHEME_KEY}.
+   */
+  public static final String FS_STATISTICS_STRIPED_KEY =
+      "fs.statistics.striped";
+  public static final boolean FS_STATISTICS_STRIPED_DEFAULT = false;
+  /** Per-scheme override of {@link #FS_STATISTICS_STRIPED_KEY}. */
+  public static final String FS_STATISTICS_STRIPED_SCHEME_KEY =
+      "fs.%s.statistics.striped";
+
   public static final String HADOOP_SECURITY_RESOLVER_IMPL =
       "hadoop.security.resolver.impl";
 
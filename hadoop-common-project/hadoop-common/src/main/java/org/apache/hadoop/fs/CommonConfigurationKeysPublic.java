@@ -238,6 +238,16 @@ public class CommonConfigurationKeysPublic {
     "io.mapfile.bloom.error.rate" ;
   /** Default value for IO_MAPFILE_BLOOM_ERROR_RATE_KEY */
   public static final float   IO_MAPFILE_BLOOM_ERROR_RATE_DEFAULT = 0.005f;
+  /**
+   * Filter written by BloomMapFile: "dynamic" or "blocked".
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String  IO_MAPFILE_BLOOM_TYPE_KEY =
+    "io.mapfile.bloom.type";
+  /** Default value for IO_MAPFILE_BLOOM_TYPE_KEY */
+  public static final String  IO_MAPFILE_BLOOM_TYPE_DEFAULT = "dynamic";
   /** Codec class that implements Lzo compression algorithm */
   public static final String  IO_COMPRESSION_CODEC_LZO_CLASS_KEY =
     "io.compression.codec.lzo.class";
@@ -0,0 +1,74 @@
+package org.apache.hadoop.fs;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.util.CrcUtil;
+import org.apache.hadoop.util.DataChecksum;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A file checksum which is the CRC of the whole file, for instance
+ * COMPOSITE-CRC32C. The value only depends on the bytes of the file, not
+ * on how they are laid out in blocks, so files can be compared across
+ * stores with different block sizes.
+ */
+@InterfaceAudience.LimitedPrivate({"Common","HDFS","MapReduce","Yarn"})
+@InterfaceStability.Unstable
+public class CompositeCrcFileChecksum extends FileChecksum {
+    public static final int LENGTH=Integer.SIZE/Byte.SIZE;
+
+    private int crc;
+    private DataChecksum.Type crcType;
+    private int bytesPerCrc;
+
+    public CompositeCrcFileChecksum(int crc,DataChecksum.Type crcType,int bytesPerCrc){
+        this.crc=crc;
+        this.crcType=crcType;
+        this.bytesPerCrc=bytesPerCrc;
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "COMPOSITE-"+crcType.name();
+    }
+
+    @Override
+    public int getLength() {
+        return LENGTH;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return CrcUtil.intToBytes(crc);
+    }
+
+    public int getCrc(){
+        return crc;
+    }
+
+    public DataChecksum.Type getCrcType(){
+        return crcType;
+    }
+
+    public int getBytesPerCrc(){
+        return bytesPerCrc;
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        out.writeInt(crc);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        crc=in.readInt();
+    }
+
+    @Override
+    public String toString() {
+        return getAlgorithmName()+":"+String.format("0x%08x",crc);
+    }
+}
@@ -1,4 +1,124 @@
 package org.apache.hadoop.fs;
 
-public class FSDataOutputStream {
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Utility that wraps a {@link OutputStream} in a {@link DataOutputStream}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public class FSDataOutputStream extends DataOutputStream
+        implements Syncable,CanSetDropBehind,StreamCapabilities {
+    private final OutputStream wrappedStream;
+
+    private static class PositionCache extends FilterOutputStream {
+        private final FileSystem.Statistics statistics;
+        private long position;
+
+        PositionCache(OutputStream out,FileSystem.Statistics stats,long pos){
+            super(out);
+            statistics=stats;
+            position=pos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+            if (statistics != null) {
+                statistics.incrementBytesWritten(1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b,off,len);
+            position+=len;
+            if (statistics != null) {
+                statistics.incrementBytesWritten(len);
+            }
+        }
+
+        long getPos(){
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    public FSDataOutputStream(OutputStream out,FileSystem.Statistics stats){
+        this(out,stats,0);
+    }
+
+    public FSDataOutputStream(OutputStream out,FileSystem.Statistics stats,long startPosition){
+        super(new PositionCache(out,stats,startPosition));
+        wrappedStream=out;
+    }
+
+    /** Get the current position in the output stream. */
+    public long getPos(){
+        return ((PositionCache) out).getPos();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    @Override
+    public String toString() {
+        return "FSDataOutputStream{wrappedStream="+wrappedStream+'}';
+    }
+
+    @InterfaceAudience.LimitedPrivate({"HDFS"})
+    public OutputStream getWrappedStream(){
+        return wrappedStream;
+    }
+
+    @Override
+    public boolean hasCapability(String capability) {
+        if (wrappedStream instanceof StreamCapabilities) {
+            return ((StreamCapabilities) wrappedStream).hasCapability(capability);
+        }
+        return false;
+    }
+
+    @Override
+    public void hflush() throws IOException {
+        if (wrappedStream instanceof Syncable) {
+            ((Syncable) wrappedStream).hflush();
+        }else {
+            wrappedStream.flush();
+        }
+    }
+
+    @Override
+    public void hsync() throws IOException {
+        if (wrappedStream instanceof Syncable) {
+            ((Syncable) wrappedStream).hsync();
+        }else {
+            wrappedStream.flush();
+        }
+    }
+
+    @Override
+    public void setDropBehind(Boolean dropBehind) throws IOException {
+        try {
+            ((CanSetDropBehind) wrappedStream).setDropBehind(dropBehind);
+        }catch (ClassCastException e){
+            throw new UnsupportedOperationException("the wrapped stream does "+
+                    "not support setting the drop-behind caching setting.");
+        }
+    }
 }
@@ -28,6 +28,11 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.FS_STATISTICS_STRIPED_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.FS_STATISTICS_STRIPED_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.FS_STATISTICS_STRIPED_SCHEME_KEY;
 
 @SuppressWarnings("DeprecatedIsStillUsed")
 @InterfaceAudience.Public
@@ -38,9 +43,22 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
 
 
 
+    /**
+     * Tracks statistics about how many reads, writes, and so forth have been
+     * done in a FileSystem.
+     * <p>
+     * By default every thread counts in its own {@link StatisticsData},
+     * which the readers add up. With striped statistics the counters are
+     * {@link LongAdder}s instead: their cells are picked by a per-thread
+     * probe and grow up to the number of cores, so memory and the cost of a
+     * read stay bounded however many threads, virtual or not, use the file
+     * system. Striped statistics keep no per-thread counts.
+     */
     public static final class Statistics{
         private final String scheme;
         private final StatisticsData rootData;
+        /** Counters of striped statistics; null when counting per thread. */
+        private final StripedData stripedData;
         @SuppressWarnings("ThreadLocalNotStaticFinall")
         private final ThreadLocal<StatisticsData> threadData;
         private final Set<StatisticsDataReference> allData;
@@ -56,15 +74,31 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
         }
 
         public Statistics(String scheme){
+            this(scheme,false);
+        }
+
+        /**
+         * Create the statistics of a scheme, striped if
+         * {@code fs.SCHEME.statistics.striped} or, when it is unset,
+         * {@link CommonConfigurationKeys#FS_STATISTICS_STRIPED_KEY} is true.
+         */
+        public Statistics(String scheme,Configuration conf){
+            this(scheme,conf.getBoolean(String.format(FS_STATISTICS_STRIPED_SCHEME_KEY,scheme),
+                    conf.getBoolean(FS_STATISTICS_STRIPED_KEY,FS_STATISTICS_STRIPED_DEFAULT)));
+        }
+
+        private Statistics(String scheme,boolean striped){
             this.scheme=scheme;
             this.rootData=new StatisticsData();
+            this.stripedData=striped?new StripedData():null;
             this.threadData=new ThreadLocal<>();
             this.allData=new HashSet<>();
         }
 
         public Statistics(Statistics o){
             this.scheme=o.scheme;
-            this.rootData=o.rootData;
+            this.rootData=new StatisticsData();
+            this.stripedData=o.stripedData!=null?new StripedData():null;
             o.visitAll(new StatisticsAggregator<Void>(){
                 @Override
                 public void accept(StatisticsData data) {
@@ -76,11 +110,21 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
                     return null;
                 }
             });
+            if (stripedData != null) {
+                stripedData.add(rootData);
+            }
             this.threadData=new ThreadLocal<>();
             this.allData=new HashSet<>();
         }
 
+        /**
+         * Get the statistics of the current thread. Striped statistics keep
+         * no per-thread counts and return the totals of all threads.
+         */
         public StatisticsData getThreadStatistics(){
+            if (stripedData != null) {
+                return getData();
+            }
             StatisticsData data = threadData.get();
             if (data == null) {
                 data=new StatisticsData();
@@ -93,10 +137,22 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
             return data;
         }
 
+        public boolean isStriped(){
+            return stripedData != null;
+        }
+
         public void incrementBytesRead(long newBytes){
+            if (stripedData != null) {
+                stripedData.bytesRead.add(newBytes);
+                return;
+            }
             getThreadStatistics().bytesRead+=newBytes;
         }
         public void incrementBytesWritten(long newBytes) {
+            if (stripedData != null) {
+                stripedData.bytesWritten.add(newBytes);
+                return;
+            }
             getThreadStatistics().bytesWritten += newBytes;
         }
 
@@ -105,6 +161,10 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @param count number of read operations
          */
         public void incrementReadOps(int count) {
+            if (stripedData != null) {
+                stripedData.readOps.add(count);
+                return;
+            }
             getThreadStatistics().readOps += count;
         }
 
@@ -113,6 +173,10 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @param count number of large read operations
          */
         public void incrementLargeReadOps(int count) {
+            if (stripedData != null) {
+                stripedData.largeReadOps.add(count);
+                return;
+            }
             getThreadStatistics().largeReadOps += count;
         }
 
@@ -121,6 +185,10 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @param count number of write operations
          */
         public void incrementWriteOps(int count) {
+            if (stripedData != null) {
+                stripedData.writeOps.add(count);
+                return;
+            }
             getThreadStatistics().writeOps += count;
         }
 
@@ -129,9 +197,17 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @param newBytes the additional bytes read
          */
         public void incrementBytesReadErasureCoded(long newBytes) {
+            if (stripedData != null) {
+                stripedData.bytesReadErasureCoded.add(newBytes);
+                return;
+            }
             getThreadStatistics().bytesReadErasureCoded += newBytes;
         }
         public void incrementBytesReadByDistance(int distance, long newBytes) {
+            if (stripedData != null) {
+                stripedData.bytesReadByDistance(distance).add(newBytes);
+                return;
+            }
             switch (distance) {
                 case 0:
                     getThreadStatistics().bytesReadLocalHost += newBytes;
@@ -149,15 +225,24 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
                     break;
             }
         }
-        private synchronized <T> T visitAll(StatisticsAggregator<T> visitor){
-            visitor.accept(rootData);
-            for (StatisticsDataReference ref : allData) {
-                StatisticsData data = ref.getData();
-                visitor.accept(data);
+        private <T> T visitAll(StatisticsAggregator<T> visitor){
+            if (stripedData != null) {
+                visitor.accept(stripedData.snapshot());
+                return visitor.aggregate();
+            }
+            synchronized (this){
+                visitor.accept(rootData);
+                for (StatisticsDataReference ref : allData) {
+                    StatisticsData data = ref.getData();
+                    visitor.accept(data);
+                }
+                return visitor.aggregate();
             }
-            return visitor.aggregate();
         }
         public long getBytesRead() {
+            if (stripedData != null) {
+                return stripedData.bytesRead.sum();
+            }
             return visitAll(new StatisticsAggregator<Long>() {
                 private long bytesRead = 0;
 
@@ -177,6 +262,9 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @return the number of bytes
          */
         public long getBytesWritten() {
+            if (stripedData != null) {
+                return stripedData.bytesWritten.sum();
+            }
             return visitAll(new StatisticsAggregator<Long>() {
                 private long bytesWritten = 0;
 
@@ -217,6 +305,9 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @return number of large read operations
          */
         public int getLargeReadOps() {
+            if (stripedData != null) {
+                return (int) stripedData.largeReadOps.sum();
+            }
             return visitAll(new StatisticsAggregator<Integer>() {
                 private int largeReadOps = 0;
 
@@ -237,6 +328,9 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @return number of write operations
          */
         public int getWriteOps() {
+            if (stripedData != null) {
+                return (int) stripedData.writeOps.sum();
+            }
             return visitAll(new StatisticsAggregator<Integer>() {
                 private int writeOps = 0;
 
@@ -261,6 +355,9 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @return the total number of bytes read by the network distance
          */
         public long getBytesReadByDistance(int distance) {
+            if (stripedData != null) {
+                return stripedData.bytesReadByDistance(distance).sum();
+            }
             long bytesRead;
             switch (distance) {
                 case 0:
@@ -306,6 +403,9 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
          * @return the number of bytes
          */
         public long getBytesReadErasureCoded() {
+            if (stripedData != null) {
+                return stripedData.bytesReadErasureCoded.sum();
+            }
             return visitAll(new StatisticsAggregator<Long>() {
                 private long bytesReadErasureCoded = 0;
 
@@ -335,6 +435,10 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
             });
         }
         public void reset() {
+            if (stripedData != null) {
+                stripedData.reset();
+                return;
+            }
             visitAll(new StatisticsAggregator<Void>() {
                 private StatisticsData total = new StatisticsData();
 
@@ -448,6 +552,69 @@ public abstract class FileSystem extends Configured implements Closeable,Delegat
                 return bytesReadErasureCoded;
             }
         }
+        /** Counters of striped statistics. */
+        private static final class StripedData{
+            private final LongAdder bytesRead=new LongAdder();
+            private final LongAdder bytesWritten=new LongAdder();
+            private final LongAdder readOps=new LongAdder();
+            private final LongAdder largeReadOps=new LongAdder();
+            private final LongAdder writeOps=new LongAdder();
+            private final LongAdder bytesReadLocalHost=new LongAdder();
+            private final LongAdder bytesReadDistanceOfOneOrTwo=new LongAdder();
+            private final LongAdder bytesReadDistanceOfThreeOrFour=new LongAdder();
+            private final LongAdder bytesReadDistanceOfFiveOrLarger=new LongAdder();
+            private final LongAdder bytesReadErasureCoded=new LongAdder();
+
+            LongAdder bytesReadByDistance(int distance){
+                switch (distance) {
+                    case 0:
+                        return bytesReadLocalHost;
+                    case 1:
+                    case 2:
+                        return bytesReadDistanceOfOneOrTwo;
+                    case 3:
+                    case 4:
+                        return bytesReadDistanceOfThreeOrFour;
+                    default:
+                        return bytesReadDistanceOfFiveOrLarger;
+                }
+            }
+
+            StatisticsData snapshot(){
+                StatisticsData data=new StatisticsData();
+                data.bytesRead=bytesRead.sum();
+                data.bytesWritten=bytesWritten.sum();
+                data.readOps=(int) readOps.sum();
+                data.largeReadOps=(int) largeReadOps.sum();
+                data.writeOps=(int) writeOps.sum();
+                data.bytesReadLocalHost=bytesReadLocalHost.sum();
+                data.bytesReadDistanceOfOneOrTwo=bytesReadDistanceOfOneOrTwo.sum();
+                data.bytesReadDistanceOfThreeOrFour=bytesReadDistanceOfThreeOrFour.sum();
+                data.bytesReadDistanceOfFiveOrLarger=bytesReadDistanceOfFiveOrLarger.sum();
+                data.bytesReadErasureCoded=bytesReadErasureCoded.sum();
+                return data;
+            }
+
+            void add(StatisticsData data){
+                bytesRead.add(data.bytesRead);
+                bytesWritten.add(data.bytesWritten);
+                readOps.add(data.readOps);
+                largeReadOps.add(data.largeReadOps);
+                writeOps.add(data.writeOps);
+                bytesReadLocalHost.add(data.bytesReadLocalHost);
+                bytesReadDistanceOfOneOrTwo.add(data.bytesReadDistanceOfOneOrTwo);
+                bytesReadDistanceOfThreeOrFour.add(data.bytesReadDistanceOfThreeOrFour);
+                bytesReadDistanceOfFiveOrLarger.add(data.bytesReadDistanceOfFiveOrLarger);
+                bytesReadErasureCoded.add(data.bytesReadErasureCoded);
+            }
+
+            /** Subtract the current totals; concurrent increments are kept. */
+            void reset(){
+                StatisticsData total=snapshot();
+                total.negate();
+                add(total);
+            }
+        }
         private interface StatisticsAggregator<T>{
             void accept(StatisticsData data);
             T aggregate();
@@ -1,4 +1,251 @@
 package org.apache.hadoop.fs;
 
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.ReadaheadPool;
+import org.apache.hadoop.io.WriteBehindPool;
+import org.apache.hadoop.util.StringUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_DROP_BEHIND_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_DROP_BEHIND_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_READAHEAD_BYTES_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_READAHEAD_BYTES_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_READAHEAD_MAX_BYTES_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_READAHEAD_MAX_BYTES_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_WRITE_BEHIND_BYTES_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_FILE_WRITE_BEHIND_BYTES_KEY;
+
 public class RawLocalFileSystem {
+
+    /**
+     * Input stream of a local file.
+     * <p>
+     * When {@code io.file.readahead.bytes} is set, sequential reads are
+     * followed by readahead requests on the shared {@link ReadaheadPool},
+     * whose window grows while the stream is read sequentially; seeks
+     * cancel the pending request. Positioned reads neither move the stream
+     * nor trigger readahead.
+     */
+    @InterfaceAudience.Private
+    @InterfaceStability.Unstable
+    public static class LocalFSFileInputStream extends FSInputStream
+            implements HasFileDescriptor, CanSetReadahead {
+        private final String path;
+        private final FileInputStream fis;
+        private final FileChannel channel;
+        private final long initialReadahead;
+        private final long maxReadahead;
+        private final ReadaheadPool.StreamReadahead readahead;
+        private long position;
+        private long length;
+
+        public LocalFSFileInputStream(File file,Configuration conf)throws IOException{
+            this.path=file.getPath();
+            this.fis=new FileInputStream(file);
+            this.channel=fis.getChannel();
+            this.length=channel.size();
+            this.initialReadahead=conf.getLong(IO_FILE_READAHEAD_BYTES_KEY,
+                    IO_FILE_READAHEAD_BYTES_DEFAULT);
+            this.maxReadahead=conf.getLong(IO_FILE_READAHEAD_MAX_BYTES_KEY,
+                    IO_FILE_READAHEAD_MAX_BYTES_DEFAULT);
+            this.readahead=ReadaheadPool.getInstance().newStreamReadahead(path,fis.getFD(),
+                    channel,initialReadahead,maxReadahead);
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            if (pos < 0) {
+                throw new EOFException(FSExceptionMessages.NEGATIVE_SEEK);
+            }
+            channel.position(pos);
+            this.position=pos;
+            readahead.onSeek(pos);
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return this.position;
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) throws IOException {
+            return false;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return fis.available();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value=fis.read();
+            if (value >= 0) {
+                this.position++;
+                advise();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            validatePositionedReadArgs(position,b,off,len);
+            int value=fis.read(b,off,len);
+            if (value > 0) {
+                this.position+=value;
+                advise();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            validatePositionedReadArgs(position,b,off,len);
+            if (len == 0) {
+                return 0;
+            }
+            return channel.read(ByteBuffer.wrap(b,off,len),position);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            long start=position;
+            long target=Math.min(start+n,Math.max(start,channel.size()));
+            seek(target);
+            return target-start;
+        }
+
+        private void advise()throws IOException{
+            if (position > length) {
+                length=channel.size();
+            }
+            readahead.onRead(position,length);
+        }
+
+        @Override
+        public void setReadahead(Long readahead) throws IOException, UnsupportedOperationException {
+            if (readahead == null) {
+                this.readahead.setWindow(initialReadahead,maxReadahead);
+            }else {
+                this.readahead.setWindow(readahead,readahead);
+            }
+        }
+
+        @Override
+        public FileDescriptor getFileDescriptor() throws IOException {
+            return fis.getFD();
+        }
+
+        @Override
+        public void close() throws IOException {
+            readahead.close();
+            fis.close();
+        }
+    }
+
+    /**
+     * Output stream of a local file.
+     * <p>
+     * Full windows of written data are handed to the shared
+     * {@link WriteBehindPool}, which starts their writeback in the
+     * background and, with drop behind enabled, evicts them from the page
+     * cache once they are on disk. Closing the stream handles the rest.
+     */
+    @InterfaceAudience.Private
+    @InterfaceStability.Unstable
+    public static class LocalFSFileOutputStream extends OutputStream
+            implements Syncable, CanSetDropBehind, HasFileDescriptor, StreamCapabilities {
+        private final FileOutputStream fos;
+        private final boolean defaultDropBehind;
+        private final WriteBehindPool.StreamWriteBehind writeBehind;
+        private long position;
+
+        public LocalFSFileOutputStream(File file,boolean append,Configuration conf)throws IOException{
+            this.fos=new FileOutputStream(file,append);
+            FileChannel channel=fos.getChannel();
+            this.position=append?channel.size():0;
+            this.defaultDropBehind=conf.getBoolean(IO_FILE_DROP_BEHIND_KEY,
+                    IO_FILE_DROP_BEHIND_DEFAULT);
+            this.writeBehind=WriteBehindPool.getInstance().newStreamWriteBehind(file.getPath(),
+                    fos.getFD(),
+                    conf.getLong(IO_FILE_WRITE_BEHIND_BYTES_KEY,IO_FILE_WRITE_BEHIND_BYTES_DEFAULT),
+                    defaultDropBehind);
+            this.writeBehind.setStart(position);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            fos.write(b);
+            position++;
+            writeBehind.onWrite(position);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            fos.write(b,off,len);
+            position+=len;
+            writeBehind.onWrite(position);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            fos.flush();
+        }
+
+        @Override
+        public void hflush() throws IOException {
+            flush();
+        }
+
+        @Override
+        public void hsync() throws IOException {
+            flush();
+            fos.getFD().sync();
+        }
+
+        @Override
+        public void setDropBehind(Boolean dropCache) throws IOException, UnsupportedOperationException {
+            writeBehind.setDropBehind(dropCache==null?defaultDropBehind:dropCache);
+        }
+
+        @Override
+        public boolean hasCapability(String capability) {
+            switch (StringUtils.toLowerCase(capability)){
+                case StreamCapabilities.HFLUSH:
+                case StreamCapabilities.HSYNC:
+                case StreamCapabilities.DROPBEHIND:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public FileDescriptor getFileDescriptor() throws IOException {
+            return fos.getFD();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeBehind.close(position);
+            }finally {
+                fos.close();
+            }
+        }
+    }
 }
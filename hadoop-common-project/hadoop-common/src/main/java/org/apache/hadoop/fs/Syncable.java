@@ -1,4 +1,19 @@
 package org.apache.hadoop.fs;
 
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.IOException;
+
+/**
+ * This is the interface for flush/sync operations.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
 public interface Syncable {
+    /** Flush out the data in client's user buffer. */
+    void hflush()throws IOException;
+
+    /** Similar to posix fsync, flush out the data and metadata to disk. */
+    void hsync()throws IOException;
 }
@@ -0,0 +1,109 @@
+package org.apache.hadoop.fs.impl;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.CompositeCrcFileChecksum;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.util.CrcUtil;
+import org.apache.hadoop.util.DataChecksum;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Computes the {@link CompositeCrcFileChecksum} of a file in parallel.
+ * <p>
+ * The file is cut into ranges which are read with positioned reads and
+ * checksummed concurrently; the range CRCs are then composed in order with
+ * {@link CrcUtil#compose(int, int, long, int)}. The result is the CRC of
+ * the whole file, whatever the range size or the block layout of the
+ * store. Positioned reads must be thread safe, as the
+ * {@link PositionedReadable} contract requires.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public final class CompositeCrcCalculator {
+    /** Default bytes per range: 128 MB. */
+    public static final long DEFAULT_RANGE_SIZE=128L*1024*1024;
+    private static final int READ_BUFFER_SIZE=1024*1024;
+
+    private CompositeCrcCalculator(){}
+
+    /**
+     * @param in the file.
+     * @param length length of the file.
+     * @param crcType CRC32 or CRC32C.
+     * @param bytesPerCrc recorded in the checksum; it does not change the value.
+     * @param rangeSize bytes read and checksummed by each task.
+     * @param executor runs the ranges; null reads the file in the caller.
+     */
+    public static CompositeCrcFileChecksum compute(final PositionedReadable in,long length,
+                                                   final DataChecksum.Type crcType,final int bytesPerCrc,
+                                                   long rangeSize,ExecutorService executor)throws IOException{
+        checkArgument(length>=0,"negative length: %s",length);
+        checkArgument(rangeSize>0,"rangeSize must be positive: %s",rangeSize);
+        final int mod=DataChecksum.getCrcPolynomialForType(crcType);
+        if (executor == null || length <= rangeSize) {
+            return new CompositeCrcFileChecksum(rangeCrc(in,0,length,crcType,bytesPerCrc),
+                    crcType,bytesPerCrc);
+        }
+        List<Future<Integer>> futures=new ArrayList<>();
+        List<Long> lengths=new ArrayList<>();
+        for (long off = 0; off < length; off+=rangeSize) {
+            final long start=off;
+            final long n=Math.min(rangeSize,length-off);
+            futures.add(executor.submit(()->rangeCrc(in,start,n,crcType,bytesPerCrc)));
+            lengths.add(n);
+        }
+        int crc=0;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                int rangeCrc=futures.get(i).get();
+                crc=i==0?rangeCrc:CrcUtil.compose(crc,rangeCrc,lengths.get(i),mod);
+            }
+        }catch (InterruptedException e){
+            for (Future<Integer> f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("interrupted computing file checksum").initCause(e);
+        }catch (ExecutionException e){
+            for (Future<Integer> f : futures) {
+                f.cancel(true);
+            }
+            Throwable cause=e.getCause();
+            throw cause instanceof IOException?(IOException) cause:
+                    new IOException("Failed to compute file checksum",cause);
+        }
+        return new CompositeCrcFileChecksum(crc,crcType,bytesPerCrc);
+    }
+
+    /** The CRC of {@code length} bytes of the file starting at {@code start}. */
+    static int rangeCrc(PositionedReadable in,long start,long length,
+                        DataChecksum.Type crcType,int bytesPerCrc)throws IOException{
+        DataChecksum checksum=DataChecksum.newDataChecksum(crcType,bytesPerCrc);
+        if (checksum == null) {
+            throw new IOException("Unsupported checksum type "+crcType);
+        }
+        byte[] buf=new byte[(int) Math.min(READ_BUFFER_SIZE,Math.max(length,1))];
+        long pos=start;
+        long end=start+length;
+        while (pos < end) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("interrupted reading at "+pos);
+            }
+            int n=(int) Math.min(buf.length,end-pos);
+            in.readFully(pos,buf,0,n);
+            checksum.update(buf,0,n);
+            pos+=n;
+        }
+        return (int) checksum.getValue();
+    }
+}
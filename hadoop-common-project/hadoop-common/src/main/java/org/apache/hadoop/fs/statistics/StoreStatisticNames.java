@@ -364,6 +364,42 @@ public final class StoreStatisticNames {
     public static final String MULTIPART_UPLOAD_LIST
             = "multipart_upload_list";
 
+    /** A buffer request was served from a pool: {@value}. */
+    public static final String BUFFER_POOL_HIT
+            = "buffer_pool_hit";
+
+    /** A buffer request had to allocate a new buffer: {@value}. */
+    public static final String BUFFER_POOL_MISS
+            = "buffer_pool_miss";
+
+    /** A returned buffer was discarded by a bounded pool: {@value}. */
+    public static final String BUFFER_POOL_EVICT
+            = "buffer_pool_evict";
+
+    /** Bytes currently retained by a buffer pool: {@value}. */
+    public static final String BUFFER_POOL_RETAINED_BYTES
+            = "buffer_pool_retained_bytes";
+
+    /** A readahead request was queued: {@value}. */
+    public static final String READAHEAD_REQUESTS
+            = "readahead_requests";
+
+    /** A queued readahead request was cancelled: {@value}. */
+    public static final String READAHEAD_CANCELLED
+            = "readahead_cancelled";
+
+    /** Bytes covered by queued readahead requests: {@value}. */
+    public static final String READAHEAD_BYTES
+            = "readahead_bytes";
+
+    /** A read reached a readahead window which had completed: {@value}. */
+    public static final String READAHEAD_HIT
+            = "readahead_hit";
+
+    /** A read reached a readahead window which had not completed: {@value}. */
+    public static final String READAHEAD_MISS
+            = "readahead_miss";
+
     private StoreStatisticNames() {
     }
 }
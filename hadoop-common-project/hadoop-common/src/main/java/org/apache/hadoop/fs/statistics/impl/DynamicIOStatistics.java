@@ -0,0 +1,79 @@
+package org.apache.hadoop.fs.statistics.impl;
+
+import org.apache.hadoop.fs.statistics.MeanStatistic;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * IOStatistics whose values are evaluated on demand from the
+ * suppliers registered through {@link DynamicIOStatisticsBuilder}.
+ * Every call to a map accessor returns a fresh, immutable map.
+ */
+final class DynamicIOStatistics extends AbstractIOStatisticsImpl {
+    private final Map<String, LongSupplier> counters;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, LongSupplier> minimums;
+    private final Map<String, LongSupplier> maximums;
+
+    DynamicIOStatistics(Map<String, LongSupplier> counters,
+                        Map<String, LongSupplier> gauges,
+                        Map<String, LongSupplier> minimums,
+                        Map<String, LongSupplier> maximums){
+        this.counters=counters;
+        this.gauges=gauges;
+        this.minimums=minimums;
+        this.maximums=maximums;
+    }
+
+    private static Map<String ,Long> evaluate(Map<String, LongSupplier> source){
+        Map<String ,Long> result=new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> entry : source.entrySet()) {
+            result.put(entry.getKey(),entry.getValue().getAsLong());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public Map<String, Long> counters() {
+        return evaluate(counters);
+    }
+
+    @Override
+    public Map<String, Long> gauges() {
+        return evaluate(gauges);
+    }
+
+    @Override
+    public Map<String, Long> minimums() {
+        return evaluate(minimums);
+    }
+
+    @Override
+    public Map<String, Long> maximums() {
+        return evaluate(maximums);
+    }
+
+    @Override
+    public Map<String, MeanStatistic> meanStatistics() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb=new StringBuilder();
+        sb.append("counters=");
+        for (Map.Entry<String, Long> entry : counters().entrySet()) {
+            sb.append(String.format(IOStatisticsBinding.ENTRY_PATTERN,
+                    entry.getKey(),entry.getValue()));
+        }
+        sb.append("; gauges=");
+        for (Map.Entry<String, Long> entry : gauges().entrySet()) {
+            sb.append(String.format(IOStatisticsBinding.ENTRY_PATTERN,
+                    entry.getKey(),entry.getValue()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package org.apache.hadoop.fs.statistics.impl;
+
+import org.apache.hadoop.fs.statistics.IOStatistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkState;
+
+/**
+ * Builder of {@link IOStatistics} bound to live counters of a component.
+ * The values are read when the statistics are queried, so the component
+ * only pays for updating its own (usually striped) counters.
+ */
+public final class DynamicIOStatisticsBuilder {
+    private final Map<String, LongSupplier> counters=new TreeMap<>();
+    private final Map<String, LongSupplier> gauges=new TreeMap<>();
+    private final Map<String, LongSupplier> minimums=new TreeMap<>();
+    private final Map<String, LongSupplier> maximums=new TreeMap<>();
+    private boolean built;
+
+    public DynamicIOStatisticsBuilder withLongFunctionCounter(String key,LongSupplier eval){
+        checkState(!built,"Statistics already built");
+        counters.put(key,eval);
+        return this;
+    }
+
+    public DynamicIOStatisticsBuilder withAtomicLongCounter(String key,AtomicLong source){
+        return withLongFunctionCounter(key,source::get);
+    }
+
+    public DynamicIOStatisticsBuilder withLongAdderCounter(String key,LongAdder source){
+        return withLongFunctionCounter(key,source::sum);
+    }
+
+    public DynamicIOStatisticsBuilder withLongFunctionGauge(String key,LongSupplier eval){
+        checkState(!built,"Statistics already built");
+        gauges.put(key,eval);
+        return this;
+    }
+
+    public DynamicIOStatisticsBuilder withLongFunctionMinimum(String key,LongSupplier eval){
+        checkState(!built,"Statistics already built");
+        minimums.put(key,eval);
+        return this;
+    }
+
+    public DynamicIOStatisticsBuilder withLongFunctionMaximum(String key,LongSupplier eval){
+        checkState(!built,"Statistics already built");
+        maximums.put(key,eval);
+        return this;
+    }
+
+    public IOStatistics build(){
+        checkState(!built,"Statistics already built");
+        built=true;
+        return new DynamicIOStatistics(counters,gauges,minimums,maximums);
+    }
+}
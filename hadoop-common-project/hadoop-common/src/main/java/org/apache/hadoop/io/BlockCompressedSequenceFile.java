@@ -0,0 +1,597 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.util.concurrent.HadoopExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.rmi.server.UID;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_SEQFILE_COMPRESS_MAX_INFLIGHT_BLOCKS_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_SEQFILE_COMPRESS_MAX_INFLIGHT_BLOCKS_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_SEQFILE_COMPRESS_THREADS_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_SEQFILE_COMPRESS_THREADS_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_SEQFILE_DECOMPRESS_READAHEAD_BLOCKS_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_SEQFILE_DECOMPRESS_READAHEAD_BLOCKS_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_SEQFILE_COMPRESS_BLOCKSIZE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_SEQFILE_COMPRESS_BLOCKSIZE_KEY;
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link SequenceFile.CompressionType#BLOCK} files written and read with a
+ * parallel compression pipeline.
+ * <p>
+ * The files use the regular SequenceFile layout with {@link DefaultCodec}
+ * (zlib): the header, then for every block a sync escape and sync hash,
+ * the VInt record count and the compressed key-length, key, value-length
+ * and value buffers, each prefixed by its VInt length.
+ * <p>
+ * The {@link Writer} seals buffered records into a block once the raw size
+ * reaches {@value org.apache.hadoop.fs.CommonConfigurationKeysPublic#IO_SEQFILE_COMPRESS_BLOCKSIZE_KEY}
+ * and hands it to a bounded pool of compressors; finished blocks are written
+ * strictly in submission order. The {@link Reader} reads blocks on the
+ * calling thread and inflates the next few of them in the background.
+ * <p>
+ * Both start a pool of their own unless they are given an executor, which
+ * lets many files share one pool. Deflaters and inflaters are reused
+ * across blocks and ended when the writer or reader is closed.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class BlockCompressedSequenceFile {
+    private static final Logger LOG=LoggerFactory.getLogger(BlockCompressedSequenceFile.class);
+    private static final String CODEC_CLASS_NAME=DefaultCodec.class.getName();
+    private static final int NUM_BUFFERS=4;
+
+    private BlockCompressedSequenceFile(){}
+
+    private static ExecutorService newPool(String name,int threads){
+        return HadoopExecutors.newFixedThreadPool(threads,new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat(name+"-%d")
+                .build());
+    }
+
+    private static <T> T await(Future<T> future)throws IOException{
+        try {
+            return future.get();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("interrupted").initCause(e);
+        }catch (ExecutionException e){
+            Throwable cause=e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Idle deflaters or inflaters of one writer or reader. Codecs released
+     * after {@link #close()} are ended at once, so a task still running
+     * when its owner closes does not leak native zlib memory.
+     */
+    private static final class CodecCache<T> {
+        private final Supplier<T> factory;
+        private final Consumer<T> end;
+        private final ArrayDeque<T> idle=new ArrayDeque<>();
+        private boolean closed;
+
+        CodecCache(Supplier<T> factory,Consumer<T> end){
+            this.factory=factory;
+            this.end=end;
+        }
+
+        T acquire(){
+            T codec;
+            synchronized (this){
+                codec=idle.poll();
+            }
+            return codec==null?factory.get():codec;
+        }
+
+        void release(T codec){
+            synchronized (this){
+                if (!closed) {
+                    idle.push(codec);
+                    return;
+                }
+            }
+            end.accept(codec);
+        }
+
+        synchronized void close(){
+            closed=true;
+            for (T codec : idle) {
+                end.accept(codec);
+            }
+            idle.clear();
+        }
+    }
+
+    /** The four compressed buffers of a sealed block. */
+    private static final class CompressedBlock {
+        private final int records;
+        private final byte[][] data=new byte[NUM_BUFFERS][];
+        private final int[] lengths=new int[NUM_BUFFERS];
+
+        CompressedBlock(int records){
+            this.records=records;
+        }
+    }
+
+    /** The four raw buffers of a block. */
+    private static final class RawBlock {
+        private int records;
+        private final DataOutputBuffer keyLengths=new DataOutputBuffer();
+        private final DataOutputBuffer keys=new DataOutputBuffer();
+        private final DataOutputBuffer valueLengths=new DataOutputBuffer();
+        private final DataOutputBuffer values=new DataOutputBuffer();
+
+        int rawSize(){
+            return keyLengths.getLength()+keys.getLength()
+                    +valueLengths.getLength()+values.getLength();
+        }
+
+        DataOutputBuffer buffer(int i){
+            switch (i){
+                case 0: return keyLengths;
+                case 1: return keys;
+                case 2: return valueLengths;
+                default: return values;
+            }
+        }
+
+        CompressedBlock compress(CodecCache<Deflater> deflaters){
+            CompressedBlock block=new CompressedBlock(records);
+            Deflater deflater=deflaters.acquire();
+            try {
+                for (int i = 0; i < NUM_BUFFERS; i++) {
+                    DataOutputBuffer raw=buffer(i);
+                    deflater.reset();
+                    deflater.setInput(raw.getData(),0,raw.getLength());
+                    deflater.finish();
+                    byte[] out=new byte[Math.max(64,raw.getLength()/2)];
+                    int len=0;
+                    while (!deflater.finished()) {
+                        if (len == out.length) {
+                            out=Arrays.copyOf(out,out.length<<1);
+                        }
+                        len+=deflater.deflate(out,len,out.length-len);
+                    }
+                    block.data[i]=out;
+                    block.lengths[i]=len;
+                }
+            }finally {
+                deflaters.release(deflater);
+            }
+            return block;
+        }
+    }
+
+    public static class Writer implements Closeable, Flushable {
+        private final DataOutputStream out;
+        private final boolean ownStream;
+        private final byte[] sync;
+        private final int compressionBlockSize;
+        private final int maxInFlight;
+        private final ExecutorService compressors;
+        private final boolean ownPool;
+        private final CodecCache<Deflater> deflaters=new CodecCache<>(
+                ()->new Deflater(Deflater.DEFAULT_COMPRESSION),Deflater::end);
+        private final ArrayDeque<Future<CompressedBlock>> inFlight=new ArrayDeque<>();
+        private RawBlock current=new RawBlock();
+        private final DataOutputBuffer keyBuffer=new DataOutputBuffer();
+        private final DataOutputBuffer valueBuffer=new DataOutputBuffer();
+        private final Class<?> keyClass;
+        private final Class<?> valClass;
+        private boolean closed;
+
+        public Writer(Configuration conf,OutputStream out,Class<?> keyClass,
+                      Class<?> valClass,SequenceFile.Metadata metadata,
+                      boolean ownStream)throws IOException{
+            this(conf,out,keyClass,valClass,metadata,ownStream,null);
+        }
+
+        /**
+         * @param compressors executor of the compression tasks, which the
+         *                    writer does not shut down; null starts a pool of
+         *                    io.seqfile.compress.threads threads for this writer.
+         */
+        public Writer(Configuration conf,OutputStream out,Class<?> keyClass,
+                      Class<?> valClass,SequenceFile.Metadata metadata,
+                      boolean ownStream,ExecutorService compressors)throws IOException{
+            this.out=new DataOutputStream(new BufferedOutputStream(out,
+                    64*1024));
+            this.ownStream=ownStream;
+            this.keyClass=keyClass;
+            this.valClass=valClass;
+            this.compressionBlockSize=conf.getInt(IO_SEQFILE_COMPRESS_BLOCKSIZE_KEY,
+                    IO_SEQFILE_COMPRESS_BLOCKSIZE_DEFAULT);
+            int threads=conf.getInt(IO_SEQFILE_COMPRESS_THREADS_KEY,
+                    IO_SEQFILE_COMPRESS_THREADS_DEFAULT);
+            this.maxInFlight=conf.getInt(IO_SEQFILE_COMPRESS_MAX_INFLIGHT_BLOCKS_KEY,
+                    IO_SEQFILE_COMPRESS_MAX_INFLIGHT_BLOCKS_DEFAULT);
+            this.sync=newSync();
+            try {
+                checkArgument(threads>0,"%s must be positive",IO_SEQFILE_COMPRESS_THREADS_KEY);
+                checkArgument(maxInFlight>0,"%s must be positive",IO_SEQFILE_COMPRESS_MAX_INFLIGHT_BLOCKS_KEY);
+                writeFileHeader(metadata==null?new SequenceFile.Metadata():metadata);
+            }catch (IOException|RuntimeException e){
+                if (ownStream) {
+                    IOUtils.cleanupWithLogger(LOG,this.out);
+                }
+                throw e;
+            }
+            // started last, so a failed header leaves no threads behind
+            this.ownPool=compressors == null;
+            this.compressors=ownPool?newPool("seqfile-compressor",threads):compressors;
+        }
+
+        private static byte[] newSync(){
+            try {
+                MessageDigest digester=MessageDigest.getInstance("MD5");
+                long time=System.currentTimeMillis();
+                digester.update((new UID()+"@"+time).getBytes(StandardCharsets.UTF_8));
+                return digester.digest();
+            }catch (NoSuchAlgorithmException e){
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeFileHeader(SequenceFile.Metadata metadata)throws IOException{
+            out.write(SequenceFile.versionBlock());
+            Text.writeString(out,keyClass.getName());
+            Text.writeString(out,valClass.getName());
+            out.writeBoolean(true);
+            out.writeBoolean(true);
+            Text.writeString(out,CODEC_CLASS_NAME);
+            metadata.writer(out);
+            out.write(sync);
+            out.flush();
+        }
+
+        public Class<?> getKeyClass(){return keyClass;}
+        public Class<?> getValueClass(){return valClass;}
+
+        public synchronized void append(Writable key,Writable val)throws IOException{
+            if (key.getClass() != keyClass) {
+                throw new IOException("wrong key class: "+key.getClass().getName()
+                        +" is not "+keyClass);
+            }
+            if (val.getClass() != valClass) {
+                throw new IOException("wrong value class: "+val.getClass().getName()
+                        +" is not "+valClass);
+            }
+            keyBuffer.reset();
+            key.writer(keyBuffer);
+            valueBuffer.reset();
+            val.writer(valueBuffer);
+            appendRaw(keyBuffer.getData(),0,keyBuffer.getLength(),
+                    valueBuffer.getData(),0,valueBuffer.getLength());
+        }
+
+        public synchronized void appendRaw(byte[] keyData,int keyOffset,int keyLength,
+                                           byte[] valData,int valOffset,int valLength)throws IOException{
+            checkOpen();
+            if (keyLength < 0) {
+                throw new IOException("negative length keys not allowed: "+keyLength);
+            }
+            WritableUtils.writeVInt(current.keyLengths,keyLength);
+            current.keys.write(keyData,keyOffset,keyLength);
+            WritableUtils.writeVInt(current.valueLengths,valLength);
+            current.values.write(valData,valOffset,valLength);
+            current.records++;
+            if (current.rawSize() >= compressionBlockSize) {
+                sync();
+            }
+        }
+
+        /**
+         * Seal the buffered records into a block and queue it for compression.
+         * Blocks compressed ahead of their predecessors wait to be written.
+         */
+        public synchronized void sync()throws IOException{
+            checkOpen();
+            if (current.records == 0) {
+                return;
+            }
+            final RawBlock sealed=current;
+            current=new RawBlock();
+            while (inFlight.size() >= maxInFlight) {
+                writeBlock(await(inFlight.poll()));
+            }
+            inFlight.add(compressors.submit(()->sealed.compress(deflaters)));
+            while (!inFlight.isEmpty() && inFlight.peek().isDone()) {
+                writeBlock(await(inFlight.poll()));
+            }
+        }
+
+        private void writeBlock(CompressedBlock block)throws IOException{
+            out.writeInt(SequenceFile.SYNC_ESCAPE);
+            out.write(sync);
+            WritableUtils.writeVInt(out,block.records);
+            for (int i = 0; i < NUM_BUFFERS; i++) {
+                WritableUtils.writeVInt(out,block.lengths[i]);
+                out.write(block.data[i],0,block.lengths[i]);
+            }
+        }
+
+        /** Compress and write every buffered record, then flush the stream. */
+        @Override
+        public synchronized void flush()throws IOException{
+            sync();
+            while (!inFlight.isEmpty()) {
+                writeBlock(await(inFlight.poll()));
+            }
+            out.flush();
+        }
+
+        private void checkOpen()throws IOException{
+            if (closed) {
+                throw new IOException("Writer is closed");
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            try {
+                flush();
+            }finally {
+                closed=true;
+                for (Future<CompressedBlock> future : inFlight) {
+                    future.cancel(true);
+                }
+                inFlight.clear();
+                if (ownPool) {
+                    HadoopExecutors.shutdown(compressors,LOG,1,TimeUnit.MINUTES);
+                }
+                deflaters.close();
+                if (ownStream) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    /** The inflated buffers of one block, iterated record by record. */
+    private static final class DecompressedBlock {
+        private final int records;
+        private final DataInputBuffer keyLengths=new DataInputBuffer();
+        private final DataInputBuffer keys=new DataInputBuffer();
+        private final DataInputBuffer valueLengths=new DataInputBuffer();
+        private final DataInputBuffer values=new DataInputBuffer();
+        private int consumed;
+
+        DecompressedBlock(int records){
+            this.records=records;
+        }
+
+        DataInputBuffer buffer(int i){
+            switch (i){
+                case 0: return keyLengths;
+                case 1: return keys;
+                case 2: return valueLengths;
+                default: return values;
+            }
+        }
+
+        static DecompressedBlock inflate(CompressedBlock block,CodecCache<Inflater> inflaters)throws IOException{
+            DecompressedBlock result=new DecompressedBlock(block.records);
+            Inflater inflater=inflaters.acquire();
+            try {
+                for (int i = 0; i < NUM_BUFFERS; i++) {
+                    inflater.reset();
+                    inflater.setInput(block.data[i],0,block.lengths[i]);
+                    byte[] out=new byte[Math.max(64,block.lengths[i]*4)];
+                    int len=0;
+                    while (!inflater.finished()) {
+                        if (len == out.length) {
+                            out=Arrays.copyOf(out,out.length<<1);
+                        }
+                        int n=inflater.inflate(out,len,out.length-len);
+                        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new EOFException("Truncated compressed buffer");
+                        }
+                        len+=n;
+                    }
+                    result.buffer(i).reset(out,0,len);
+                }
+            }catch (DataFormatException e){
+                throw new IOException("Corrupt compressed block",e);
+            }finally {
+                inflaters.release(inflater);
+            }
+            return result;
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final String filename;
+        private final DataInputStream in;
+        private final byte[] sync=new byte[SequenceFile.SYNC_HASH_SIZE];
+        private final byte[] syncCheck=new byte[SequenceFile.SYNC_HASH_SIZE];
+        private final SequenceFile.Metadata metadata=new SequenceFile.Metadata();
+        private final String keyClassName;
+        private final String valClassName;
+        private final int readahead;
+        private final ExecutorService decompressors;
+        private final boolean ownPool;
+        private final CodecCache<Inflater> inflaters=new CodecCache<>(Inflater::new,Inflater::end);
+        private final ArrayDeque<Future<DecompressedBlock>> ahead=new ArrayDeque<>();
+        private DecompressedBlock current;
+        private boolean eof;
+
+        public Reader(Configuration conf,InputStream in,String filename)throws IOException{
+            this(conf,in,filename,null);
+        }
+
+        /**
+         * @param decompressors executor of the decompression tasks, which the
+         *                      reader does not shut down; null starts a pool
+         *                      for this reader.
+         */
+        public Reader(Configuration conf,InputStream in,String filename,
+                      ExecutorService decompressors)throws IOException{
+            this.filename=filename==null?"<unknown>":filename;
+            this.in=new DataInputStream(new BufferedInputStream(in,64*1024));
+            byte[] version=SequenceFile.versionBlock();
+            byte[] versionBlock=new byte[version.length];
+            this.in.readFully(versionBlock);
+            if (versionBlock[0] != version[0]
+                    || versionBlock[1] != version[1]
+                    || versionBlock[2] != version[2]) {
+                throw new IOException(this.filename+" not a SequenceFile");
+            }
+            if (versionBlock[3] != version[3]) {
+                throw new IOException(this.filename+" has unsupported SequenceFile version "
+                        +versionBlock[3]);
+            }
+            keyClassName=Text.readString(this.in);
+            valClassName=Text.readString(this.in);
+            boolean compressed=this.in.readBoolean();
+            boolean blockCompressed=this.in.readBoolean();
+            if (!compressed || !blockCompressed) {
+                throw new IOException(this.filename+" is not block-compressed");
+            }
+            String codecClassName=Text.readString(this.in);
+            if (!CODEC_CLASS_NAME.equals(codecClassName)) {
+                throw new IOException(this.filename+" uses unsupported codec "+codecClassName);
+            }
+            metadata.readFields(this.in);
+            this.in.readFully(sync);
+            this.readahead=Math.max(1,conf.getInt(IO_SEQFILE_DECOMPRESS_READAHEAD_BLOCKS_KEY,
+                    IO_SEQFILE_DECOMPRESS_READAHEAD_BLOCKS_DEFAULT));
+            this.ownPool=decompressors == null;
+            this.decompressors=ownPool?newPool("seqfile-decompressor",readahead):decompressors;
+        }
+
+        public String getKeyClassName(){return keyClassName;}
+        public String getValueClassName(){return valClassName;}
+        public SequenceFile.Metadata getMetadata(){return metadata;}
+
+        /** Read the next block from the stream, or null at end of file. */
+        private CompressedBlock readCompressedBlock()throws IOException{
+            int escape;
+            try {
+                escape=in.readInt();
+            }catch (EOFException e){
+                return null;
+            }
+            if (escape != SequenceFile.SYNC_ESCAPE) {
+                throw new IOException(filename+": expected sync escape, found "+escape);
+            }
+            in.readFully(syncCheck);
+            if (!Arrays.equals(sync,syncCheck)) {
+                throw new IOException("File is corrupt: "+filename);
+            }
+            CompressedBlock block=new CompressedBlock(WritableUtils.readVInt(in));
+            for (int i = 0; i < NUM_BUFFERS; i++) {
+                int length=WritableUtils.readVIntRange(in,0,Integer.MAX_VALUE);
+                block.data[i]=new byte[length];
+                block.lengths[i]=length;
+                in.readFully(block.data[i]);
+            }
+            return block;
+        }
+
+        private void fillAhead()throws IOException{
+            while (!eof && ahead.size() < readahead) {
+                final CompressedBlock block=readCompressedBlock();
+                if (block == null) {
+                    eof=true;
+                }else {
+                    ahead.add(decompressors.submit(()->DecompressedBlock.inflate(block,inflaters)));
+                }
+            }
+        }
+
+        private boolean advance()throws IOException{
+            while (current == null || current.consumed == current.records) {
+                fillAhead();
+                if (ahead.isEmpty()) {
+                    return false;
+                }
+                current=await(ahead.poll());
+            }
+            return true;
+        }
+
+        /** Read the next raw key and value into the buffers. */
+        public synchronized boolean nextRaw(DataOutputBuffer key,DataOutputBuffer val)throws IOException{
+            if (!advance()) {
+                return false;
+            }
+            int keyLength=WritableUtils.readVInt(current.keyLengths);
+            key.write(current.keys,keyLength);
+            int valLength=WritableUtils.readVInt(current.valueLengths);
+            val.write(current.values,valLength);
+            current.consumed++;
+            return true;
+        }
+
+        public synchronized boolean next(Writable key,Writable val)throws IOException{
+            if (!advance()) {
+                return false;
+            }
+            int keyLength=WritableUtils.readVInt(current.keyLengths);
+            int keyStart=current.keys.getPosition();
+            key.readFields(current.keys);
+            if (current.keys.getPosition()-keyStart != keyLength) {
+                throw new IOException(key+" read "+(current.keys.getPosition()-keyStart)
+                        +" bytes, should read "+keyLength);
+            }
+            WritableUtils.readVInt(current.valueLengths);
+            val.readFields(current.values);
+            current.consumed++;
+            return true;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            for (Future<DecompressedBlock> future : ahead) {
+                future.cancel(true);
+            }
+            ahead.clear();
+            current=null;
+            if (ownPool) {
+                HadoopExecutors.shutdown(decompressors,LOG,1,TimeUnit.MINUTES);
+            }
+            inflaters.close();
+            in.close();
+        }
+    }
+}
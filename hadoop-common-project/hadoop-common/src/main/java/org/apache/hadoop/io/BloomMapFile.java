@@ -2,7 +2,6 @@ package org.apache.hadoop.io;
 
 import com.apache.hadoop.classification.InterfaceAudience;
 import com.apache.hadoop.classification.InterfaceStability;
-import com.jcraft.jsch.HASH;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.fs.FileSystem;
@@ -10,12 +9,14 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.util.Hash;
 import org.apache.hadoop.util.Progressable;
+import org.apache.hadoop.util.bloom.BlockedBloomFilter;
 import org.apache.hadoop.util.bloom.DynamicBloomFilter;
 import org.apache.hadoop.util.bloom.Filter;
 import org.apache.hadoop.util.bloom.Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -47,7 +48,7 @@ public class BloomMapFile {
         return ba;
     }
     public static class Writer extends MapFile.Writer{
-        private DynamicBloomFilter bloomFilter;
+        private Filter bloomFilter;
         private int numKeys;
         private int vectorSize;
         private Key bloomKey=new Key();
@@ -102,7 +103,7 @@ public class BloomMapFile {
                       Class valClass)throws IOException{
             this(conf,new Path(dirName),keyClass(keyClass),valueClass(valClass));
         }
-        public Writer(Configuration conf,Path dir,SequenceFile.Writer writer.Option... options)throws IOException{
+        public Writer(Configuration conf,Path dir,SequenceFile.Writer.Option... options)throws IOException{
             super(conf,dir,options);
             this.fs=dir.getFileSystem(conf);
             this.dir=dir;
@@ -113,6 +114,16 @@ public class BloomMapFile {
                     CommonConfigurationKeysPublic.IO_MAPFILE_BLOOM_SIZE_DEFAULT);
             float errorRate=conf.getFloat(CommonConfigurationKeysPublic.IO_MAPFILE_BLOOM_ERROR_RATE_KEY,
                     CommonConfigurationKeysPublic.IO_MAPFILE_BLOOM_ERROR_RATE_DEFAULT);
+            String type=conf.getTrimmed(CommonConfigurationKeysPublic.IO_MAPFILE_BLOOM_TYPE_KEY,
+                    CommonConfigurationKeysPublic.IO_MAPFILE_BLOOM_TYPE_DEFAULT);
+            if ("blocked".equalsIgnoreCase(type)) {
+                bloomFilter=BlockedBloomFilter.create(numKeys,errorRate);
+                return;
+            }
+            if (!"dynamic".equalsIgnoreCase(type)) {
+                LOG.warn("Unknown {} {}, using dynamic",
+                        CommonConfigurationKeysPublic.IO_MAPFILE_BLOOM_TYPE_KEY,type);
+            }
             vectorSize=(int) Math.ceil((double) (-HASH_COUNT*numKeys)/
                     Math.log(1.0-Math.pow(errorRate,1.0/HASH_COUNT)));
             bloomFilter=new DynamicBloomFilter(vectorSize,HASH_COUNT,
@@ -124,6 +135,10 @@ public class BloomMapFile {
             super.append(key,val);
             buf.reset();
             key.writer(buf);
+            if (bloomFilter instanceof BlockedBloomFilter) {
+                ((BlockedBloomFilter) bloomFilter).add(buf.getData(),0,buf.getLength());
+                return;
+            }
             bloomKey.set(byteArrayForBloomKey(buf),1.0);
             bloomFilter.add(bloomKey);
         }
@@ -132,7 +147,7 @@ public class BloomMapFile {
             super.close();
             DataOutputStream out=fs.create(new Path(dir,BLOOM_FILE_NAME),true);
             try {
-                bloomFilter.write(out);
+                bloomFilter.writer(out);
                 out.flush();
                 out.close();
                 out=null;
@@ -142,9 +157,8 @@ public class BloomMapFile {
         }
     }
     public static class Reader extends MapFile.Reader{
-        private DynamicBloomFilter bloomFilter;
+        private Filter bloomFilter;
         private DataOutputBuffer buf=new DataOutputBuffer();
-        private Key bloomKey=new Key();
         public Reader(Path dir,Configuration conf,SequenceFile.Reader.Option... options)throws IOException{
             super(dir,conf,options);
             initBloomFilter(dir,conf);
@@ -167,26 +181,43 @@ public class BloomMapFile {
             DataInputStream in=null;
             try {
                 FileSystem fs=dirName.getFileSystem(conf);
-                in=fs.open(new Path(dirName,BLOOM_FILE_NAME));
-                bloomFilter=new DynamicBloomFilter();
-                bloomFilter.readFields(in);
+                in=new DataInputStream(new BufferedInputStream(
+                        fs.open(new Path(dirName,BLOOM_FILE_NAME))));
+                bloomFilter=readBloomFilter(in);
                 in.close();
                 in=null;
-            }catch (IOException e){
+            }catch (IOException|IllegalArgumentException e){
+                // a missing, corrupt or unsupported filter only costs lookups
                 LOG.warn("Can't open BloomFilter: "+e+" - fallback to MapFile.");
                 bloomFilter=null;
             }finally {
                 IOUtils.closeStream(in);
             }
         }
+        /**
+         * Pick the filter class from the version the bloom file starts with.
+         */
+        private static Filter readBloomFilter(DataInputStream in)throws IOException{
+            in.mark(4);
+            int version=in.readInt();
+            in.reset();
+            Filter filter=version==BlockedBloomFilter.VERSION?
+                    new BlockedBloomFilter():new DynamicBloomFilter();
+            filter.readFields(in);
+            return filter;
+        }
+
+        /**
+         * Checks if this MapFile has the indicated key. The key is tested in
+         * its serialized form, without copying it.
+         */
         public boolean probablyHashKey(WritableComparable key)throws IOException{
             if (bloomFilter == null) {
                 return true;
             }
             buf.reset();
             key.writer(buf);
-            bloomFilter.set(byteArrayForBloomKey(buf),1.0);
-            return bloomFilter.membershipTest(bloomKey);
+            return bloomFilter.membershipTest(buf.getData(),0,buf.getLength());
         }
         @Override
         public synchronized Writable get(WritableComparable key,Writable val)throws IOException{
@@ -0,0 +1,107 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable {@link BinaryComparable} view over the remaining bytes of a
+ * {@link ByteBuffer}, such as a region of a memory-mapped file.
+ * <p>
+ * Comparisons between two views run directly on the buffers. Only
+ * {@link #getBytes()} copies, into a scratch array owned by the view which
+ * is reused across {@link #set(ByteBuffer)} calls.
+ * The view is not thread safe and is only valid until the next call to
+ * {@link #set(ByteBuffer)} or until the underlying buffer changes.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class ByteBufferComparable extends BinaryComparable {
+    private static final byte[] EMPTY=new byte[0];
+    private ByteBuffer buffer;
+    private byte[] scratch=EMPTY;
+    private boolean copied;
+
+    public ByteBufferComparable(){}
+
+    public ByteBufferComparable(ByteBuffer buffer){
+        set(buffer);
+    }
+
+    /** Point this view at the remaining bytes of the buffer. */
+    public ByteBufferComparable set(ByteBuffer buffer){
+        this.buffer=buffer;
+        this.copied=false;
+        return this;
+    }
+
+    /** The viewed buffer; its position and limit delimit the bytes. */
+    public ByteBuffer getBuffer(){
+        return buffer;
+    }
+
+    @Override
+    public int getLength() {
+        return buffer==null?0:buffer.remaining();
+    }
+
+    /**
+     * The viewed bytes in an array owned by this view; only the first
+     * {@link #getLength()} bytes are valid.
+     */
+    @Override
+    public byte[] getBytes() {
+        if (buffer == null) {
+            return EMPTY;
+        }
+        if (buffer.hasArray()) {
+            if (buffer.arrayOffset()+buffer.position() == 0) {
+                return buffer.array();
+            }
+        }
+        if (!copied) {
+            int length=buffer.remaining();
+            if (scratch.length < length) {
+                scratch=new byte[Math.max(length,scratch.length<<1)];
+            }
+            buffer.duplicate().get(scratch,0,length);
+            copied=true;
+        }
+        return scratch;
+    }
+
+    @Override
+    public int compareTo(BinaryComparable o) {
+        if (this == o) {
+            return 0;
+        }
+        if (o instanceof ByteBufferComparable) {
+            return compareBuffers(buffer,((ByteBufferComparable) o).buffer);
+        }
+        return super.compareTo(o);
+    }
+
+    /** Compare the remaining bytes of two buffers as unsigned bytes. */
+    static int compareBuffers(ByteBuffer b1,ByteBuffer b2){
+        return FastByteComparisons.compareTo(b1,b1.position(),b1.remaining(),
+                b2,b2.position(),b2.remaining());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash=1;
+        if (buffer == null) {
+            return hash;
+        }
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            hash=(31*hash)+(int) buffer.get(i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,49 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.Locale;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_IMPL_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_IMPL_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_MAGAZINE_SIZE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_MAGAZINE_SIZE_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_MAX_BUFFERS_PER_CLASS_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_MAX_BUFFERS_PER_CLASS_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_MAX_BYTES_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_BYTE_BUFFER_POOL_MAX_BYTES_KEY;
+
+/**
+ * Creates the {@link ByteBufferPool} selected by
+ * {@value org.apache.hadoop.fs.CommonConfigurationKeys#IO_BYTE_BUFFER_POOL_IMPL_KEY}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class ByteBufferPools {
+    public static final String ELASTIC="elastic";
+    public static final String STRIPED="striped";
+
+    private ByteBufferPools(){}
+
+    public static ByteBufferPool createPool(Configuration conf){
+        String impl=conf.getTrimmed(IO_BYTE_BUFFER_POOL_IMPL_KEY,
+                IO_BYTE_BUFFER_POOL_IMPL_DEFAULT).toLowerCase(Locale.ROOT);
+        switch (impl){
+            case ELASTIC:
+                return new ElasticByteBufferPool();
+            case STRIPED:
+                return new StripedByteBufferPool(
+                        conf.getLongBytes(IO_BYTE_BUFFER_POOL_MAX_BYTES_KEY,
+                                IO_BYTE_BUFFER_POOL_MAX_BYTES_DEFAULT),
+                        conf.getInt(IO_BYTE_BUFFER_POOL_MAX_BUFFERS_PER_CLASS_KEY,
+                                IO_BYTE_BUFFER_POOL_MAX_BUFFERS_PER_CLASS_DEFAULT),
+                        conf.getInt(IO_BYTE_BUFFER_POOL_MAGAZINE_SIZE_KEY,
+                                IO_BYTE_BUFFER_POOL_MAGAZINE_SIZE_DEFAULT));
+            default:
+                throw new IllegalArgumentException("Unknown value of "
+                        +IO_BYTE_BUFFER_POOL_IMPL_KEY+": "+impl);
+        }
+    }
+}
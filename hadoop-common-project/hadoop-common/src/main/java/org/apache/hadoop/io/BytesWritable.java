@@ -115,7 +115,7 @@ public class BytesWritable extends BinaryComparable implements WritableComparabl
         }
     }
     static {
-        WritableComparator.define(BytesWritable.class,new UTF8.Comparator());
+        WritableComparator.define(BytesWritable.class,new Comparator());
     }
 
 }
@@ -0,0 +1,54 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the serialized layout of a {@link WritableComparable} key made
+ * of primitive writable fields, so that {@link WritableComparator#get}
+ * compares its serialized form with a {@link CompositeKeyComparator}
+ * instead of deserializing both keys.
+ * <p>
+ * The fields are listed in the order the key writes them, which must also
+ * be the order in which its {@code compareTo} compares them, each by its
+ * natural order:
+ * <pre>
+ * &#64;CompositeKey({CompositeKey.Field.TEXT, CompositeKey.Field.LONG})
+ * public class UserTimeKey implements WritableComparable&lt;UserTimeKey&gt; {
+ *     private final Text user=new Text();
+ *     private final LongWritable time=new LongWritable();
+ *     ...
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public @interface CompositeKey {
+    /** The fields of the key in serialization order. */
+    Field[] value();
+
+    /** The serialized forms of fields. */
+    enum Field {
+        /** Four byte big endian int, as written by {@link IntWritable}. */
+        INT,
+        /** Eight byte big endian long, as written by {@link LongWritable}. */
+        LONG,
+        /** Zero-compressed int, as written by {@link VIntWritable}. */
+        VINT,
+        /** Zero-compressed long, as written by {@link VLongWritable}. */
+        VLONG,
+        /** Zero-compressed length and UTF-8 bytes, as written by {@link Text}. */
+        TEXT,
+        /** Four byte length and bytes, as written by {@link BytesWritable}. */
+        BYTES
+    }
+}
@@ -0,0 +1,129 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.IOException;
+
+/**
+ * Compares serialized composite keys field by field without
+ * deserializing them, from the layout declared by {@link CompositeKey}.
+ * Fixed size fields are compared as numbers, zero-compressed ones are
+ * decoded in place and text and bytes are compared as unsigned bytes, so
+ * the result agrees with comparing the keys' fields by their
+ * {@code compareTo}. The comparator keeps no state and may be shared by
+ * threads.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class CompositeKeyComparator extends WritableComparator {
+    private static final int INT=0;
+    private static final int LONG=1;
+    private static final int VINT=2;
+    private static final int TEXT=3;
+    private static final int BYTES=4;
+
+    private final int[] fields;
+
+    public CompositeKeyComparator(Class<? extends WritableComparable> keyClass,
+                                  CompositeKey.Field... fields){
+        super(keyClass);
+        if (fields.length == 0) {
+            throw new IllegalArgumentException("No fields for composite key "+keyClass);
+        }
+        this.fields=new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            switch (fields[i]) {
+                case INT:
+                    this.fields[i]=INT;
+                    break;
+                case LONG:
+                    this.fields[i]=LONG;
+                    break;
+                case VINT:
+                case VLONG:
+                    this.fields[i]=VINT;
+                    break;
+                case TEXT:
+                    this.fields[i]=TEXT;
+                    break;
+                default:
+                    this.fields[i]=BYTES;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Create the comparator for a class annotated with {@link CompositeKey}
+     * and register it with {@link WritableComparator#define}.
+     * @param keyClass the key class
+     * @return the comparator registered
+     */
+    public static CompositeKeyComparator define(Class<? extends WritableComparable> keyClass){
+        CompositeKey key=keyClass.getAnnotation(CompositeKey.class);
+        if (key == null) {
+            throw new IllegalArgumentException(keyClass+" is not annotated with @"
+                    +CompositeKey.class.getSimpleName());
+        }
+        CompositeKeyComparator comparator=new CompositeKeyComparator(keyClass,key.value());
+        define(keyClass,comparator);
+        return comparator;
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        int p1=s1;
+        int p2=s2;
+        try {
+            for (int field : fields) {
+                int c;
+                switch (field) {
+                    case INT:
+                        c=Integer.compare(readInt(b1,p1),readInt(b2,p2));
+                        p1+=4;
+                        p2+=4;
+                        break;
+                    case LONG:
+                        c=Long.compare(readLong(b1,p1),readLong(b2,p2));
+                        p1+=8;
+                        p2+=8;
+                        break;
+                    case VINT:
+                        c=Long.compare(readVLong(b1,p1),readVLong(b2,p2));
+                        p1+=WritableUtils.decodeVIntSize(b1[p1]);
+                        p2+=WritableUtils.decodeVIntSize(b2[p2]);
+                        break;
+                    case TEXT: {
+                        int n1=WritableUtils.decodeVIntSize(b1[p1]);
+                        int n2=WritableUtils.decodeVIntSize(b2[p2]);
+                        int len1=readVInt(b1,p1);
+                        int len2=readVInt(b2,p2);
+                        c=compareBytes(b1,p1+n1,len1,b2,p2+n2,len2);
+                        p1+=n1+len1;
+                        p2+=n2+len2;
+                        break;
+                    }
+                    default: {
+                        int len1=readInt(b1,p1);
+                        int len2=readInt(b2,p2);
+                        c=compareBytes(b1,p1+4,len1,b2,p2+4,len2);
+                        p1+=4+len1;
+                        p2+=4+len2;
+                        break;
+                    }
+                }
+                if (c != 0) {
+                    return c;
+                }
+            }
+        }catch (IOException|ArrayIndexOutOfBoundsException e){
+            throw new IllegalArgumentException("Malformed "+getKeyClass().getName()+" key",e);
+        }
+        if (p1 > s1+l1 || p2 > s2+l2) {
+            throw new IllegalArgumentException("Malformed "+getKeyClass().getName()
+                    +" key: fields exceed the key length");
+        }
+        return 0;
+    }
+}
@@ -2,10 +2,11 @@ package org.apache.hadoop.io;
 
 import com.apache.hadoop.classification.InterfaceAudience;
 import com.apache.hadoop.classification.InterfaceStability;
-import javafx.scene.effect.BlendBuilder;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
 
 /**
  * @Description: TODO
@@ -23,6 +24,20 @@ public class DataInputBuffer extends DataInputStream {
             this.mark=start;
             this.pos=start;
         }
+        /** Read a variable length long straight from buf. */
+        long readVLong()throws EOFException{
+            if (pos >= count) {
+                throw new EOFException();
+            }
+            byte first=buf[pos];
+            int n=WritableUtils.decodeVIntSize(first);
+            if (pos+n > count) {
+                throw new EOFException();
+            }
+            long i=n==1?first:WritableUtils.decodeVLong(buf,pos);
+            pos+=n;
+            return i;
+        }
         public byte[] getData(){return buf;}
         public int getPosition(){return pos;}
         public int getLength(){return count;}
@@ -82,6 +97,16 @@ public class DataInputBuffer extends DataInputStream {
     public void reset(byte[] input,int start,int length){
         buffer.reset(input,start, length);
     }
+    /**
+     * Read a long as {@link WritableUtils#readVLong(java.io.DataInput)}
+     * does, decoding from the buffer directly rather than a byte at a time.
+     */
+    public long readVLong()throws IOException{
+        return buffer.readVLong();
+    }
+    public int readVInt()throws IOException{
+        return WritableUtils.readVInt(this);
+    }
     public byte[] getData(){return buffer.getData();}
     public int getPosition(){return buffer.getPosition();}
     public int getLength(){return buffer.getLength();}
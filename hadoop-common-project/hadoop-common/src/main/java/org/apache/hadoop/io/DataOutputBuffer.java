@@ -5,6 +5,7 @@ import com.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.thirdparty.com.google.common.base.Preconditions;
 
 import java.io.*;
+import java.util.Arrays;
 
 @InterfaceAudience.LimitedPrivate({"HDFS","MapReduce"})
 @InterfaceStability.Unstable
@@ -24,6 +25,15 @@ public class DataOutputBuffer extends DataOutputStream {
             in.readFully(buf,count,len);
             count=newCount;
         }
+        /** Append a variable length long, encoded straight into buf. */
+        int writeVLong(long i){
+            if (count+9 > buf.length) {
+                buf=Arrays.copyOf(buf,Math.max(buf.length<<1,count+9));
+            }
+            int n=WritableUtils.encodeVLong(buf,count,i);
+            count+=n;
+            return n;
+        }
         private int setCount(int newCount){
             Preconditions.checkArgument(newCount>=0 && newCount<=buf.length);
             int oldCount=count;
@@ -57,6 +67,19 @@ public class DataOutputBuffer extends DataOutputStream {
     public void write(DataInput in,int length)throws IOException{
         buffer.write(in,length);
     }
+    /**
+     * Write a long as {@link WritableUtils#writeVLong(DataOutput, long)}
+     * does, but into the buffer directly rather than a byte at a time.
+     */
+    public void writeVLong(long i){
+        written+=buffer.writeVLong(i);
+        if (written < 0) {
+            written=Integer.MAX_VALUE;
+        }
+    }
+    public void writeVInt(int i){
+        writeVLong(i);
+    }
     public void writeTo(OutputStream out)throws IOException{
         buffer.writeTo(out);
     }
@@ -5,17 +5,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sun.misc.Unsafe;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedExceptionAction;
 
 /**
- * @Description: TODO
- * @Author: yuan
- * @Date: 2023/07/23
- **/
+ * Lexicographic comparison of byte ranges as unsigned bytes.
+ * <p>
+ * Arrays are compared with {@code Arrays.compareUnsigned} where the JDK
+ * has it (9 and later), which the JIT vectorizes; otherwise eight bytes at
+ * a time through {@code sun.misc.Unsafe}, or a byte at a time if neither
+ * is usable. Buffers are compared without copying, eight bytes at a time.
+ */
 public abstract class FastByteComparisons {
     static final Logger logger= LoggerFactory.getLogger(FastByteComparisons.class);
 
@@ -33,11 +40,72 @@ public abstract class FastByteComparisons {
         return LexicographicalComparerHolder.BEST_COMPARER.compareTo(
                 b1, s1, l1, b2, s2, l2);
     }
+
+    /**
+     * Lexicographically compare the ranges of two buffers, as unsigned bytes,
+     * regardless of their byte order. Positions and limits are not used
+     * or changed.
+     * @return negative, zero or positive as the first range is less than,
+     * equal to or greater than the second.
+     */
+    public static int compareTo(ByteBuffer b1,int s1,int l1,
+                                ByteBuffer b2,int s2,int l2){
+        if (b1.hasArray() && b2.hasArray()) {
+            return compareTo(b1.array(),b1.arrayOffset()+s1,l1,
+                    b2.array(),b2.arrayOffset()+s2,l2);
+        }
+        if (b1 == b2 && s1 == s2 && l1 == l2) {
+            return 0;
+        }
+        boolean swap1=b1.order() != ByteOrder.BIG_ENDIAN;
+        boolean swap2=b2.order() != ByteOrder.BIG_ENDIAN;
+        int minLength=Math.min(l1,l2);
+        int strideLimit=minLength&~7;
+        int i;
+        for (i = 0; i < strideLimit; i += 8) {
+            long lw=b1.getLong(s1+i);
+            long rw=b2.getLong(s2+i);
+            if (swap1) {
+                lw=Long.reverseBytes(lw);
+            }
+            if (swap2) {
+                rw=Long.reverseBytes(rw);
+            }
+            if (lw != rw) {
+                int n=56-(Long.numberOfLeadingZeros(lw^rw)&~7);
+                return ((int) ((lw>>>n)&0xFF))-((int) ((rw>>>n)&0xFF));
+            }
+        }
+        for (; i < minLength; i++) {
+            int a=b1.get(s1+i)&0xff;
+            int b=b2.get(s2+i)&0xff;
+            if (a != b) {
+                return a-b;
+            }
+        }
+        return l1-l2;
+    }
+
     private static class LexicographicalComparerHolder{
+        static final String ARRAYS_COMPARER_NAME=
+                LexicographicalComparerHolder.class.getName()+"$ArraysComparer";
         static final String UNSAFE_COMPARER_NAME=
                 LexicographicalComparerHolder.class.getName()+"$UnsafeComparer";
         static final Comparer<byte[]> BEST_COMPARER=getBestComparer();
         static Comparer<byte[]> getBestComparer(){
+            try {
+                Class<?> clazz=Class.forName(ARRAYS_COMPARER_NAME);
+                @SuppressWarnings("unchecked")
+                Comparer<byte[]> comparer= (Comparer<byte[]>) clazz.getEnumConstants()[0];
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Arrays.compareUnsigned comparer selected");
+                }
+                return comparer;
+            }catch (Throwable t){
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Arrays.compareUnsigned not available: {}",t.toString());
+                }
+            }
             if (System.getProperty("os.arch").toLowerCase().startsWith("sparc")) {
                 if (logger.isTraceEnabled()) {
                     logger.trace("Lexicographical comparer selected for " +
@@ -85,6 +153,41 @@ public abstract class FastByteComparisons {
                 return length1-length2;
             }
         }
+        /**
+         * Compares with {@code Arrays.compareUnsigned} of JDK 9 and later,
+         * bound at class initialization, which fails on older JDKs.
+         */
+        @SuppressWarnings("unused")
+        private enum ArraysComparer implements Comparer<byte[]>{
+            INSTANCE;
+            static final MethodHandle COMPARE_UNSIGNED;
+            static {
+                try {
+                    COMPARE_UNSIGNED=MethodHandles.publicLookup().findStatic(java.util.Arrays.class,
+                            "compareUnsigned",MethodType.methodType(int.class,
+                                    byte[].class,int.class,int.class,byte[].class,int.class,int.class));
+                }catch (NoSuchMethodException|IllegalAccessException e){
+                    throw new ExceptionInInitializerError(e);
+                }
+            }
+
+            @Override
+            public int compareTo(byte[] buffer1, int offset1, int length1, byte[] buffer2, int offset2, int length2) {
+                if (buffer1==buffer2&&
+                offset1==offset2&&
+                length1==length2){
+                    return 0;
+                }
+                try {
+                    return (int) COMPARE_UNSIGNED.invokeExact(buffer1,offset1,offset1+length1,
+                            buffer2,offset2,offset2+length2);
+                }catch (RuntimeException|Error e){
+                    throw e;
+                }catch (Throwable t){
+                    throw new IllegalStateException(t);
+                }
+            }
+        }
         @SuppressWarnings("unused")
         private enum UnsafeComparer implements Comparer<byte[]>{
             INSTANCE;
@@ -0,0 +1,232 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_MAP_INDEX_CACHE_MAX_BYTES_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_MAP_INDEX_CACHE_MAX_BYTES_KEY;
+
+/**
+ * Process-wide cache of MapFile indexes.
+ * <p>
+ * Every index is loaded once per (path, modification time) into a
+ * {@link PackedKeyIndex} and shared by all readers of the file; a rewritten
+ * file has a new modification time and therefore a new entry. The cache
+ * is bounded by the memory of the packed indexes and evicts the least
+ * recently used ones. Concurrent requests for an index which is not cached
+ * yet wait for a single load.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public final class MapFileIndexCache {
+    private static final Logger LOG=LoggerFactory.getLogger(MapFileIndexCache.class);
+    private static MapFileIndexCache instance;
+
+    /** Fills a builder with the entries of an index file, in file order. */
+    @FunctionalInterface
+    public interface IndexLoader {
+        void load(PackedKeyIndex.Builder builder)throws IOException;
+    }
+
+    /** Opens the stream of an index file. */
+    @FunctionalInterface
+    public interface StreamOpener {
+        InputStream open()throws IOException;
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<CacheKey, Entry> entries=
+            new LinkedHashMap<>(16,0.75f,true);
+    private long cachedBytes;
+    private final LongAdder hits=new LongAdder();
+    private final LongAdder misses=new LongAdder();
+
+    @VisibleForTesting
+    MapFileIndexCache(long maxBytes){
+        this.maxBytes=maxBytes;
+    }
+
+    public static synchronized MapFileIndexCache getInstance(Configuration conf){
+        if (instance == null) {
+            instance=new MapFileIndexCache(conf.getLongBytes(IO_MAP_INDEX_CACHE_MAX_BYTES_KEY,
+                    IO_MAP_INDEX_CACHE_MAX_BYTES_DEFAULT));
+        }
+        return instance;
+    }
+
+    /**
+     * Load the index of a MapFile written by MapFile.Writer: a block
+     * compressed SequenceFile of serialized keys and LongWritable positions.
+     */
+    public static IndexLoader blockCompressedIndexLoader(final Configuration conf,
+                                                         final StreamOpener opener){
+        return builder -> {
+            try (BlockCompressedSequenceFile.Reader reader=
+                         new BlockCompressedSequenceFile.Reader(conf,opener.open(),null)) {
+                DataOutputBuffer key=new DataOutputBuffer();
+                DataOutputBuffer value=new DataOutputBuffer();
+                while (reader.nextRaw(key.reset(),value.reset())) {
+                    if (value.getLength() != 8) {
+                        throw new IOException("Index position is not a LongWritable");
+                    }
+                    builder.add(key.getData(),0,key.getLength(),
+                            WritableComparator.readLong(value.getData(),0));
+                }
+            }
+        };
+    }
+
+    /**
+     * Return the index of the file, loading it if it is not cached.
+     * @param indexFile path of the index file.
+     * @param modificationTime modification time of the index file.
+     * @param loader used to read the file on a miss.
+     */
+    public PackedKeyIndex get(Path indexFile,long modificationTime,IndexLoader loader)throws IOException{
+        CacheKey key=new CacheKey(indexFile.toString(),modificationTime);
+        Entry entry;
+        boolean owner=false;
+        synchronized (this){
+            entry=entries.get(key);
+            if (entry == null) {
+                entry=new Entry(new FutureTask<>(()->{
+                    PackedKeyIndex.Builder builder=new PackedKeyIndex.Builder();
+                    loader.load(builder);
+                    return builder.build();
+                }));
+                entries.put(key,entry);
+                owner=true;
+            }
+        }
+        FutureTask<PackedKeyIndex> task=entry.task;
+        if (owner) {
+            misses.increment();
+            task.run();
+        }else {
+            hits.increment();
+        }
+        PackedKeyIndex index;
+        try {
+            index=task.get();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("interrupted loading "+indexFile).initCause(e);
+        }catch (ExecutionException e){
+            synchronized (this){
+                entries.remove(key,entry);
+            }
+            Throwable cause=e.getCause();
+            throw cause instanceof IOException?(IOException) cause:
+                    new IOException("Failed to load index "+indexFile,cause);
+        }
+        if (owner) {
+            admit(key,entry,index);
+        }
+        return index;
+    }
+
+    private synchronized void admit(CacheKey key,Entry entry,PackedKeyIndex index){
+        long size=index.getMemorySize();
+        if (size > maxBytes) {
+            LOG.debug("Index {} of {} bytes exceeds the cache size",key.path,size);
+            entries.remove(key,entry);
+            return;
+        }
+        if (entries.get(key) != entry) {
+            return;
+        }
+        entry.size=size;
+        cachedBytes+=size;
+        Iterator<Entry> it=entries.values().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            Entry eldest=it.next();
+            if (eldest == entry || eldest.size == 0) {
+                continue;
+            }
+            it.remove();
+            cachedBytes-=eldest.size;
+        }
+    }
+
+    /** Drop every cached version of an index file. */
+    public synchronized void invalidate(Path indexFile){
+        String path=indexFile.toString();
+        Iterator<Map.Entry<CacheKey, Entry>> it=entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<CacheKey, Entry> e=it.next();
+            if (e.getKey().path.equals(path)) {
+                cachedBytes-=e.getValue().size;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized long getCachedBytes(){
+        return cachedBytes;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /** A loading or loaded index; size is set once it is admitted. */
+    private static final class Entry {
+        private final FutureTask<PackedKeyIndex> task;
+        private long size;
+
+        Entry(FutureTask<PackedKeyIndex> task){
+            this.task=task;
+        }
+    }
+
+    private static final class CacheKey {
+        private final String path;
+        private final long modificationTime;
+
+        CacheKey(String path,long modificationTime){
+            this.path=path;
+            this.modificationTime=modificationTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other=(CacheKey) o;
+            return modificationTime == other.modificationTime && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path,modificationTime);
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.CleanerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A zero-copy reader of uncompressed SequenceFiles on the local file system.
+ * <p>
+ * The file is memory-mapped in chunks of up to 1 GB, so files larger than
+ * 2 GB are supported. Records and sync markers are located directly in the
+ * mapping, and keys and values are exposed as {@link ByteBuffer} views or
+ * reusable {@link ByteBufferComparable}s over the mapped bytes; nothing is
+ * copied unless a record straddles two chunks, in which case it is
+ * assembled into a scratch buffer owned by the reader.
+ * <p>
+ * The buffers returned by {@link #getKey()} and {@link #getValue()} are
+ * reused and only valid until the next call to {@link #next()} or
+ * {@link #close()}. A reader is not thread safe; readers for other threads
+ * share its mapping through {@link #newReader()}.
+ * <p>
+ * The file is unmapped when the last reader sharing the mapping is closed,
+ * and reading mapped memory after that crashes the process instead of
+ * throwing. Closing a reader therefore empties the buffers it returned,
+ * and its methods throw {@link IllegalStateException} once it is closed.
+ * Duplicates and slices of the buffers are not covered and must not be
+ * used after {@code close()}; copy the bytes to keep them.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class MappedSequenceFileReader implements Closeable {
+    private static final Logger LOG=LoggerFactory.getLogger(MappedSequenceFileReader.class);
+    static final int DEFAULT_CHUNK_SIZE=1<<30;
+
+    private final String filename;
+    private final Mapping mapping;
+    private final long fileLength;
+    private final int chunkSize;
+    private final MappedByteBuffer[] chunks;
+    private final ByteBuffer[] keyViews;
+    private final ByteBuffer[] valueViews;
+    private boolean closed;
+
+    private final byte[] sync;
+    /** Horspool shifts for finding the sync escape and hash. */
+    private final int[] syncSkip;
+    private final SequenceFile.Metadata metadata;
+    private String keyClassName;
+    private String valClassName;
+    private long headerEnd;
+
+    private long position;
+    private long end;
+    private boolean syncSeen;
+    private ByteBuffer key;
+    private ByteBuffer value;
+    private ByteBuffer keyScratch=ByteBuffer.allocate(0);
+    private ByteBuffer valueScratch=ByteBuffer.allocate(0);
+    private final ByteBufferComparable keyComparable=new ByteBufferComparable();
+    private final ByteBufferComparable valueComparable=new ByteBufferComparable();
+
+    public MappedSequenceFileReader(Path file)throws IOException{
+        this(toLocalFile(file));
+    }
+
+    public MappedSequenceFileReader(File file)throws IOException{
+        this(file,DEFAULT_CHUNK_SIZE);
+    }
+
+    @VisibleForTesting
+    MappedSequenceFileReader(File file,int chunkSize)throws IOException{
+        checkArgument(chunkSize>=SequenceFile.SYNC_SIZE,"chunk size too small: %s",chunkSize);
+        this.filename=file.toString();
+        this.chunkSize=chunkSize;
+        this.sync=new byte[SequenceFile.SYNC_HASH_SIZE];
+        this.metadata=new SequenceFile.Metadata();
+        this.mapping=new Mapping(filename,FileChannel.open(file.toPath(),StandardOpenOption.READ));
+        boolean succeed=false;
+        try {
+            this.fileLength=mapping.channel.size();
+            int numChunks=(int) ((fileLength+chunkSize-1)/chunkSize);
+            this.chunks=mapping.chunks=new MappedByteBuffer[numChunks];
+            this.keyViews=new ByteBuffer[numChunks];
+            this.valueViews=new ByteBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                long offset=(long) i*chunkSize;
+                chunks[i]=mapping.channel.map(FileChannel.MapMode.READ_ONLY,offset,
+                        Math.min(chunkSize,fileLength-offset));
+                keyViews[i]=chunks[i].asReadOnlyBuffer();
+                valueViews[i]=chunks[i].asReadOnlyBuffer();
+            }
+            readHeader();
+            this.syncSkip=syncSkipTable(sync);
+            this.position=headerEnd;
+            this.end=fileLength;
+            succeed=true;
+        }finally {
+            if (!succeed) {
+                close();
+            }
+        }
+    }
+
+    /** A reader over the mapping of another, positioned at the first record. */
+    private MappedSequenceFileReader(MappedSequenceFileReader other){
+        other.mapping.retain();
+        this.filename=other.filename;
+        this.mapping=other.mapping;
+        this.fileLength=other.fileLength;
+        this.chunkSize=other.chunkSize;
+        this.chunks=other.chunks;
+        this.keyViews=new ByteBuffer[chunks.length];
+        this.valueViews=new ByteBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            keyViews[i]=chunks[i].asReadOnlyBuffer();
+            valueViews[i]=chunks[i].asReadOnlyBuffer();
+        }
+        this.sync=other.sync;
+        this.syncSkip=other.syncSkip;
+        this.metadata=other.metadata;
+        this.keyClassName=other.keyClassName;
+        this.valClassName=other.valClassName;
+        this.headerEnd=other.headerEnd;
+        this.position=headerEnd;
+        this.end=fileLength;
+    }
+
+    /**
+     * Open another reader of the file sharing this reader's mapping, for
+     * use by another thread. The mapping is released when this reader and
+     * all readers opened from it are closed.
+     * @throws IllegalStateException if the mapping has been released.
+     */
+    public MappedSequenceFileReader newReader(){
+        ensureOpen();
+        return new MappedSequenceFileReader(this);
+    }
+
+    static File toLocalFile(Path path)throws IOException{
+        URI uri=path.toUri();
+        String scheme=uri.getScheme();
+        if (scheme != null && !"file".equals(scheme)) {
+            throw new IOException("Not a local file: "+path);
+        }
+        return new File(uri.getPath());
+    }
+
+    private void readHeader()throws IOException{
+        if (chunks.length == 0) {
+            throw new EOFException(filename+" is empty");
+        }
+        ByteBuffer header=chunks[0].duplicate();
+        DataInputStream in=new DataInputStream(new ByteBufferInputStream(header));
+        byte[] version=SequenceFile.versionBlock();
+        byte[] versionBlock=new byte[version.length];
+        in.readFully(versionBlock);
+        if (versionBlock[0] != version[0]
+                || versionBlock[1] != version[1]
+                || versionBlock[2] != version[2]) {
+            throw new IOException(filename+" not a SequenceFile");
+        }
+        if (versionBlock[3] != version[3]) {
+            throw new IOException(filename+" has unsupported SequenceFile version "
+                    +versionBlock[3]);
+        }
+        keyClassName=Text.readString(in);
+        valClassName=Text.readString(in);
+        boolean compressed=in.readBoolean();
+        in.readBoolean();
+        if (compressed) {
+            throw new IOException(filename+" is compressed; only uncompressed files can be mapped");
+        }
+        metadata.readFields(in);
+        in.readFully(sync);
+        headerEnd=header.position();
+    }
+
+    public String getKeyClassName(){return keyClassName;}
+    public String getValueClassName(){return valClassName;}
+    public SequenceFile.Metadata getMetadata(){return metadata;}
+    public long getPosition(){return position;}
+    public long getHeaderEnd(){return headerEnd;}
+    public long getFileLength(){return fileLength;}
+    public boolean syncSeen(){return syncSeen;}
+
+    /**
+     * Limit reading to records which start before {@code end}; records
+     * starting after it are left to the reader of the next range.
+     */
+    public void setEnd(long end){
+        this.end=Math.min(end,fileLength);
+    }
+
+    /** Position the reader at a record boundary. */
+    public void seek(long position){
+        ensureOpen();
+        checkArgument(position>=headerEnd&&position<=fileLength,
+                "position %s outside of records",position);
+        this.position=position;
+        this.key=null;
+        this.value=null;
+    }
+
+    /**
+     * Position the reader at the first sync marker at or after
+     * {@code position}, or at the end of the file if there is none.
+     */
+    public void sync(long position){
+        ensureOpen();
+        long p=Math.max(position,headerEnd);
+        if (p == headerEnd) {
+            seek(p);
+            return;
+        }
+        // Horspool: test the last byte of the escape and hash, and skip by
+        // where that byte last occurs in them
+        int m=SequenceFile.SYNC_SIZE;
+        byte tail=sync[SequenceFile.SYNC_HASH_SIZE-1];
+        long last=fileLength-m;
+        while (p <= last) {
+            byte b=getByte(p+m-1);
+            if (b == tail && getInt(p) == SequenceFile.SYNC_ESCAPE && syncMatches(p+4)) {
+                seek(p);
+                return;
+            }
+            p+=syncSkip[b&0xff];
+        }
+        seek(fileLength);
+    }
+
+    private static int[] syncSkipTable(byte[] sync){
+        int m=SequenceFile.SYNC_SIZE;
+        int[] skip=new int[256];
+        Arrays.fill(skip,m);
+        for (int k = 0; k < m-1; k++) {
+            // the big endian escape, then the hash
+            byte b=k<4?(byte) (SequenceFile.SYNC_ESCAPE>>>(24-8*k)):sync[k-4];
+            skip[b&0xff]=m-1-k;
+        }
+        return skip;
+    }
+
+    private boolean syncMatches(long p){
+        for (int i = 0; i < SequenceFile.SYNC_HASH_SIZE; i++) {
+            if (getByte(p+i) != sync[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Advance to the next record.
+     * @return false once the end of the file or range has been reached.
+     */
+    public boolean next()throws IOException{
+        ensureOpen();
+        syncSeen=false;
+        while (true) {
+            if (position >= end || position+4 > fileLength) {
+                key=null;
+                value=null;
+                return false;
+            }
+            int recordLength=getInt(position);
+            if (recordLength != SequenceFile.SYNC_ESCAPE) {
+                if (position+8 > fileLength) {
+                    throw new EOFException(filename+": truncated record at "+position);
+                }
+                int keyLength=getInt(position+4);
+                if (recordLength < 0 || keyLength < 0 || keyLength > recordLength) {
+                    throw new IOException(filename+": corrupt record at "+position);
+                }
+                long keyStart=position+8;
+                long valueStart=keyStart+keyLength;
+                long next=valueStart+(recordLength-keyLength);
+                if (next > fileLength) {
+                    throw new EOFException(filename+": truncated record at "+position);
+                }
+                key=view(keyViews,keyStart,keyLength,true);
+                value=view(valueViews,valueStart,recordLength-keyLength,false);
+                position=next;
+                return true;
+            }
+            if (position+SequenceFile.SYNC_SIZE > fileLength
+                    || !syncMatches(position+4)) {
+                throw new IOException("File is corrupt: "+filename+" at "+position);
+            }
+            position+=SequenceFile.SYNC_SIZE;
+            syncSeen=true;
+        }
+    }
+
+    /**
+     * The current key; reused on every call to {@link #next()} and emptied
+     * by {@link #close()}.
+     */
+    public ByteBuffer getKey(){
+        ensureOpen();
+        return key;
+    }
+
+    /**
+     * The current value; reused on every call to {@link #next()} and
+     * emptied by {@link #close()}.
+     */
+    public ByteBuffer getValue(){
+        ensureOpen();
+        return value;
+    }
+
+    /** The current key as a reusable comparable view. */
+    public ByteBufferComparable getKeyComparable(){
+        ensureOpen();
+        return keyComparable.set(key);
+    }
+
+    /** The current value as a reusable comparable view. */
+    public ByteBufferComparable getValueComparable(){
+        ensureOpen();
+        return valueComparable.set(value);
+    }
+
+    private void ensureOpen(){
+        if (closed) {
+            throw new IllegalStateException("Reader of "+filename+" is closed");
+        }
+    }
+
+    private ByteBuffer view(ByteBuffer[] views,long start,int length,boolean isKey){
+        int chunk=(int) (start/chunkSize);
+        int offset=(int) (start-(long) chunk*chunkSize);
+        if (length == 0 || offset+length <= chunkSize) {
+            if (chunk == chunks.length) {
+                chunk--;
+                offset=chunks[chunk].capacity();
+            }
+            ByteBuffer v=views[chunk];
+            v.limit(offset+length).position(offset);
+            return v;
+        }
+        ByteBuffer scratch=isKey?keyScratch:valueScratch;
+        if (scratch.capacity() < length) {
+            scratch=ByteBuffer.allocate(Math.max(length,scratch.capacity()<<1));
+            if (isKey) {
+                keyScratch=scratch;
+            }else {
+                valueScratch=scratch;
+            }
+        }
+        scratch.clear();
+        long p=start;
+        int remaining=length;
+        while (remaining > 0) {
+            int c=(int) (p/chunkSize);
+            int o=(int) (p-(long) c*chunkSize);
+            int n=Math.min(remaining,chunks[c].capacity()-o);
+            ByteBuffer src=chunks[c].duplicate();
+            src.limit(o+n).position(o);
+            scratch.put(src);
+            p+=n;
+            remaining-=n;
+        }
+        scratch.flip();
+        return scratch;
+    }
+
+    private byte getByte(long p){
+        int chunk=(int) (p/chunkSize);
+        return chunks[chunk].get((int) (p-(long) chunk*chunkSize));
+    }
+
+    private int getInt(long p){
+        int chunk=(int) (p/chunkSize);
+        int offset=(int) (p-(long) chunk*chunkSize);
+        if (offset+4 <= chunks[chunk].capacity()) {
+            return chunks[chunk].getInt(offset);
+        }
+        return ((getByte(p)&0xff)<<24)|((getByte(p+1)&0xff)<<16)
+                |((getByte(p+2)&0xff)<<8)|(getByte(p+3)&0xff);
+    }
+
+    /**
+     * Release this reader's hold of the mapping, emptying the buffers
+     * returned by {@link #getKey()} and {@link #getValue()} so that reading
+     * them fails instead of touching unmapped memory. Closing again does
+     * nothing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed=true;
+        key=null;
+        value=null;
+        keyComparable.set(null);
+        valueComparable.set(null);
+        if (keyViews != null) {
+            invalidate(keyViews);
+            invalidate(valueViews);
+        }
+        mapping.release();
+    }
+
+    private static void invalidate(ByteBuffer[] views){
+        for (int i = 0; i < views.length; i++) {
+            if (views[i] != null) {
+                views[i].limit(0);
+                views[i]=null;
+            }
+        }
+    }
+
+    /**
+     * The channel and chunks of a file, shared by the readers opened from
+     * one another. They are unmapped and closed when the last reader is.
+     */
+    private static final class Mapping {
+        private final String filename;
+        private final FileChannel channel;
+        private MappedByteBuffer[] chunks;
+        private int refs=1;
+
+        Mapping(String filename,FileChannel channel){
+            this.filename=filename;
+            this.channel=channel;
+        }
+
+        synchronized void retain(){
+            if (refs == 0) {
+                throw new IllegalStateException(filename+" is closed");
+            }
+            refs++;
+        }
+
+        void release()throws IOException{
+            synchronized (this){
+                if (--refs > 0) {
+                    return;
+                }
+            }
+            if (chunks != null && CleanerUtil.UNMAP_SUPPORTED) {
+                for (int i = 0; i < chunks.length; i++) {
+                    if (chunks[i] != null) {
+                        try {
+                            CleanerUtil.getCleaner().freeBuffer(chunks[i]);
+                        }catch (IOException e){
+                            LOG.debug("Failed to unmap {}",filename,e);
+                        }
+                        chunks[i]=null;
+                    }
+                }
+            }
+            channel.close();
+        }
+    }
+
+    /** Reads the header out of the first mapped chunk. */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer){
+            this.buffer=buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining()?buffer.get()&0xff:-1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n=Math.min(len,buffer.remaining());
+            buffer.get(b,off,n);
+            return n;
+        }
+    }
+}
@@ -2,14 +2,11 @@ package org.apache.hadoop.io;
 
 import com.apache.hadoop.classification.InterfaceAudience;
 import com.apache.hadoop.classification.InterfaceStability;
-import com.jcraft.jsch.IO;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.thirdparty.com.google.common.base.Utf8;
 import org.apache.hadoop.thirdparty.protobuf.Message;
 import org.apache.hadoop.util.ProtoUtil;
-import org.apache.kerby.config.Conf;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -19,7 +16,10 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -98,130 +98,397 @@ public class ObjectWritable implements Writable, Configurable {
             UTF8.writeString(out,declaredClass.getName());
         }
     }
+    /**
+     * Class names written to or read from one stream. Passed to both
+     * {@link ObjectWritable#writeObject(DataOutput, Object, Class,
+     * Configuration, boolean, ClassDictionary)} and {@link
+     * ObjectWritable#readObject(DataInput, ObjectWritable, Configuration,
+     * ClassDictionary)}, it writes the name of a class on its first
+     * occurrence only and a small id after that, and resolves each name
+     * once. The two ends must each use a fresh dictionary for the stream;
+     * objects written with one cannot be read without.
+     */
+    public static class ClassDictionary {
+        private final Map<Class<?>, Integer> ids=new HashMap<>();
+        private final List<Class<?>> classes=new ArrayList<>();
+    }
+
+    /** How objects of a declared class are written. */
+    private enum Kind {
+        BOOLEAN,CHAR,BYTE,SHORT,INT,LONG,FLOAT,DOUBLE,VOID,
+        ARRAY,COMPACT_ARRAY,STRING,ENUM,WRITABLE,MESSAGE,OTHER
+    }
+
+    /** The kind and encoded name of a class, computed once. */
+    private static final class ClassInfo {
+        final Class<?> type;
+        final Kind kind;
+        /** The name as written by {@link UTF8#writeString}. */
+        final byte[] name;
+
+        ClassInfo(Class<?> type){
+            this.type=type;
+            this.kind=kindOf(type);
+            DataOutputBuffer buf=new DataOutputBuffer(type.getName().length()+2);
+            try {
+                UTF8.writeString(buf,type.getName());
+            }catch (IOException e){
+                throw new IllegalArgumentException(e);
+            }
+            this.name=Arrays.copyOf(buf.getData(),buf.getLength());
+        }
+    }
+
+    /** Stored with each class, so it does not keep class loaders alive. */
+    private static final ClassValue<ClassInfo> CLASS_INFO=new ClassValue<ClassInfo>(){
+        @Override
+        protected ClassInfo computeValue(Class<?> type) {
+            return new ClassInfo(type);
+        }
+    };
+
+    private static ClassInfo classInfo(Class<?> type){
+        return CLASS_INFO.get(type);
+    }
+
+    private static Kind kindOf(Class<?> c){
+        if (c.isPrimitive()) {
+            if (c == Boolean.TYPE) {
+                return Kind.BOOLEAN;
+            }else if (c == Character.TYPE) {
+                return Kind.CHAR;
+            }else if (c == Byte.TYPE) {
+                return Kind.BYTE;
+            }else if (c == Short.TYPE) {
+                return Kind.SHORT;
+            }else if (c == Integer.TYPE) {
+                return Kind.INT;
+            }else if (c == Long.TYPE) {
+                return Kind.LONG;
+            }else if (c == Float.TYPE) {
+                return Kind.FLOAT;
+            }else if (c == Double.TYPE) {
+                return Kind.DOUBLE;
+            }
+            return Kind.VOID;
+        }else if (c.isArray()) {
+            return Kind.ARRAY;
+        }else if (c == ArrayPrimitiveWritable.Internal.class) {
+            return Kind.COMPACT_ARRAY;
+        }else if (c == String.class) {
+            return Kind.STRING;
+        }else if (c.isEnum()) {
+            return Kind.ENUM;
+        }else if (Writable.class.isAssignableFrom(c)) {
+            return Kind.WRITABLE;
+        }else if (Message.class.isAssignableFrom(c)) {
+            return Kind.MESSAGE;
+        }
+        return Kind.OTHER;
+    }
+
+    private static void writeClass(DataOutput out,ClassInfo info,ClassDictionary dictionary)throws IOException{
+        if (dictionary == null) {
+            out.write(info.name);
+            return;
+        }
+        Integer id=dictionary.ids.get(info.type);
+        if (id != null) {
+            WritableUtils.writeVInt(out,id+1);
+        }else {
+            dictionary.ids.put(info.type,dictionary.ids.size());
+            WritableUtils.writeVInt(out,0);
+            out.write(info.name);
+        }
+    }
+
+    /**
+     * Read a class written by {@link #writeClass}.
+     * @param expected the class likely to come next, whose name is compared
+     *                 to the bytes read instead of being decoded; may be null.
+     */
+    private static Class<?> readClass(DataInput in,Configuration conf,
+                                      ClassDictionary dictionary,ClassInfo expected)throws IOException{
+        if (dictionary != null) {
+            int id=WritableUtils.readVInt(in);
+            if (id > 0) {
+                if (id > dictionary.classes.size()) {
+                    throw new IOException("Unknown class id "+(id-1));
+                }
+                return dictionary.classes.get(id-1);
+            }
+            Class<?> c=readClass(in,conf,null,expected);
+            dictionary.classes.add(c);
+            return c;
+        }
+        int length=in.readUnsignedShort();
+        byte[] name=new byte[length];
+        in.readFully(name);
+        if (expected != null && length == expected.name.length-2) {
+            boolean same=true;
+            for (int i = 0; i < length && same; i++) {
+                same=name[i] == expected.name[i+2];
+            }
+            if (same) {
+                return expected.type;
+            }
+        }
+        String className=Text.isAscii(name,0,length)
+                ?new String(name,StandardCharsets.ISO_8859_1):UTF8.fromBytes(name);
+        Class<?> declaredClass=PRIMITIVE_NAMES.get(className);
+        if (declaredClass == null) {
+            declaredClass=loadClass(conf,className);
+        }
+        return declaredClass;
+    }
+
     public static void writeObject(DataOutput out,Object instance,
                                    Class declaredClass,
-                                   Configuration conf){
+                                   Configuration conf)throws IOException{
         writeObject(out,instance,declaredClass,conf,false);
     }
     public static void writeObject(DataOutput out, Object instance,
                                    Class declaredClass, Configuration conf,
                                    boolean allowCompactArrays) throws IOException {
+        writeObject(out,instance,declaredClass,conf,allowCompactArrays,null);
+    }
+    /**
+     * Write an object, with class names going through a dictionary for the
+     * stream if one is given.
+     */
+    public static void writeObject(DataOutput out, Object instance,
+                                   Class declaredClass, Configuration conf,
+                                   boolean allowCompactArrays,
+                                   ClassDictionary dictionary) throws IOException {
         if (instance == null) {
             instance=new NullInstance(declaredClass,conf);
             declaredClass=Writable.class;
         }
         if (allowCompactArrays && declaredClass.isArray()
-                && instance.getClass().getName().equals(declaredClass.getName())
-                && instance.getClass().getComponentType().isPrimitive()) {
+                && instance.getClass() == declaredClass
+                && declaredClass.getComponentType().isPrimitive()) {
             instance=new ArrayPrimitiveWritable.Internal(instance);
             declaredClass=ArrayPrimitiveWritable.Internal.class;
         }
-        UTF8.writeString(out,declaredClass.getName());
-        if (declaredClass.isArray()) {
-            int length = Array.getLength(instance);
-            out.writeInt(length);
+        ClassInfo info=classInfo(declaredClass);
+        writeClass(out,info,dictionary);
+        switch (info.kind) {
+            case ARRAY:
+                writeArray(out,instance,declaredClass,conf,allowCompactArrays,dictionary);
+                break;
+            case COMPACT_ARRAY:
+                ((ArrayPrimitiveWritable.Internal)instance).writer(out);
+                break;
+            case STRING:
+                UTF8.writeString(out,(String)instance);
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean) instance);
+                break;
+            case CHAR:
+                out.writeChar((Character) instance);
+                break;
+            case BYTE:
+                out.writeByte((Byte) instance);
+                break;
+            case SHORT:
+                out.writeShort((Short) instance);
+                break;
+            case INT:
+                out.writeInt((Integer) instance);
+                break;
+            case LONG:
+                out.writeLong((Long) instance);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) instance);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) instance);
+                break;
+            case VOID:
+                break;
+            case ENUM:
+                UTF8.writeString(out,((Enum)instance).name());
+                break;
+            case WRITABLE:
+                writeClass(out,classInfo(instance.getClass()),dictionary);
+                ((Writable)instance).writer(out);
+                break;
+            case MESSAGE:
+                ((Message)instance).writeDelimitedTo(
+                        DataOutputOutputStream.constructOutputStream(out)
+                );
+                break;
+            default:
+                throw new IOException("Can't write: "+instance+" as "+declaredClass);
+        }
+    }
+
+    /**
+     * Write the elements of an array, each with its class as before. The
+     * elements of primitive arrays are taken from the typed array rather
+     * than boxed by {@link Array#get}.
+     */
+    private static void writeArray(DataOutput out,Object instance,Class<?> declaredClass,
+                                   Configuration conf,boolean allowCompactArrays,
+                                   ClassDictionary dictionary)throws IOException{
+        Class<?> componentType=declaredClass.getComponentType();
+        int length=Array.getLength(instance);
+        out.writeInt(length);
+        if (!componentType.isPrimitive()) {
+            Object[] elements=(Object[]) instance;
             for (int i = 0; i < length; i++) {
-                writeObject(out,Array.get(instance,i),
-                        declaredClass.getComponentType(),conf,allowCompactArrays);
+                writeObject(out,elements[i],componentType,conf,allowCompactArrays,dictionary);
             }
-        }else if (declaredClass==ArrayPrimitiveWritable.Internal.class){
-            ((ArrayPrimitiveWritable.Internal)instance).write(out);
-        }else if (declaredClass==String.class){
-            UTF8.writeString(out,(String)instance);
-        } else if (declaredClass.isPrimitive()) {
-            if (declaredClass == Boolean.TYPE) {
-                out.writeBoolean(((Boolean) instance).booleanValue());
-            } else if (declaredClass == Character.TYPE) {
-                out.writeChar(((Character)instance).charValue());
-            }else if (declaredClass == Byte.TYPE) {
-                out.writeByte(((Byte)instance).byteValue());
-            }else if (declaredClass == Short.TYPE) {
-                out.writeShort(((Short)instance).shortValue());
-            }else if (declaredClass == Integer.TYPE) {
-                out.writeInt(((Integer)instance).intValue());
-            }else if (declaredClass == Long.TYPE) {
-                out.writeLong(((Long)instance).longValue());
-            }else if (declaredClass == Float.TYPE) {
-                out.writeFloat(((Float)instance).floatValue());
-            }else if (declaredClass == Double.TYPE) {
-                out.writeDouble(((Double)instance).doubleValue());
-            }else if (declaredClass == Void.TYPE) {
-            }else {
-                throw new IllegalArgumentException("Not a primitive: "+declaredClass);
+            return;
+        }
+        ClassInfo component=classInfo(componentType);
+        switch (component.kind) {
+            case BOOLEAN: {
+                boolean[] a=(boolean[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeBoolean(a[i]);
+                }
+                break;
             }
-        } else if (declaredClass.isEnum()) {
-            UTF8.writeString(out,((Enum)instance).name());
-        } else if (Writable.class.isAssignableFrom(declaredClass)) {
-            UTF8.writeString(out,instance.getClass().getName());
-            ((Writable)instance).writer(out);
-        } else if (Message.class.isAssignableFrom(declaredClass)) {
-            ((Message)instance).writeDelimitedTo(
-                    DataOutputOutputStream.constructOutputStream(out)
-            );
-        }else {
-            throw new IOException("Can't write: "+instance+" as "+declaredClass);
+            case CHAR: {
+                char[] a=(char[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeChar(a[i]);
+                }
+                break;
+            }
+            case BYTE: {
+                byte[] a=(byte[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeByte(a[i]);
+                }
+                break;
+            }
+            case SHORT: {
+                short[] a=(short[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeShort(a[i]);
+                }
+                break;
+            }
+            case INT: {
+                int[] a=(int[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeInt(a[i]);
+                }
+                break;
+            }
+            case LONG: {
+                long[] a=(long[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeLong(a[i]);
+                }
+                break;
+            }
+            case FLOAT: {
+                float[] a=(float[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeFloat(a[i]);
+                }
+                break;
+            }
+            case DOUBLE: {
+                double[] a=(double[]) instance;
+                for (int i = 0; i < length; i++) {
+                    writeClass(out,component,dictionary);
+                    out.writeDouble(a[i]);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Not a primitive: "+componentType);
         }
     }
-    public static Object readObject(DataInput in,Configuration conf){
+
+    public static Object readObject(DataInput in,Configuration conf)throws IOException{
         return readObject(in,null,conf);
     }
-    @SuppressWarnings("unchecked")
     public static Object readObject(DataInput in,ObjectWritable objectWritable,Configuration conf) throws IOException {
-        String className=UTF8.readString(in);
-        Class<?> declaredClass = PRIMITIVE_NAMES.get(className);
-        if (declaredClass == null) {
-            declaredClass=loadClass(conf,className);
-        }
+        return readObject(in,objectWritable,conf,null);
+    }
+    /**
+     * Read an object written with the same kind of dictionary, or none.
+     */
+    public static Object readObject(DataInput in,ObjectWritable objectWritable,
+                                    Configuration conf,ClassDictionary dictionary) throws IOException {
+        Class<?> declaredClass=readClass(in,conf,dictionary,null);
+        return readInstance(in,declaredClass,objectWritable,conf,dictionary);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readInstance(DataInput in,Class<?> declaredClass,ObjectWritable objectWritable,
+                                       Configuration conf,ClassDictionary dictionary) throws IOException {
         Object instance;
-        if (declaredClass.isPrimitive()) {
-            if (declaredClass == Boolean.TYPE) {             // boolean
+        switch (classInfo(declaredClass).kind) {
+            case BOOLEAN:
                 instance = Boolean.valueOf(in.readBoolean());
-            } else if (declaredClass == Character.TYPE) {    // char
+                break;
+            case CHAR:
                 instance = Character.valueOf(in.readChar());
-            } else if (declaredClass == Byte.TYPE) {         // byte
+                break;
+            case BYTE:
                 instance = Byte.valueOf(in.readByte());
-            } else if (declaredClass == Short.TYPE) {        // short
+                break;
+            case SHORT:
                 instance = Short.valueOf(in.readShort());
-            } else if (declaredClass == Integer.TYPE) {      // int
+                break;
+            case INT:
                 instance = Integer.valueOf(in.readInt());
-            } else if (declaredClass == Long.TYPE) {         // long
+                break;
+            case LONG:
                 instance = Long.valueOf(in.readLong());
-            } else if (declaredClass == Float.TYPE) {        // float
+                break;
+            case FLOAT:
                 instance = Float.valueOf(in.readFloat());
-            } else if (declaredClass == Double.TYPE) {       // double
+                break;
+            case DOUBLE:
                 instance = Double.valueOf(in.readDouble());
-            } else if (declaredClass == Void.TYPE) {         // void
+                break;
+            case VOID:
                 instance = null;
-            } else {
-                throw new IllegalArgumentException("Not a primitive: "+declaredClass);
+                break;
+            case ARRAY:
+                instance=readArray(in,declaredClass,conf,dictionary);
+                break;
+            case COMPACT_ARRAY: {
+                ArrayPrimitiveWritable.Internal temp=new ArrayPrimitiveWritable.Internal();
+                temp.readFields(in);
+                instance=temp.get();
+                declaredClass=instance.getClass();
+                break;
             }
-        } else if (declaredClass.isArray()) {
-            int length=in.readInt();
-            instance=Array.newInstance(declaredClass.getComponentType(),length);
-            for (int i = 0; i < length; i++) {
-                Array.set(instance,i,readObject(in,conf));
-            }
-        }else if (declaredClass==ArrayPrimitiveWritable.Internal.class){
-            ArrayPrimitiveWritable.Internal temp=new ArrayPrimitiveWritable.Internal();
-            temp.readFields(in);
-            instance=temp.get();
-            declaredClass=instance.getClass();
-        } else if (declaredClass == String.class) {
-            instance=UTF8.readStrinfg(in);
-        } else if (declaredClass.isEnum()) {
-            instance=Enum.valueOf((Class<? extends Enum>)declaredClass,UTF8.readString(in));
-        } else if (Message.class.isAssignableFrom(declaredClass)) {
-            instance=tryInstantiateProtobuf(declaredClass,in);
-        }else {
-            Class instanceClass=null;
-            String str=UTF8.readString(in);
-            instanceClass=loadClass(conf,str);
-            Writable writable=WritableFactories.newInstance(instanceClass,conf);
-            writable.readFields(in);
-            instance=writable;
-            if (instanceClass == NullInstance.class) {
-                declaredClass=((NullInstance)instance).declaredClass;
-                instance=null;
+            case STRING:
+                instance=UTF8.readString(in);
+                break;
+            case ENUM:
+                instance=Enum.valueOf((Class<? extends Enum>)declaredClass,UTF8.readString(in));
+                break;
+            case MESSAGE:
+                instance=tryInstantiateProtobuf(declaredClass,in);
+                break;
+            default: {
+                Class instanceClass=readClass(in,conf,dictionary,null);
+                Writable writable=WritableFactories.newInstance(instanceClass,conf);
+                writable.readFields(in);
+                instance=writable;
+                if (instanceClass == NullInstance.class) {
+                    declaredClass=((NullInstance)instance).declaredClass;
+                    instance=null;
+                }
             }
         }
         if (objectWritable != null) {
@@ -230,6 +497,54 @@ public class ObjectWritable implements Writable, Configurable {
         }
         return instance;
     }
+
+    /**
+     * Read the elements of an array. Elements of primitive arrays whose
+     * class is the component type are read straight into the typed array.
+     */
+    private static Object readArray(DataInput in,Class<?> declaredClass,
+                                    Configuration conf,ClassDictionary dictionary)throws IOException{
+        Class<?> componentType=declaredClass.getComponentType();
+        int length=in.readInt();
+        Object instance=Array.newInstance(componentType,length);
+        ClassInfo component=classInfo(componentType);
+        for (int i = 0; i < length; i++) {
+            Class<?> c=readClass(in,conf,dictionary,component);
+            if (c != componentType || !componentType.isPrimitive()) {
+                Array.set(instance,i,readInstance(in,c,null,conf,dictionary));
+                continue;
+            }
+            switch (component.kind) {
+                case BOOLEAN:
+                    ((boolean[]) instance)[i]=in.readBoolean();
+                    break;
+                case CHAR:
+                    ((char[]) instance)[i]=in.readChar();
+                    break;
+                case BYTE:
+                    ((byte[]) instance)[i]=in.readByte();
+                    break;
+                case SHORT:
+                    ((short[]) instance)[i]=in.readShort();
+                    break;
+                case INT:
+                    ((int[]) instance)[i]=in.readInt();
+                    break;
+                case LONG:
+                    ((long[]) instance)[i]=in.readLong();
+                    break;
+                case FLOAT:
+                    ((float[]) instance)[i]=in.readFloat();
+                    break;
+                case DOUBLE:
+                    ((double[]) instance)[i]=in.readDouble();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not a primitive: "+componentType);
+            }
+        }
+        return instance;
+    }
     private static Message tryInstantiateProtobuf(Class<?> protoClass,
                                                   DataInput in) throws IOException {
         try {
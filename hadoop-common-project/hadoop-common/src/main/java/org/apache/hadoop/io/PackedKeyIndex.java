@@ -0,0 +1,129 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable, sorted MapFile index held off-heap.
+ * <p>
+ * All serialized keys are packed into one direct buffer and addressed by an
+ * offsets array; the data file position of every key sits in a parallel
+ * array. Lookups binary search the raw key bytes with a
+ * {@link RawComparator}, so no key object is ever materialized.
+ * An index is safe to share between threads; the caller supplies the
+ * scratch array used to hand probe keys to the comparator.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public final class PackedKeyIndex {
+    private final ByteBuffer keys;
+    private final int[] offsets;
+    private final long[] positions;
+    private final int count;
+
+    private PackedKeyIndex(ByteBuffer keys,int[] offsets,long[] positions,int count){
+        this.keys=keys;
+        this.offsets=offsets;
+        this.positions=positions;
+        this.count=count;
+    }
+
+    public int size(){
+        return count;
+    }
+
+    /** Memory held by the index, including the on-heap arrays. */
+    public long getMemorySize(){
+        return keys.capacity()+4L*offsets.length+8L*positions.length;
+    }
+
+    public int getKeyLength(int i){
+        return offsets[i+1]-offsets[i];
+    }
+
+    /** The data file position of the i-th key. */
+    public long getPosition(int i){
+        return positions[i];
+    }
+
+    /**
+     * Copy the i-th serialized key into the scratch array, growing it when
+     * needed; returns the array holding the key at offset 0.
+     */
+    public byte[] getKey(int i,byte[] scratch){
+        int length=getKeyLength(i);
+        byte[] dst=scratch!=null&&scratch.length>=length?scratch:new byte[length];
+        ByteBuffer src=keys.duplicate();
+        src.position(offsets[i]);
+        src.get(dst,0,length);
+        return dst;
+    }
+
+    /**
+     * Binary search the index for a serialized key.
+     * @return the index of the key, or {@code -(insertion point)-1}, as
+     * {@link Arrays#binarySearch(long[], long)}.
+     */
+    public int binarySearch(byte[] key,int start,int length,
+                            RawComparator<?> comparator,byte[][] scratch){
+        ByteBuffer src=keys.duplicate();
+        int low=0;
+        int high=count-1;
+        while (low <= high) {
+            int mid=(low+high)>>>1;
+            int midLength=offsets[mid+1]-offsets[mid];
+            byte[] probe=scratch[0];
+            if (probe == null || probe.length < midLength) {
+                probe=new byte[Math.max(midLength,64)];
+                scratch[0]=probe;
+            }
+            src.position(offsets[mid]);
+            src.get(probe,0,midLength);
+            int cmp=comparator.compare(probe,0,midLength,key,start,length);
+            if (cmp < 0) {
+                low=mid+1;
+            }else if (cmp > 0) {
+                high=mid-1;
+            }else {
+                return mid;
+            }
+        }
+        return -(low+1);
+    }
+
+    /** Accumulates (key, position) entries in index order. */
+    public static final class Builder {
+        private final DataOutputBuffer keyBytes=new DataOutputBuffer();
+        private int[] offsets=new int[1025];
+        private long[] positions=new long[1024];
+        private int count;
+
+        public Builder add(byte[] key,int start,int length,long position)throws IOException{
+            if (count+1 == offsets.length) {
+                offsets=Arrays.copyOf(offsets,offsets.length*2);
+                positions=Arrays.copyOf(positions,positions.length*2);
+            }
+            if ((long) keyBytes.getLength()+length > Integer.MAX_VALUE) {
+                throw new IOException("Index keys exceed 2 GB");
+            }
+            keyBytes.write(key,start,length);
+            positions[count]=position;
+            offsets[++count]=keyBytes.getLength();
+            return this;
+        }
+
+        public PackedKeyIndex build(){
+            ByteBuffer keys=ByteBuffer.allocateDirect(keyBytes.getLength());
+            keys.put(keyBytes.getData(),0,keyBytes.getLength());
+            keys.flip();
+            return new PackedKeyIndex(keys.asReadOnlyBuffer(),
+                    Arrays.copyOf(offsets,count+1),
+                    Arrays.copyOf(positions,count),
+                    count);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Scans one local, uncompressed SequenceFile with several threads.
+ * <p>
+ * The file is cut into byte ranges and every range boundary is moved
+ * forward to the next sync marker, so each split covers the records
+ * between two sync markers (or the header and the end of the file).
+ * Adjacent splits share their boundary, which makes the coverage
+ * exactly-once: every record is delivered by precisely one split.
+ * Files written without sync markers degrade to a single non-empty split.
+ * <p>
+ * The file is mapped once by the scanner; splits are read through
+ * {@link MappedSequenceFileReader}s sharing that mapping, one per split and
+ * worker. The mapping is released when the scanner and all readers of
+ * splits have been closed.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class ParallelSequenceFileScanner implements Closeable {
+    private static final Logger LOG=LoggerFactory.getLogger(ParallelSequenceFileScanner.class);
+    private final MappedSequenceFileReader source;
+    private final List<Split> splits;
+
+    /**
+     * Receives the records of a scan. It is called concurrently from the
+     * workers of different splits, and the buffers are only valid for the
+     * duration of the call.
+     */
+    @FunctionalInterface
+    public interface RecordCallback {
+        void accept(ByteBuffer key,ByteBuffer value)throws IOException;
+    }
+
+    /** A byte range of the file starting at a record boundary. */
+    public static final class Split {
+        private final long start;
+        private final long end;
+
+        Split(long start,long end){
+            this.start=start;
+            this.end=end;
+        }
+
+        public long getStart(){return start;}
+        public long getEnd(){return end;}
+        public long getLength(){return end-start;}
+
+        @Override
+        public String toString() {
+            return "["+start+", "+end+")";
+        }
+    }
+
+    /** A record delivered by {@link #stream(boolean)}, copied off the mapping. */
+    public static final class Record {
+        private final ByteBuffer key;
+        private final ByteBuffer value;
+
+        Record(ByteBuffer key,ByteBuffer value){
+            this.key=key;
+            this.value=value;
+        }
+
+        public ByteBuffer getKey(){return key.duplicate();}
+        public ByteBuffer getValue(){return value.duplicate();}
+    }
+
+    public ParallelSequenceFileScanner(Path file,int numSplits)throws IOException{
+        this(MappedSequenceFileReader.toLocalFile(file),numSplits);
+    }
+
+    public ParallelSequenceFileScanner(File file,int numSplits)throws IOException{
+        checkArgument(numSplits>0,"numSplits must be positive: %s",numSplits);
+        this.source=new MappedSequenceFileReader(file);
+        boolean succeed=false;
+        try {
+            this.splits=Collections.unmodifiableList(computeSplits(source,numSplits));
+            succeed=true;
+        }finally {
+            if (!succeed) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Cut the file into {@code numSplits} ranges of roughly equal size and
+     * align the boundaries on sync markers; empty ranges are dropped.
+     */
+    static List<Split> computeSplits(MappedSequenceFileReader source,int numSplits)throws IOException{
+        List<Split> result=new ArrayList<>(numSplits);
+        try (MappedSequenceFileReader reader=source.newReader()) {
+            long headerEnd=reader.getHeaderEnd();
+            long length=reader.getFileLength();
+            long bodyLength=length-headerEnd;
+            long start=headerEnd;
+            for (int i = 1; i <= numSplits && start < length; i++) {
+                long boundary;
+                if (i == numSplits) {
+                    boundary=length;
+                }else {
+                    reader.sync(headerEnd+bodyLength*i/numSplits);
+                    boundary=reader.getPosition();
+                }
+                if (boundary > start) {
+                    result.add(new Split(start,boundary));
+                    start=boundary;
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<Split> getSplits(){
+        return splits;
+    }
+
+    /** Deliver every record of one split to the callback; returns the count. */
+    public long scan(Split split,RecordCallback callback)throws IOException{
+        long records=0;
+        try (MappedSequenceFileReader reader=source.newReader()) {
+            reader.seek(split.getStart());
+            reader.setEnd(split.getEnd());
+            while (reader.next()) {
+                callback.accept(reader.getKey(),reader.getValue());
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Scan all splits on the executor and wait for them to finish.
+     * @return the number of records delivered.
+     * @throws IOException the first failure of any split.
+     */
+    public long scan(ExecutorService executor,RecordCallback callback)throws IOException{
+        List<Future<Long>> futures=new ArrayList<>(splits.size());
+        for (Split split : splits) {
+            futures.add(executor.submit(()->scan(split,callback)));
+        }
+        long records=0;
+        IOException failure=null;
+        for (Future<Long> future : futures) {
+            try {
+                records+=future.get();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                for (Future<Long> f : futures) {
+                    f.cancel(true);
+                }
+                throw (IOException) new InterruptedIOException("interrupted").initCause(e);
+            }catch (ExecutionException e){
+                if (failure == null) {
+                    Throwable cause=e.getCause();
+                    failure=cause instanceof IOException?(IOException) cause:new IOException(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return records;
+    }
+
+    /**
+     * A stream of all records. A parallel stream processes whole splits per
+     * task; the records are copied, as they outlive their reader.
+     * <p>
+     * A split's reader is closed when the split is exhausted or fails;
+     * readers left open by a short-circuiting operation such as
+     * {@code findFirst} or {@code limit} are closed when the stream is, so
+     * callers should use try-with-resources:
+     * <pre>
+     *   try (Stream&lt;Record&gt; records = scanner.stream(true)) {
+     *     ...
+     *   }
+     * </pre>
+     */
+    public Stream<Record> stream(boolean parallel){
+        Set<MappedSequenceFileReader> open=ConcurrentHashMap.newKeySet();
+        return StreamSupport.stream(new SplitSpliterator(0,splits.size(),open),parallel)
+                .onClose(()->{
+                    for (MappedSequenceFileReader reader : open) {
+                        IOUtils.cleanupWithLogger(LOG,reader);
+                    }
+                    open.clear();
+                });
+    }
+
+    /**
+     * Release the scanner's hold of the mapping; it is unmapped once the
+     * readers of running scans are closed as well. Splits that are being
+     * read are finished, but scans and streams fail with an
+     * {@link IllegalStateException} when they start another split.
+     */
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private static ByteBuffer copy(ByteBuffer src){
+        ByteBuffer copy=ByteBuffer.allocate(src.remaining());
+        copy.put(src.duplicate()).flip();
+        return copy;
+    }
+
+    private final class SplitSpliterator implements Spliterator<Record> {
+        private int next;
+        private final int fence;
+        /** Readers of all spliterators of the stream that are not closed. */
+        private final Set<MappedSequenceFileReader> open;
+        private MappedSequenceFileReader reader;
+
+        SplitSpliterator(int origin,int fence,Set<MappedSequenceFileReader> open){
+            this.next=origin;
+            this.fence=fence;
+            this.open=open;
+        }
+
+        private void closeReader()throws IOException{
+            MappedSequenceFileReader r=reader;
+            reader=null;
+            open.remove(r);
+            r.close();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Record> action) {
+            try {
+                while (true) {
+                    if (reader == null) {
+                        if (next >= fence) {
+                            return false;
+                        }
+                        Split split=splits.get(next++);
+                        reader=source.newReader();
+                        open.add(reader);
+                        reader.seek(split.getStart());
+                        reader.setEnd(split.getEnd());
+                    }
+                    if (reader.next()) {
+                        Record record=new Record(copy(reader.getKey()),copy(reader.getValue()));
+                        action.accept(record);
+                        return true;
+                    }
+                    closeReader();
+                }
+            }catch (IOException e){
+                closeQuietly();
+                throw new UncheckedIOException(e);
+            }catch (RuntimeException|Error e){
+                closeQuietly();
+                throw e;
+            }
+        }
+
+        private void closeQuietly(){
+            if (reader != null) {
+                MappedSequenceFileReader r=reader;
+                reader=null;
+                open.remove(r);
+                IOUtils.cleanupWithLogger(LOG,r);
+            }
+        }
+
+        @Override
+        public Spliterator<Record> trySplit() {
+            if (reader != null || fence-next < 2) {
+                return null;
+            }
+            int mid=(next+fence)>>>1;
+            Spliterator<Record> prefix=new SplitSpliterator(next,mid,open);
+            next=mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return reader==null&&next>=fence?0:Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED|NONNULL|IMMUTABLE;
+        }
+    }
+}
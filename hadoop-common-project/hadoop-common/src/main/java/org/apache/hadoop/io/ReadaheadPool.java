@@ -2,26 +2,414 @@ package org.apache.hadoop.io;
 
 import com.apache.hadoop.classification.InterfaceAudience;
 import com.apache.hadoop.classification.InterfaceStability;
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.fs.statistics.IOStatistics;
+import org.apache.hadoop.fs.statistics.IOStatisticsSource;
+import org.apache.hadoop.fs.statistics.impl.DynamicIOStatisticsBuilder;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.READAHEAD_BYTES;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.READAHEAD_CANCELLED;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.READAHEAD_HIT;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.READAHEAD_MISS;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.READAHEAD_REQUESTS;
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Manages a pool of threads which can issue readahead requests on files.
+ * <p>
+ * A request asks the kernel to bring a range of a file into the page cache
+ * ahead of the reader: through {@code posix_fadvise(WILLNEED)} when native
+ * code is loaded, otherwise by reading the range through the file's
+ * channel and discarding the data. Requests are queued on a bounded
+ * executor; when the queue is full the oldest request is dropped and
+ * counted as cancelled, as a stale readahead is worth less than a fresh one.
+ * <p>
+ * {@link StreamReadahead} tracks the readahead of one stream: it grows the
+ * window while the stream is read sequentially and cancels the pending
+ * request when the stream seeks elsewhere.
+ */
 @InterfaceAudience.Private
 @InterfaceStability.Evolving
-public class ReadaheadPool {
+public class ReadaheadPool implements IOStatisticsSource {
     static final Logger LOG= LoggerFactory.getLogger(ReadaheadPool.class);
     private static final int POOL_SIZE=4;
     private static final int MAX_POOL_SIZE=16;
     private static final int CAPACITY=1024;
+    /** Size of the reads which fill the page cache without native code. */
+    private static final int FALLBACK_READ_SIZE=256*1024;
     private final ThreadPoolExecutor pool;
     private static ReadaheadPool instance;
+
+    private final LongAdder requests=new LongAdder();
+    private final LongAdder cancelled=new LongAdder();
+    private final LongAdder requestedBytes=new LongAdder();
+    private final LongAdder hits=new LongAdder();
+    private final LongAdder misses=new LongAdder();
+    private final IOStatistics ioStatistics;
+    private final ThreadLocal<ByteBuffer> fallbackBuffer=
+            ThreadLocal.withInitial(()->ByteBuffer.allocateDirect(FALLBACK_READ_SIZE));
+
+    /**
+     * Return the singleton instance. Without native code readahead falls
+     * back to reads into the page cache, so the pool is always available.
+     */
     public static ReadaheadPool getInstance(){
         synchronized (ReadaheadPool.class){
-            if (instance==null && NativeIO.isAvailable()){
+            if (instance == null) {
                 instance=new ReadaheadPool();
             }
             return instance;
         }
     }
+
+    @VisibleForTesting
+    ReadaheadPool(){
+        pool=new ThreadPoolExecutor(POOL_SIZE,MAX_POOL_SIZE,3L,TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(CAPACITY),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("Readahead Thread #%d")
+                        .build(),
+                new DropOldestPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        ioStatistics=new DynamicIOStatisticsBuilder()
+                .withLongAdderCounter(READAHEAD_REQUESTS,requests)
+                .withLongAdderCounter(READAHEAD_CANCELLED,cancelled)
+                .withLongAdderCounter(READAHEAD_BYTES,requestedBytes)
+                .withLongAdderCounter(READAHEAD_HIT,hits)
+                .withLongAdderCounter(READAHEAD_MISS,misses)
+                .build();
+    }
+
+    @Override
+    public IOStatistics getIOStatistics() {
+        return ioStatistics;
+    }
+
+    /**
+     * Issue a request to readahead on the given file descriptor, if the
+     * reader has passed the middle of the previous readahead. This is the
+     * fixed window policy; {@link StreamReadahead} adapts the window.
+     * @param identifier a textual identifier used in error messages.
+     * @param fd the file descriptor to readahead.
+     * @param curPos the current offset at which reads are being issued.
+     * @param readaheadLength the configured length to read ahead.
+     * @param maxOffsetToRead the maximum offset that will be readahead.
+     * @param lastReadahead the result returned by the previous invocation
+     *                      of this function on this file descriptor, or null.
+     * @return an object representing this outstanding request, or null.
+     */
+    public ReadaheadRequest readaheadStream(String identifier,FileDescriptor fd,long curPos,
+                                            long readaheadLength,long maxOffsetToRead,
+                                            ReadaheadRequest lastReadahead){
+        checkArgument(curPos<=maxOffsetToRead,"Readahead position %s higher than maxOffsetToRead %s",
+                curPos,maxOffsetToRead);
+        if (readaheadLength <= 0) {
+            return null;
+        }
+        long lastOffset=Long.MIN_VALUE;
+        if (lastReadahead != null) {
+            lastOffset=lastReadahead.getOffset();
+        }
+        long nextOffset=lastOffset+readaheadLength/2;
+        if (curPos < nextOffset) {
+            return lastReadahead;
+        }
+        if (lastReadahead != null) {
+            lastReadahead.cancel();
+        }
+        long length=Math.min(readaheadLength,maxOffsetToRead-curPos);
+        if (length <= 0) {
+            return null;
+        }
+        return submitReadahead(identifier,fd,curPos,length);
+    }
+
+    /**
+     * Submit a request to readahead on the given file descriptor.
+     * @return an object representing this pending request.
+     */
+    public ReadaheadRequest submitReadahead(String identifier,FileDescriptor fd,long off,long len){
+        return submit(new ReadaheadRequestImpl(identifier,fd,null,off,len));
+    }
+
+    private ReadaheadRequestImpl submit(ReadaheadRequestImpl req){
+        requests.increment();
+        requestedBytes.add(req.len);
+        pool.execute(req);
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("submit readahead: "+req);
+        }
+        return req;
+    }
+
+    /**
+     * Start tracking the readahead of a stream.
+     * @param identifier a textual identifier used in error messages.
+     * @param fd descriptor used for fadvise; may be null.
+     * @param channel channel read without native code; may be null.
+     * @param initialWindow window of the first request.
+     * @param maxWindow upper bound of the window.
+     */
+    public StreamReadahead newStreamReadahead(String identifier,FileDescriptor fd,FileChannel channel,
+                                              long initialWindow,long maxWindow){
+        return new StreamReadahead(identifier,fd,channel,initialWindow,maxWindow);
+    }
+
+    /**
+     * Makes room for a new request by dropping the oldest queued one. Unlike
+     * {@link ThreadPoolExecutor.DiscardOldestPolicy} the dropped request is
+     * marked done and cancelled, so its owner does not wait for it.
+     */
+    private static final class DropOldestPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r,ThreadPoolExecutor executor){
+            if (executor.isShutdown()) {
+                return;
+            }
+            Runnable oldest=executor.getQueue().poll();
+            if (oldest instanceof ReadaheadRequestImpl) {
+                ((ReadaheadRequestImpl) oldest).drop();
+            }
+            executor.execute(r);
+        }
+    }
+
+    /**
+     * An outstanding readahead request that has been submitted to
+     * the pool. This request may be pending or may have been
+     * completed.
+     */
+    public interface ReadaheadRequest {
+        /** Cancels the request for readahead; does nothing if it already ran. */
+        void cancel();
+
+        long getOffset();
+
+        long getLength();
+
+        /** Whether the request has completed or been cancelled. */
+        boolean isDone();
+    }
+
+    private class ReadaheadRequestImpl implements Runnable, ReadaheadRequest {
+        private final String identifier;
+        private final FileDescriptor fd;
+        private final FileChannel channel;
+        private final long off;
+        private final long len;
+        private volatile boolean canceled=false;
+        private volatile boolean done=false;
+
+        ReadaheadRequestImpl(String identifier,FileDescriptor fd,FileChannel channel,long off,long len){
+            this.identifier=identifier;
+            this.fd=fd;
+            this.channel=channel;
+            this.off=off;
+            this.len=len;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (canceled) {
+                    return;
+                }
+                if (fd != null && NativeIO.POSIX.isAvailable()) {
+                    NativeIO.POSIX.getCacheManipulator().posixFadviseIfPossible(identifier,fd,off,len,
+                            NativeIO.POSIX.POSIX_FADV_WILLNEED);
+                }else if (channel != null) {
+                    readIntoCache();
+                }
+            }catch (IOException ioe){
+                if (canceled) {
+                    return;
+                }
+                LOG.warn("Failed readahead on "+identifier,ioe);
+            }finally {
+                done=true;
+            }
+        }
+
+        private void readIntoCache()throws IOException{
+            ByteBuffer buf=fallbackBuffer.get();
+            long pos=off;
+            long end=off+len;
+            while (pos < end && !canceled && channel.isOpen()) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(),end-pos));
+                int n=channel.read(buf,pos);
+                if (n < 0) {
+                    return;
+                }
+                pos+=n;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            canceled=true;
+            if (pool.remove(this)) {
+                cancelled.increment();
+                done=true;
+            }
+        }
+
+        /** Called once the pool has taken the request off its queue unrun. */
+        void drop(){
+            canceled=true;
+            cancelled.increment();
+            done=true;
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("dropped readahead: "+this);
+            }
+        }
+
+        boolean isCanceled(){
+            return canceled;
+        }
+
+        @Override
+        public long getOffset() {
+            return off;
+        }
+
+        @Override
+        public long getLength() {
+            return len;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public String toString() {
+            return "ReadaheadRequestImpl [identifier='"+identifier+"', fd="+fd
+                    +", off="+off+", len="+len+"]";
+        }
+    }
+
+    /**
+     * The readahead state of one stream. It is not thread safe; it is
+     * driven by the thread reading the stream.
+     * <p>
+     * The next window is requested once the reader has consumed half of the
+     * current one and starts where the current one ends, so requests never
+     * overlap. Every window requested while the stream stays sequential is
+     * twice the size of the previous one, up to the maximum. A seek outside
+     * the current window cancels it and restarts at the initial size.
+     * When the reader enters a window, the pool counts a hit if the window
+     * had been read ahead already and a miss if it is still pending; a window
+     * the pool dropped has been counted as cancelled instead.
+     */
+    public final class StreamReadahead implements Closeable {
+        private final String identifier;
+        private final FileDescriptor fd;
+        private final FileChannel channel;
+        private long initialWindow;
+        private long maxWindow;
+        private long window;
+        private ReadaheadRequestImpl current;
+        private boolean currentEntered;
+
+        StreamReadahead(String identifier,FileDescriptor fd,FileChannel channel,
+                        long initialWindow,long maxWindow){
+            this.identifier=identifier;
+            this.fd=fd;
+            this.channel=channel;
+            setWindow(initialWindow,maxWindow);
+        }
+
+        /** Change the window; a non positive initial window disables readahead. */
+        public void setWindow(long initialWindow,long maxWindow){
+            this.initialWindow=initialWindow;
+            this.maxWindow=Math.max(initialWindow,maxWindow);
+            this.window=initialWindow;
+        }
+
+        public long getWindow(){
+            return window;
+        }
+
+        /**
+         * Called after a read.
+         * @param curPos the position the stream has been read up to.
+         * @param maxOffsetToRead the end of the file.
+         */
+        public void onRead(long curPos,long maxOffsetToRead){
+            if (initialWindow <= 0) {
+                return;
+            }
+            long start=curPos;
+            if (current != null) {
+                long currentEnd=current.off+current.len;
+                if (!currentEntered && curPos > current.off) {
+                    currentEntered=true;
+                    // read done first: drop() sets canceled before it.
+                    // A request the pool dropped has been counted as cancelled
+                    boolean done=current.isDone();
+                    if (!current.isCanceled()) {
+                        if (done) {
+                            hits.increment();
+                        }else {
+                            misses.increment();
+                        }
+                    }
+                }
+                if (curPos < current.off+current.len/2) {
+                    return;
+                }
+                if (curPos < currentEnd) {
+                    start=currentEnd;
+                    window=Math.min(window*2,maxWindow);
+                }
+            }
+            long length=Math.min(window,maxOffsetToRead-start);
+            if (length <= 0) {
+                return;
+            }
+            current=submit(new ReadaheadRequestImpl(identifier,fd,channel,start,length));
+            currentEntered=curPos>start;
+        }
+
+        /** Called when the stream is repositioned. */
+        public void onSeek(long newPos){
+            if (current != null
+                    && newPos >= current.off && newPos < current.off+current.len) {
+                return;
+            }
+            cancelCurrent();
+            window=initialWindow;
+        }
+
+        private void cancelCurrent(){
+            if (current != null) {
+                current.cancel();
+                current=null;
+                currentEntered=false;
+            }
+        }
+
+        @Override
+        public void close() {
+            cancelCurrent();
+        }
+    }
 }
@@ -29,14 +29,19 @@ public class SequenceFile {
     private static final byte BLOCK_COMPRESS_VERSION=(byte) 4;
     private static final byte CUSTOM_COMPRESS_VERSION=(byte) 5;
     private static final byte VERSION_WITH_METADATA=(byte) 6;
-    private static byte[] VERSION=new byte[]{
+    private static final byte[] VERSION=new byte[]{
             (byte) 'S',(byte) 'E',(byte) 'Q',VERSION_WITH_METADATA
     };
-    private static final int SYNC_ESCAPE=1;
-    private static final int SYNC_HASH_SIZE=16;
-    private static final int SYNC_SIZE=4+SYNC_HASH_SIZE;
+    static final int SYNC_ESCAPE=-1;
+    static final int SYNC_HASH_SIZE=16;
+    static final int SYNC_SIZE=4+SYNC_HASH_SIZE;
     private static final int SYNC_INTERVAL=5*1024*SYNC_SIZE;
 
+    /** A copy of the header magic, "SEQ" followed by the version byte. */
+    static byte[] versionBlock(){
+        return VERSION.clone();
+    }
+
 
 
     public static class Writer implements Closeable,Syncable,Flushable,StreamCapabilities{
@@ -261,7 +266,7 @@ public class SequenceFile {
 
         @Override
         public void writer(DataOutput out) throws IOException {
-            out.write(this.theMetadata.size());
+            out.writeInt(this.theMetadata.size());
             Iterator<Map.Entry<Text, Text>> iterator = this.theMetadata.entrySet().iterator();
             while (iterator.hasNext()) {
                 Map.Entry<Text, Text> entry = iterator.next();
@@ -0,0 +1,284 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.fs.statistics.IOStatistics;
+import org.apache.hadoop.fs.statistics.IOStatisticsSource;
+import org.apache.hadoop.fs.statistics.impl.DynamicIOStatisticsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.BUFFER_POOL_EVICT;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.BUFFER_POOL_HIT;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.BUFFER_POOL_MISS;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.BUFFER_POOL_RETAINED_BYTES;
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link ByteBufferPool} which never blocks.
+ * <p>
+ * Buffers are grouped into power-of-two size classes, and every class of
+ * the direct and the heap arena is a lock-free (Treiber) stack, so
+ * concurrent borrowers only contend on a CAS of the class they use.
+ * A buffer of capacity {@code c} is returned to class
+ * {@code floor(log2(c))} and a request for {@code length} bytes is served
+ * from class {@code ceil(log2(length))}, so a pooled buffer is always large
+ * enough. Buffers allocated by the pool are rounded up to the class size.
+ * <p>
+ * Retention is bounded both per class and in bytes per arena; buffers
+ * which do not fit are dropped and counted as evictions. Optionally each
+ * thread keeps a small magazine per class which is used before the shared
+ * stacks are touched; magazines are bounded by their own size and are not
+ * charged against the byte limit, as they die with their thread.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class StripedByteBufferPool implements ByteBufferPool, IOStatisticsSource {
+    /** Largest pooled class: 2^30 bytes. */
+    static final int MAX_SHIFT=30;
+    private static final int NUM_CLASSES=MAX_SHIFT+1;
+
+    private final int maxBuffersPerClass;
+    private final long maxBytes;
+    private final int magazineSize;
+    private final Arena heap;
+    private final Arena direct;
+    private final ThreadLocal<Magazine> magazines;
+
+    private final LongAdder hits=new LongAdder();
+    private final LongAdder misses=new LongAdder();
+    private final LongAdder evictions=new LongAdder();
+    private final IOStatistics ioStatistics;
+
+    public StripedByteBufferPool(){
+        this(256L*1024*1024,256,0);
+    }
+
+    public StripedByteBufferPool(long maxBytes,int maxBuffersPerClass,int magazineSize){
+        checkArgument(maxBytes>=0,"negative maxBytes: %s",maxBytes);
+        checkArgument(maxBuffersPerClass>=0,"negative maxBuffersPerClass: %s",maxBuffersPerClass);
+        checkArgument(magazineSize>=0,"negative magazineSize: %s",magazineSize);
+        this.maxBytes=maxBytes;
+        this.maxBuffersPerClass=maxBuffersPerClass;
+        this.magazineSize=magazineSize;
+        this.heap=new Arena();
+        this.direct=new Arena();
+        this.magazines=magazineSize>0?ThreadLocal.withInitial(Magazine::new):null;
+        this.ioStatistics=new DynamicIOStatisticsBuilder()
+                .withLongAdderCounter(BUFFER_POOL_HIT,hits)
+                .withLongAdderCounter(BUFFER_POOL_MISS,misses)
+                .withLongAdderCounter(BUFFER_POOL_EVICT,evictions)
+                .withLongFunctionGauge(BUFFER_POOL_RETAINED_BYTES,
+                        ()->heap.retainedBytes.get()+direct.retainedBytes.get())
+                .build();
+    }
+
+    /** Index of the smallest class whose buffers hold {@code length} bytes. */
+    static int ceilClass(int length){
+        return length<=1?0:32-Integer.numberOfLeadingZeros(length-1);
+    }
+
+    /** Index of the class a buffer of {@code capacity} bytes is stored in. */
+    static int floorClass(int capacity){
+        return 31-Integer.numberOfLeadingZeros(capacity);
+    }
+
+    private Arena getArena(boolean direct){
+        return direct?this.direct:heap;
+    }
+
+    @Override
+    public ByteBuffer getBuffer(boolean direct, int length) {
+        checkArgument(length>=0,"negative length: %s",length);
+        int sizeClass=ceilClass(length);
+        if (sizeClass>MAX_SHIFT) {
+            misses.increment();
+            return allocate(direct,length);
+        }
+        if (magazines != null) {
+            ByteBuffer buffer=magazines.get().pop(direct,sizeClass);
+            if (buffer != null) {
+                hits.increment();
+                buffer.clear();
+                return buffer;
+            }
+        }
+        Arena arena=getArena(direct);
+        ByteBuffer buffer=arena.stacks[sizeClass].pop();
+        if (buffer == null) {
+            misses.increment();
+            return allocate(direct,1<<sizeClass);
+        }
+        arena.retainedBytes.addAndGet(-buffer.capacity());
+        hits.increment();
+        buffer.clear();
+        return buffer;
+    }
+
+    private static ByteBuffer allocate(boolean direct,int capacity){
+        return direct?ByteBuffer.allocateDirect(capacity):
+                ByteBuffer.allocate(capacity);
+    }
+
+    @Override
+    public void putBuffer(ByteBuffer buffer) {
+        int capacity=buffer.capacity();
+        if (capacity == 0) {
+            return;
+        }
+        buffer.clear();
+        boolean isDirect=buffer.isDirect();
+        int sizeClass=floorClass(capacity);
+        if (magazines != null && magazines.get().push(isDirect,sizeClass,buffer)) {
+            return;
+        }
+        Arena arena=getArena(isDirect);
+        if (arena.retainedBytes.addAndGet(capacity)>maxBytes) {
+            arena.retainedBytes.addAndGet(-capacity);
+            evictions.increment();
+            return;
+        }
+        if (!arena.stacks[sizeClass].push(buffer,maxBuffersPerClass)) {
+            arena.retainedBytes.addAndGet(-capacity);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drop every buffer held in the shared stacks. Buffers cached in the
+     * magazines of other threads are released when those threads exit.
+     */
+    @Override
+    public void release() {
+        heap.clear();
+        direct.clear();
+        if (magazines != null) {
+            magazines.remove();
+        }
+    }
+
+    @Override
+    public IOStatistics getIOStatistics() {
+        return ioStatistics;
+    }
+
+    @InterfaceAudience.Private
+    @InterfaceStability.Unstable
+    public int size(boolean direct){
+        int size=0;
+        for (Stack stack : getArena(direct).stacks) {
+            size+=stack.count.get();
+        }
+        return size;
+    }
+
+    @VisibleForTesting
+    long getRetainedBytes(boolean direct){
+        return getArena(direct).retainedBytes.get();
+    }
+
+    private static final class Arena {
+        private final Stack[] stacks=new Stack[NUM_CLASSES];
+        private final AtomicLong retainedBytes=new AtomicLong();
+
+        Arena(){
+            for (int i = 0; i < NUM_CLASSES; i++) {
+                stacks[i]=new Stack();
+            }
+        }
+
+        void clear(){
+            for (Stack stack : stacks) {
+                ByteBuffer buffer;
+                while ((buffer=stack.pop()) != null) {
+                    retainedBytes.addAndGet(-buffer.capacity());
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+        private final ByteBuffer buffer;
+        private Node next;
+
+        Node(ByteBuffer buffer){
+            this.buffer=buffer;
+        }
+    }
+
+    /**
+     * Treiber stack; a node is never reused, so a successful CAS on the
+     * head cannot suffer from ABA.
+     */
+    private static final class Stack {
+        private final AtomicReference<Node> head=new AtomicReference<>();
+        private final AtomicInteger count=new AtomicInteger();
+
+        boolean push(ByteBuffer buffer,int limit){
+            if (count.incrementAndGet()>limit) {
+                count.decrementAndGet();
+                return false;
+            }
+            Node node=new Node(buffer);
+            Node current;
+            do {
+                current=head.get();
+                node.next=current;
+            }while (!head.compareAndSet(current,node));
+            return true;
+        }
+
+        ByteBuffer pop(){
+            Node current;
+            do {
+                current=head.get();
+                if (current == null) {
+                    return null;
+                }
+            }while (!head.compareAndSet(current,current.next));
+            count.decrementAndGet();
+            return current.buffer;
+        }
+    }
+
+    /** Small per-thread cache in front of the shared stacks. */
+    private final class Magazine {
+        private final ByteBuffer[][] heapSlots=new ByteBuffer[NUM_CLASSES][];
+        private final ByteBuffer[][] directSlots=new ByteBuffer[NUM_CLASSES][];
+        private final int[] heapCounts=new int[NUM_CLASSES];
+        private final int[] directCounts=new int[NUM_CLASSES];
+
+        ByteBuffer pop(boolean direct,int sizeClass){
+            int[] counts=direct?directCounts:heapCounts;
+            int n=counts[sizeClass];
+            if (n == 0) {
+                return null;
+            }
+            ByteBuffer[] slots=(direct?directSlots:heapSlots)[sizeClass];
+            ByteBuffer buffer=slots[--n];
+            slots[n]=null;
+            counts[sizeClass]=n;
+            return buffer;
+        }
+
+        boolean push(boolean direct,int sizeClass,ByteBuffer buffer){
+            ByteBuffer[][] all=direct?directSlots:heapSlots;
+            int[] counts=direct?directCounts:heapCounts;
+            int n=counts[sizeClass];
+            if (n == magazineSize) {
+                return false;
+            }
+            if (all[sizeClass] == null) {
+                all[sizeClass]=new ByteBuffer[magazineSize];
+            }
+            all[sizeClass][n]=buffer;
+            counts[sizeClass]=n+1;
+            return true;
+        }
+    }
+}
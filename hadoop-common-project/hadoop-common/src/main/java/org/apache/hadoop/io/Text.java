@@ -10,8 +10,6 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.*;
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -33,9 +31,9 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
                             .onUnmappableCharacter(CodingErrorAction.REPORT);
                 }
             };
-    private static final ThreadLocal<CharsetDecoder> DECODER_FACTORY=new ThreadLocal<>(){
+    private static final ThreadLocal<CharsetDecoder> DECODER_FACTORY=new ThreadLocal<CharsetDecoder>(){
         @Override
-        protected Object initialValue() {
+        protected CharsetDecoder initialValue() {
             return StandardCharsets.UTF_8.newDecoder()
                     .onMalformedInput(CodingErrorAction.REPORT)
                     .onUnmappableCharacter(CodingErrorAction.REPORT);
@@ -46,6 +44,9 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
     private byte[] bytes=EMPTY_BYTES;
     private int length=0;
     private int textLength=-1;
+    private boolean cacheString=false;
+    /** The string of the current bytes, when caching; null if unknown. */
+    private String string;
 
     public Text(){}
     public Text(String str){set(str);}
@@ -64,6 +65,18 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
     public int getLength() {
         return length;
     }
+    /**
+     * Keep the string this text was set to or last decoded to, so that
+     * {@link #toString()} does not decode again. Off by default, as the
+     * cached string goes stale if the array returned by
+     * {@link #getBytes()} is modified directly.
+     */
+    public void setCacheString(boolean cacheString){
+        this.cacheString=cacheString;
+        if (!cacheString) {
+            string=null;
+        }
+    }
     public int getTextLength(){
         if (textLength<0){
             textLength=toString().length();
@@ -74,60 +87,83 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
         if (position>this.length) return -1;
         if (position<0) return -1;
         ByteBuffer bb= (ByteBuffer) ByteBuffer.wrap(bytes).position(position);
-        return byteToCodePoint(bb.slice());
+        return bytesToCodePoint(bb.slice());
     }
     public int find(String what){
         return find(what,0);
     }
+    /**
+     * Finds any occurrence of <code>what</code> in the backing buffer,
+     * starting at byte position <code>start</code>, with a Horspool skip
+     * table over the UTF-8 bytes of <code>what</code>.
+     * @return byte position of the first occurrence, or -1 if not found.
+     */
     public int find(String what,int start){
-        try {
-            ByteBuffer src=ByteBuffer.wrap(this.bytes,0,this.length);
-            ByteBuffer tgt=encode(what);
-            byte b=tgt.get();
-            src.position(start);
-            while (src.hasRemaining()) {
-                if (b==src.get()) {
-                    src.mark();
-                    tgt.mark();
-                    boolean found=true;
-                    int pos=src.position()-1;
-                    while (tgt.hasRemaining()) {
-                        if (!src.hasRemaining()) {
-                            tgt.reset();
-                            src.reset();
-                            found=false;
-                            break;
-                        }
-                        if (!(tgt.get() == src.get())) {
-                            tgt.reset();
-                            src.reset();
-                            found=false;
-                            break;
-                        }
-                    }
-                    if (found) return pos;
+        byte[] tgt=new byte[encodedLength(what)];
+        encodeUTF8(what,tgt);
+        int m=tgt.length;
+        int last=length-m;
+        if (start < 0 || start > last) {
+            return m==0 && start>=0 && start<=length?start:-1;
+        }
+        if (m == 0) {
+            return start;
+        }
+        byte first=tgt[0];
+        if (m < 4) {
+            for (int i = start; i <= last; i++) {
+                if (bytes[i] == first && matchesAt(tgt,i)) {
+                    return i;
                 }
             }
             return -1;
-        }catch (CharacterCodingException e){
-            throw new RuntimeException("Should not have happened",e);
         }
+        int[] skip=new int[256];
+        Arrays.fill(skip,m);
+        for (int k = 0; k < m-1; k++) {
+            skip[tgt[k]&0xff]=m-1-k;
+        }
+        byte tail=tgt[m-1];
+        for (int i = start; i <= last; ) {
+            byte b=bytes[i+m-1];
+            if (b == tail && bytes[i] == first && matchesAt(tgt,i)) {
+                return i;
+            }
+            i+=skip[b&0xff];
+        }
+        return -1;
+    }
+    private boolean matchesAt(byte[] tgt,int pos){
+        for (int k = 1; k < tgt.length; k++) {
+            if (bytes[pos+k] != tgt[k]) {
+                return false;
+            }
+        }
+        return true;
     }
+    /**
+     * Set to contain the contents of a string, encoded into the existing
+     * array if it is large enough. Unpaired surrogates are replaced by
+     * '?', as by the replacing {@link #encode(String)}; the string is then
+     * not cached, so {@link #toString()} returns the replaced form.
+     */
     public void set(String str){
-        try {
-            ByteBuffer bb=encode(str,true);
-            bytes=bb.array();
-            length=bb.limit();
-            textLength=str.length();
-        }catch (CharacterCodingException e){
-            throw new RuntimeException("Should not have happened",e);
+        int len=encodedLength(str);
+        if (bytes.length < len) {
+            bytes=new byte[len];
         }
+        boolean lossless=encodeUTF8(str,bytes);
+        length=len;
+        // a replaced surrogate decodes to one '?', so the length holds
+        textLength=str.length();
+        string=cacheString && lossless?str:null;
     }
     public void set(byte[] utf8){
         if (utf8.length==0) {
             bytes=EMPTY_BYTES;
             length=0;
             textLength=-1;
+            string=null;
         }else {
             set(utf8,0,utf8.length);
         }
@@ -135,12 +171,16 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
     public void set(Text other){
         set(other.getBytes(),0,other.getLength());
         this.textLength=other.textLength;
+        if (cacheString) {
+            this.string=other.string;
+        }
     }
     public void set(byte[] utf8,int start,int len){
         ensureCapacity(len);
         System.arraycopy(utf8,start,bytes,0,len);
         this.length=len;
         this.textLength=-1;
+        this.string=null;
     }
     public void append(byte[] utf8,int start,int len){
         byte[] original=bytes;
@@ -150,10 +190,12 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
         System.arraycopy(utf8,start,bytes,length,len);
         length+=len;
         textLength=-1;
+        string=null;
     }
     public void clear(){
         length=0;
         textLength=-1;
+        string=null;
     }
     private boolean ensureCapacity(final int capacity){
         if (bytes.length < capacity) {
@@ -168,11 +210,14 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
 
     @Override
     public String toString() {
-        try {
-            return decode(bytes,0,length);
-        }catch (CharacterCodingException e){
-            throw new RuntimeException("Should not have happened",e);
+        String str=string;
+        if (str == null) {
+            str=decodeReplacing(bytes,0,length);
+            if (cacheString) {
+                string=str;
+            }
         }
+        return str;
     }
 
     @Override
@@ -199,6 +244,7 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
         in.readFully(bytes,0,len);
         length=len;
         textLength=-1;
+        string=null;
     }
 
     @Override
@@ -242,13 +288,119 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
         WritableComparator.define(Text.class,new Comparator());
     }
     public static String decode(byte[] utf8)throws CharacterCodingException{
-        return decode(ByteBuffer.wrap(utf8),true);
+        return decodeReplacing(utf8,0,utf8.length);
     }
     public static String decode(byte[] utf8,int start,int length)throws CharacterCodingException{
-        return decode(ByteBuffer.wrap(utf8,start,length),true);
+        return decodeReplacing(utf8,start,length);
     }
     public static String decode(byte[] utf8,int start,int length,boolean replace)throws CharacterCodingException{
-        return decode(ByteBuffer.wrap(utf8,start,length),replace);
+        if (replace) {
+            return decodeReplacing(utf8,start,length);
+        }
+        if (isAscii(utf8,start,length)) {
+            return new String(utf8,start,length,StandardCharsets.ISO_8859_1);
+        }
+        return decode(ByteBuffer.wrap(utf8,start,length),false);
+    }
+
+    /**
+     * Decode, replacing malformed input by U+FFFD. ASCII, found 8 bytes at
+     * a time, is turned into a string directly as Latin-1.
+     */
+    private static String decodeReplacing(byte[] utf8,int start,int length){
+        if (isAscii(utf8,start,length)) {
+            return new String(utf8,start,length,StandardCharsets.ISO_8859_1);
+        }
+        return new String(utf8,start,length,StandardCharsets.UTF_8);
+    }
+
+    /** Whether no byte in the range has the high bit set. */
+    static boolean isAscii(byte[] b,int start,int length){
+        int i=start;
+        int end=start+length;
+        for (int stop = end-7; i < stop; i += 8) {
+            if (((b[i]|b[i+1]|b[i+2]|b[i+3]|b[i+4]|b[i+5]|b[i+6]|b[i+7])&0x80) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (b[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The length of the UTF-8 encoding written by
+     * {@link #encodeUTF8(String, byte[])}.
+     */
+    private static int encodedLength(String s){
+        int n=s.length();
+        int len=n;
+        for (int i = 0; i < n; i++) {
+            char c=s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                len+=1;
+            }else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i+1 < n
+                        && Character.isLowSurrogate(s.charAt(i+1))) {
+                    // four bytes for two chars
+                    len+=2;
+                    i++;
+                }
+                // an unpaired surrogate becomes '?'
+            }else {
+                len+=2;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Encode a string as UTF-8 into an array of at least
+     * {@link #encodedLength(String)} bytes, replacing unpaired surrogates
+     * by '?' like the replacing encoder.
+     * @return whether nothing was replaced.
+     */
+    private static boolean encodeUTF8(String s,byte[] dst){
+        int n=s.length();
+        int p=0;
+        int i=0;
+        boolean lossless=true;
+        // ASCII prefix
+        for (char c; i < n && (c=s.charAt(i)) < 0x80; i++) {
+            dst[p++]=(byte) c;
+        }
+        for (; i < n; i++) {
+            char c=s.charAt(i);
+            if (c < 0x80) {
+                dst[p++]=(byte) c;
+            }else if (c < 0x800) {
+                dst[p++]=(byte) (0xC0|(c>>6));
+                dst[p++]=(byte) (0x80|(c&0x3F));
+            }else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i+1 < n
+                        && Character.isLowSurrogate(s.charAt(i+1))) {
+                    int cp=Character.toCodePoint(c,s.charAt(++i));
+                    dst[p++]=(byte) (0xF0|(cp>>18));
+                    dst[p++]=(byte) (0x80|((cp>>12)&0x3F));
+                    dst[p++]=(byte) (0x80|((cp>>6)&0x3F));
+                    dst[p++]=(byte) (0x80|(cp&0x3F));
+                }else {
+                    dst[p++]='?';
+                    lossless=false;
+                }
+            }else {
+                dst[p++]=(byte) (0xE0|(c>>12));
+                dst[p++]=(byte) (0x80|((c>>6)&0x3F));
+                dst[p++]=(byte) (0x80|(c&0x3F));
+            }
+        }
+        return lossless;
     }
     private static String decode(ByteBuffer utf8,boolean replace) throws CharacterCodingException {
         CharsetDecoder decoder = DECODER_FACTORY.get();
@@ -269,17 +421,12 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
         return encode(str,true);
     }
     public static ByteBuffer encode(String str,boolean replace) throws CharacterCodingException {
-        CharsetEncoder encoder = ENCODER_FATORY.get();
-        if (replace) {
-            encoder.onMalformedInput(CodingErrorAction.REPLACE);
-            encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
-        }
-        ByteBuffer bytes=encoder.encode(CharBuffer.wrap(str.toCharArray()));
         if (replace) {
-            encoder.onMalformedInput(CodingErrorAction.REPORT);
-            encoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+            byte[] utf8=new byte[encodedLength(str)];
+            encodeUTF8(str,utf8);
+            return ByteBuffer.wrap(utf8);
         }
-        return bytes;
+        return ENCODER_FATORY.get().encode(CharBuffer.wrap(str));
     }
     public static final int DEFAULT_MAX_LEN=1024*1024;
     public static String readString(DataInput in)throws IOException{
@@ -289,7 +436,7 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
         int length=WritableUtils.readVIntRange(in,0,maxLength);
         byte[] bytes = new byte[length];
         in.readFully(bytes,0,length);
-        return decode(bytes);
+        return decodeReplacing(bytes,0,length);
     }
     public static int writeString(DataOutput out,String s)throws IOException{
         ByteBuffer bytes = encode(s);
@@ -322,7 +469,15 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
         int leadByte = 0;
         int length = 0;
         int state = LEAD_BYTE;
-        while (count < start+len) {
+        int end = start+len;
+        while (count < end) {
+            if (state == LEAD_BYTE && count+8 <= end
+                    && ((utf8[count]|utf8[count+1]|utf8[count+2]|utf8[count+3]
+                    |utf8[count+4]|utf8[count+5]|utf8[count+6]|utf8[count+7])&0x80) == 0) {
+                // eight ASCII bytes
+                count += 8;
+                continue;
+            }
             int aByte = utf8[count] & 0xFF;
 
             switch (state) {
@@ -446,21 +601,23 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
      * @return number of UTF-8 bytes required to encode
      */
     public static int utf8Length(String string) {
-        CharacterIterator iter = new StringCharacterIterator(string);
-        char ch = iter.first();
+        int n = string.length();
         int size = 0;
-        while (ch != CharacterIterator.DONE) {
+        for (int i = 0; i < n; i++) {
+            char ch = string.charAt(i);
             if ((ch >= 0xD800) && (ch < 0xDC00)) {
                 // surrogate pair?
-                char trail = iter.next();
-                if ((trail > 0xDBFF) && (trail < 0xE000)) {
-                    // valid pair
-                    size += 4;
-                } else {
-                    // invalid pair
-                    size += 3;
-                    iter.previous(); // rewind one
+                if (i + 1 < n) {
+                    char trail = string.charAt(i + 1);
+                    if ((trail > 0xDBFF) && (trail < 0xE000)) {
+                        // valid pair
+                        size += 4;
+                        i++;
+                        continue;
+                    }
                 }
+                // invalid pair
+                size += 3;
             } else if (ch < 0x80) {
                 size++;
             } else if (ch < 0x800) {
@@ -469,7 +626,6 @@ public class Text extends BinaryComparable implements WritableComparable<BinaryC
                 // ch < 0x10000, that is, the largest char value
                 size += 3;
             }
-            ch = iter.next();
         }
         return size;
     }
@@ -154,7 +154,7 @@ public class UTF8 implements WritableComparable<UTF8>{
             DataOutputBuffer oBuf = OBUF_FACTOR.get();
             oBuf.reset();
             writeChars(oBuf,str,0,str.length());
-            System.arraycopy(oBuf.getData(),0,result,0,oBuf.getLength(););
+            System.arraycopy(oBuf.getData(),0,result,0,oBuf.getLength());
         }catch (IOException e){
             throw new RuntimeException(e);
         }
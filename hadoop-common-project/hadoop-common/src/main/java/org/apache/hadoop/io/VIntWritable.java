@@ -1,4 +1,77 @@
 package org.apache.hadoop.io;
 
-public class VIntWritable {
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A WritableComparable for ints in a variable-length format. Such values
+ * take between one and five bytes. Smaller values take fewer bytes.
+ *
+ * @see WritableUtils#writeVInt(DataOutput, int)
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public class VIntWritable implements WritableComparable<VIntWritable> {
+    private int value;
+    public VIntWritable(){}
+    public VIntWritable(int value){set(value);}
+    public void set(int value){this.value=value;}
+    public int get(){return value;}
+    @Override
+    public int compareTo(VIntWritable o) {
+        int thisValue=this.value;
+        int thatValue=o.value;
+        return (Integer.compare(thisValue, thatValue));
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out,value);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        value=WritableUtils.readVInt(in);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof VIntWritable)) {
+            return false;
+        }
+        VIntWritable other=(VIntWritable)o;
+        return this.value==other.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(value);
+    }
+
+    public static class Comparator extends WritableComparator{
+        public Comparator(){
+            super(VIntWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int start1, int length1, byte[] b2, int start2, int length2) {
+            try {
+                return (Long.compare(readVLong(b1,start1),readVLong(b2,start2)));
+            }catch (IOException e){
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+    static {
+        WritableComparator.define(VIntWritable.class,new Comparator());
+    }
 }
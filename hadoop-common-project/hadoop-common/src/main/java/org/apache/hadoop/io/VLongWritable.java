@@ -1,4 +1,77 @@
 package org.apache.hadoop.io;
 
-public class VLongWritable {
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A WritableComparable for longs in a variable-length format. Such values
+ * take between one and nine bytes. Smaller values take fewer bytes.
+ *
+ * @see WritableUtils#writeVLong(DataOutput, long)
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public class VLongWritable implements WritableComparable<VLongWritable> {
+    private long value;
+    public VLongWritable(){}
+    public VLongWritable(long value){set(value);}
+    public void set(long value){this.value=value;}
+    public long get(){return value;}
+    @Override
+    public int compareTo(VLongWritable o) {
+        long thisValue=this.value;
+        long thatValue=o.value;
+        return (Long.compare(thisValue, thatValue));
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out,value);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        value=WritableUtils.readVLong(in);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof VLongWritable)) {
+            return false;
+        }
+        VLongWritable other=(VLongWritable)o;
+        return this.value==other.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) value;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(value);
+    }
+
+    public static class Comparator extends WritableComparator{
+        public Comparator(){
+            super(VLongWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int start1, int length1, byte[] b2, int start2, int length2) {
+            try {
+                return (Long.compare(readVLong(b1,start1),readVLong(b2,start2)));
+            }catch (IOException e){
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+    static {
+        WritableComparator.define(VLongWritable.class,new Comparator());
+    }
 }
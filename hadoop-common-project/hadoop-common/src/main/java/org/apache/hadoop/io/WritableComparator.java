@@ -4,6 +4,7 @@ import com.apache.hadoop.classification.InterfaceAudience;
 import com.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.ReflectionUtils;
 
 import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,6 +30,9 @@ public class WritableComparator implements RawComparator, Configurable {
         if (comparator == null) {
             forceInit(c);
             comparator=comparators.get(c);
+            if (comparator == null && c.isAnnotationPresent(CompositeKey.class)) {
+                comparator=CompositeKeyComparator.define(c);
+            }
             if (comparator == null) {
                 comparator=new WritableComparator(c,conf,true);
             }
@@ -143,14 +147,14 @@ public class WritableComparator implements RawComparator, Configurable {
     }
     public static long readLong(byte[] bytes,int start){
         return ((long)(readInt(bytes,start))<<32)+
-                (readInt(bytes,start+4)&0xFFFFFFFL);
+                (readInt(bytes,start+4)&0xFFFFFFFFL);
     }
     public static double readDouble(byte[] bytes,int start){
         return Double.longBitsToDouble(readLong(bytes,start));
     }
     public static long readVLong(byte[] bytes,int start) throws IOException {
         int len=bytes[start];
-        if (len >= -122) {
+        if (len >= -112) {
             return len;
         }
         boolean isNegative=(len<-120);
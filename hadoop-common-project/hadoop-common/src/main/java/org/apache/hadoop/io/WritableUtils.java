@@ -5,6 +5,9 @@ import com.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -155,11 +158,15 @@ public class WritableUtils {
         writeVLong(stream,i);
     }
     public static void writeVLong(DataOutput stream,long i) throws IOException {
-        if (i>=-122 && i<=127){
+        if (stream instanceof DataOutputBuffer) {
+            ((DataOutputBuffer) stream).writeVLong(i);
+            return;
+        }
+        if (i>=-112 && i<=127){
             stream.writeByte((byte)i);
             return;
         }
-        int len=-122;
+        int len=-112;
         if (i<0){
             i^=-1L;
             len=-120;
@@ -174,10 +181,13 @@ public class WritableUtils {
         for (int idex=len;idex!=0;idex--){
             int shiftbits=(idex-1)*8;
             long mask=0xFFL << shiftbits;
-            stream.writeByte((byte)(i&mask)>>shiftbits);
+            stream.writeByte((byte)((i&mask)>>shiftbits));
         }
     }
     public static long readVLong(DataInput in) throws IOException {
+        if (in instanceof DataInputBuffer) {
+            return ((DataInputBuffer) in).readVLong();
+        }
         byte firstByte = in.readByte();
         int len=decodeVIntSize(firstByte);
         if (len==1) {
@@ -194,7 +204,7 @@ public class WritableUtils {
     public static int readVInt(DataInput in) throws IOException {
         long n = readVLong(in);
         if ((n > Integer.MAX_VALUE) || (n < Integer.MIN_VALUE)) {
-            throw new IOException("value too lone to fit in integer");
+            throw new IOException("value too long to fit in integer");
         }
         return (int) n;
     }
@@ -212,6 +222,160 @@ public class WritableUtils {
         }
         return (int) n;
     }
+    /**
+     * Encode a long in the format of {@link #writeVLong(DataOutput, long)}
+     * into an array which has room for {@link #getVIntSize(long)} bytes.
+     * @return the number of bytes written.
+     */
+    public static int encodeVLong(byte[] buf,int off,long i){
+        if (i>=-112 && i<=127){
+            buf[off]=(byte) i;
+            return 1;
+        }
+        int header=-112;
+        if (i < 0) {
+            i^=-1L;
+            header=-120;
+        }
+        int n=(Long.SIZE-Long.numberOfLeadingZeros(i)+7)>>>3;
+        buf[off]=(byte) (header-n);
+        for (int k = n, p = off+1; k > 0; k--, p++) {
+            buf[p]=(byte) (i>>>((k-1)<<3));
+        }
+        return n+1;
+    }
+
+    /**
+     * Encode longs one after the other, as repeated calls to
+     * {@link #writeVLong(DataOutput, long)} would.
+     * @return the offset after the last byte written.
+     */
+    public static int encodeVLongs(long[] values,int from,int count,byte[] buf,int off){
+        for (int end = from+count; from < end; from++) {
+            off+=encodeVLong(buf,off,values[from]);
+        }
+        return off;
+    }
+
+    /** Like {@link #encodeVLongs(long[], int, int, byte[], int)} for ints. */
+    public static int encodeVInts(int[] values,int from,int count,byte[] buf,int off){
+        for (int end = from+count; from < end; from++) {
+            off+=encodeVLong(buf,off,values[from]);
+        }
+        return off;
+    }
+
+    /** Put a long in the format of {@link #writeVLong(DataOutput, long)}. */
+    public static void encodeVLong(ByteBuffer buf,long i){
+        if (buf.hasArray() && buf.remaining() >= 9) {
+            int pos=buf.position();
+            int n=encodeVLong(buf.array(),buf.arrayOffset()+pos,i);
+            buf.position(pos+n);
+            return;
+        }
+        if (i>=-112 && i<=127){
+            buf.put((byte) i);
+            return;
+        }
+        int header=-112;
+        if (i < 0) {
+            i^=-1L;
+            header=-120;
+        }
+        int n=(Long.SIZE-Long.numberOfLeadingZeros(i)+7)>>>3;
+        buf.put((byte) (header-n));
+        for (int k = n; k > 0; k--) {
+            buf.put((byte) (i>>>((k-1)<<3)));
+        }
+    }
+
+    /**
+     * Decode a long written by {@link #writeVLong(DataOutput, long)}; it
+     * takes {@link #decodeVIntSize(byte)} of the first byte bytes.
+     */
+    public static long decodeVLong(byte[] buf,int off){
+        byte first=buf[off];
+        if (first >= -112) {
+            return first;
+        }
+        int n=decodeVIntSize(first)-1;
+        long i=0;
+        for (int p = off+1, end = off+1+n; p < end; p++) {
+            i=(i<<8)|(buf[p]&0xFF);
+        }
+        // complement negative values without a branch
+        return i^(long) ((first+120)>>31);
+    }
+
+    /**
+     * Decode <code>count</code> longs written one after the other.
+     * @return the offset after the last byte read.
+     */
+    public static int decodeVLongs(byte[] buf,int off,long[] values,int from,int count){
+        for (int end = from+count; from < end; from++) {
+            byte first=buf[off];
+            if (first >= -112) {
+                values[from]=first;
+                off++;
+            }else {
+                values[from]=decodeVLong(buf,off);
+                off+=decodeVIntSize(first);
+            }
+        }
+        return off;
+    }
+
+    /**
+     * Like {@link #decodeVLongs(byte[], int, long[], int, int)} for ints.
+     * @throws IOException if a value does not fit in an int.
+     */
+    public static int decodeVInts(byte[] buf,int off,int[] values,int from,int count)throws IOException{
+        for (int end = from+count; from < end; from++) {
+            byte first=buf[off];
+            if (first >= -112) {
+                values[from]=first;
+                off++;
+            }else {
+                long n=decodeVLong(buf,off);
+                if ((n > Integer.MAX_VALUE) || (n < Integer.MIN_VALUE)) {
+                    throw new IOException("value too long to fit in integer");
+                }
+                values[from]=(int) n;
+                off+=decodeVIntSize(first);
+            }
+        }
+        return off;
+    }
+
+    /**
+     * Get a long written by {@link #writeVLong(DataOutput, long)}. With
+     * nine bytes remaining in a big endian buffer the value bytes are read
+     * by a single getLong.
+     * @throws BufferUnderflowException if the value is cut short.
+     */
+    public static long decodeVLong(ByteBuffer buf){
+        byte first=buf.get();
+        if (first >= -112) {
+            return first;
+        }
+        int n=decodeVIntSize(first)-1;
+        int pos=buf.position();
+        long i;
+        if (buf.remaining() >= 8 && buf.order() == ByteOrder.BIG_ENDIAN) {
+            i=buf.getLong(pos)>>>((8-n)<<3);
+            buf.position(pos+n);
+        }else {
+            if (buf.remaining() < n) {
+                throw new BufferUnderflowException();
+            }
+            i=0;
+            for (int k = 0; k < n; k++) {
+                i=(i<<8)|(buf.get()&0xFF);
+            }
+        }
+        return i^(long) ((first+120)>>31);
+    }
+
     public static boolean isNegativeVInt(byte value) {
         return value < -120 || (value >= -112 && value < 0);
     }
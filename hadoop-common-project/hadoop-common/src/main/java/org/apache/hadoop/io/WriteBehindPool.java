@@ -0,0 +1,243 @@
+package org.apache.hadoop.io;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages a pool of threads which write back, and optionally drop from the
+ * page cache, the data written to local files.
+ * <p>
+ * Every time a stream has written a full window, the pool starts the
+ * writeback of that window with {@code sync_file_range(WRITE)}. When drop
+ * behind is enabled it also waits for the writeback of the previous window
+ * and evicts it with {@code posix_fadvise(DONTNEED)}, so a large sequential
+ * writer neither pushes other data out of the page cache nor leaves
+ * gigabytes of dirty pages for the final fsync. Without native code
+ * write-behind does nothing.
+ * <p>
+ * Write-behind is off unless a window is configured, or drop behind is
+ * turned on for a stream, which then uses {@link #DEFAULT_WINDOW}.
+ * <p>
+ * A stream has at most one request in flight; windows completed meanwhile
+ * are coalesced into the next request. Closing a stream handles the data
+ * written after the last full window as well.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class WriteBehindPool {
+    static final Logger LOG= LoggerFactory.getLogger(WriteBehindPool.class);
+    private static final int POOL_SIZE=4;
+    /** Window of streams with drop behind but no configured window. */
+    public static final long DEFAULT_WINDOW=8L*1024*1024;
+    private final ThreadPoolExecutor pool;
+    private static WriteBehindPool instance;
+
+    public static WriteBehindPool getInstance(){
+        synchronized (WriteBehindPool.class){
+            if (instance == null) {
+                instance=new WriteBehindPool();
+            }
+            return instance;
+        }
+    }
+
+    @VisibleForTesting
+    WriteBehindPool(){
+        pool=new ThreadPoolExecutor(POOL_SIZE,POOL_SIZE,3L,TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("Write-behind Thread #%d")
+                        .build());
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start tracking the writes of a stream.
+     * @param identifier a textual identifier used in error messages.
+     * @param fd descriptor of the file.
+     * @param window bytes per write-behind window; 0 disables write-behind
+     *               unless drop behind is on.
+     * @param dropBehind whether written windows are dropped from the cache.
+     */
+    public StreamWriteBehind newStreamWriteBehind(String identifier,FileDescriptor fd,
+                                                  long window,boolean dropBehind){
+        return new StreamWriteBehind(identifier,fd,window,dropBehind);
+    }
+
+    /** Syncs and drops the ranges of one request. */
+    private static final class WriteBehindRequest implements Runnable {
+        private final String identifier;
+        private final FileDescriptor fd;
+        private final long syncFrom;
+        private final long syncTo;
+        private final long dropFrom;
+        private final long dropTo;
+        private final CountDownLatch done=new CountDownLatch(1);
+
+        WriteBehindRequest(String identifier,FileDescriptor fd,
+                           long syncFrom,long syncTo,long dropFrom,long dropTo){
+            this.identifier=identifier;
+            this.fd=fd;
+            this.syncFrom=syncFrom;
+            this.syncTo=syncTo;
+            this.dropFrom=dropFrom;
+            this.dropTo=dropTo;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (syncTo > syncFrom) {
+                    NativeIO.POSIX.syncFileRangeIfPossible(fd,syncFrom,syncTo-syncFrom,
+                            NativeIO.POSIX.SYNC_FILE_RANGE_WRITE);
+                }
+                if (dropTo > dropFrom) {
+                    NativeIO.POSIX.syncFileRangeIfPossible(fd,dropFrom,dropTo-dropFrom,
+                            NativeIO.POSIX.SYNC_FILE_RANGE_WAIT_BEFORE
+                                    |NativeIO.POSIX.SYNC_FILE_RANGE_WRITE
+                                    |NativeIO.POSIX.SYNC_FILE_RANGE_WAIT_AFTER);
+                    NativeIO.POSIX.getCacheManipulator().posixFadviseIfPossible(identifier,fd,
+                            dropFrom,dropTo-dropFrom,NativeIO.POSIX.POSIX_FADV_DONTNEED);
+                }
+            }catch (IOException ioe){
+                LOG.warn("Failed write-behind on "+identifier,ioe);
+            }finally {
+                done.countDown();
+            }
+        }
+
+        boolean isDone(){
+            return done.getCount() == 0;
+        }
+
+        void await()throws InterruptedIOException{
+            try {
+                done.await();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw (InterruptedIOException) new InterruptedIOException(
+                        "interrupted waiting for write-behind on "+identifier).initCause(e);
+            }
+        }
+    }
+
+    /**
+     * The write-behind state of one stream, driven by the writing thread.
+     * The descriptor must stay open until {@link #close(long)} has returned.
+     */
+    public final class StreamWriteBehind {
+        private final String identifier;
+        private final FileDescriptor fd;
+        /** Whether sync_file_range is available; without it nothing is done. */
+        private final boolean enabled;
+        private long window;
+        private boolean dropBehind;
+        /** Offset up to which writeback has been started. */
+        private long synced;
+        /** Offset up to which pages have been dropped. */
+        private long dropped;
+        private WriteBehindRequest pending;
+
+        StreamWriteBehind(String identifier,FileDescriptor fd,
+                          long window,boolean dropBehind){
+            this.identifier=identifier;
+            this.fd=fd;
+            this.enabled=fd != null && NativeIO.POSIX.isAvailable();
+            this.window=window;
+            this.dropBehind=dropBehind;
+        }
+
+        /**
+         * Start at the given offset, for instance the end of a file opened
+         * for append; nothing before it is synced or dropped.
+         */
+        public void setStart(long offset){
+            synced=offset;
+            dropped=offset;
+        }
+
+        public void setWindow(long window){
+            this.window=window;
+        }
+
+        /**
+         * Turn drop behind on or off; turning it on enables write-behind
+         * with {@link #DEFAULT_WINDOW} if no window is set.
+         */
+        public void setDropBehind(boolean dropBehind){
+            this.dropBehind=dropBehind;
+        }
+
+        public boolean isDropBehind(){
+            return dropBehind;
+        }
+
+        /**
+         * Called after a write.
+         * @param position the offset the file has been written up to.
+         */
+        public void onWrite(long position){
+            long window=effectiveWindow();
+            if (!enabled || window <= 0 || position-synced < window) {
+                return;
+            }
+            if (pending != null && !pending.isDone()) {
+                return;
+            }
+            long syncTo=synced+(position-synced)/window*window;
+            // windows whose writeback an earlier request started; skipped
+            // when drop behind is off
+            long dropTo=dropBehind?synced:dropped;
+            pending=new WriteBehindRequest(identifier,fd,synced,syncTo,dropped,dropTo);
+            dropped=synced;
+            synced=syncTo;
+            pool.execute(pending);
+        }
+
+        private long effectiveWindow(){
+            return window>0?window:dropBehind?DEFAULT_WINDOW:0;
+        }
+
+        /**
+         * Wait for the request in flight, then start the writeback of the
+         * data written since the last full window. With drop behind, that
+         * data and the previous window are written out and dropped from the
+         * cache before this returns. Call before closing the file.
+         * @param position the offset the file has been written up to.
+         */
+        public void close(long position)throws IOException{
+            if (pending != null) {
+                pending.await();
+                pending=null;
+            }
+            if (!enabled || effectiveWindow() <= 0
+                    || position <= (dropBehind?dropped:synced)) {
+                return;
+            }
+            // runs on the caller, as the descriptor is closed next; dropping
+            // waits for the writeback, so starting it separately is redundant
+            WriteBehindRequest last=dropBehind
+                    ?new WriteBehindRequest(identifier,fd,position,position,dropped,position)
+                    :new WriteBehindRequest(identifier,fd,synced,position,dropped,dropped);
+            last.run();
+            synced=Math.max(synced,position);
+            if (dropBehind) {
+                dropped=position;
+            }
+        }
+    }
+}
@@ -296,7 +296,7 @@ public class NativeIO {
                 return NativeIO.getOperationSystemPageSize();
             }
             public void posixFadviseIfPossible(String idetifier, FileDescriptor fd,long offset,long len,int flags)throws NativeIOException{
-                NativeIO.POSIX.posixFadvisedIfPossible(idetifier)
+                NativeIO.POSIX.posixFadvisedIfPossible(idetifier,fd,offset,len,flags);
             }
         }
         @VisibleForTesting
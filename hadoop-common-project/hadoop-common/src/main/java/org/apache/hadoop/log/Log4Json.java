@@ -1,23 +1,32 @@
 package org.apache.hadoop.log;
 
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ContainerNode;
 import org.apache.log4j.Layout;
-import org.apache.log4j.helpers.ISO8601DateFormat;
 import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.spi.ThrowableInformation;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
-import java.text.DateFormat;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
 
+/**
+ * A log4j layout writing each event as a JSON object on one line.
+ * <p>
+ * The JSON is written straight into a per-thread {@link StringBuilder}
+ * rather than through a Jackson generator; the output is the same. Each
+ * thread also keeps the escaped forms of its own name and of the logger
+ * names it logs to, and the formatted date of the current second, which
+ * is computed from the timestamp without a {@code Date} or
+ * {@code DateFormat}. Dates use the default time zone at the time the
+ * layout is created, like {@code ISO8601DateFormat}.
+ */
 public class Log4Json extends Layout {
     private static final JsonFactory factory=new MappingJsonFactory();
     public static final ObjectReader READER=new ObjectMapper(factory).reader();
@@ -30,10 +39,16 @@ public class Log4Json extends Layout {
     public static final String THREAD="thread";
     public static final String TIME="time";
     public static final String JSON_TYPE="application/json";
-    private final DateFormat dateFormat;
+    /** Buffers grown beyond this by a large event are not kept. */
+    private static final int MAX_RETAINED_CAPACITY=64*1024;
+    private static final int MAX_CACHED_NAMES=256;
+    private static final char[] HEX="0123456789ABCDEF".toCharArray();
+
+    private final TimeZone timeZone;
+    private final ThreadLocal<Buffers> buffers=ThreadLocal.withInitial(Buffers::new);
 
     public Log4Json(){
-        dateFormat=new ISO8601DateFormat();
+        timeZone=TimeZone.getDefault();
     }
     @Override
     public String getContentType() {
@@ -42,26 +57,19 @@ public class Log4Json extends Layout {
 
     @Override
     public String format(LoggingEvent event) {
-        try {
-            return toJson(event);
-        }catch (IOException e){
-            return "{ \"logfailure\":\""+e.getClass().toGenericString()+"\"}";
-        }
+        Buffers b=buffers.get();
+        append(b,event);
+        String json=b.sb.toString();
+        b.release();
+        return json;
     }
     public String toJson(LoggingEvent event)throws IOException{
-        StringWriter writer = new StringWriter();
-        toJson(writer,event);
-        return writer.toString();
+        return format(event);
     }
     public Writer toJson(final Writer writer,final LoggingEvent event)throws IOException{
-        ThrowableInformation ti = event.getThrowableInformation();
-        toJson(writer,
-                event.getLoggerName(),
-                event.getTimeStamp(),
-                event.getLevel().toString(),
-                event.getThreadName(),
-                event.getRenderedMessage(),
-                ti);
+        Buffers b=buffers.get();
+        append(b,event);
+        b.writeTo(writer);
         return writer;
     }
     public Writer toJson(final Writer writer,
@@ -71,30 +79,204 @@ public class Log4Json extends Layout {
                          final String threadName,
                          final String message,
                          final ThrowableInformation ti)throws IOException{
-        JsonGenerator json = factory.createGenerator(writer);
-        json.writeStartObject();
-        json.writeStringField(NAME,loggerName);
-        json.writeNumberField(TIME,timestamp);
-        Date date = new Date(timestamp);
-        json.writeStringField(DATE,dateFormat.format(date));
-        json.writeStringField(LEVEL,level);
-        json.writeStringField(THREAD,threadName);
-        json.writeStringField(MESSAGE,message);
+        Buffers b=buffers.get();
+        append(b,loggerName,timestamp,level,threadName,message,ti);
+        b.writeTo(writer);
+        return writer;
+    }
+
+    private void append(Buffers b,LoggingEvent event){
+        append(b,
+                event.getLoggerName(),
+                event.getTimeStamp(),
+                event.getLevel().toString(),
+                event.getThreadName(),
+                event.getRenderedMessage(),
+                event.getThrowableInformation());
+    }
+
+    private void append(Buffers b,String loggerName,long timestamp,String level,
+                        String threadName,String message,ThrowableInformation ti){
+        StringBuilder sb=b.sb;
+        sb.setLength(0);
+        sb.append("{\"").append(NAME).append("\":");
+        appendName(sb,loggerName,b);
+        sb.append(",\"").append(TIME).append("\":").append(timestamp);
+        sb.append(",\"").append(DATE).append("\":\"");
+        b.appendDate(sb,timestamp,timeZone);
+        sb.append("\",\"").append(LEVEL).append("\":");
+        appendString(sb,level);
+        sb.append(",\"").append(THREAD).append("\":");
+        if (threadName != null && threadName.equals(b.threadName)) {
+            sb.append(b.escapedThreadName);
+        }else {
+            int start=sb.length();
+            appendString(sb,threadName);
+            if (threadName != null) {
+                b.threadName=threadName;
+                b.escapedThreadName=sb.substring(start);
+            }
+        }
+        sb.append(",\"").append(MESSAGE).append("\":");
+        appendString(sb,message);
         if (ti != null) {
             Throwable thrown = ti.getThrowable();
             String eclass=(thrown!=null)?thrown.getClass().getName():"";
-            json.writeStringField(EXCEPTION_CLASS,eclass);
+            sb.append(",\"").append(EXCEPTION_CLASS).append("\":");
+            appendString(sb,eclass);
+            sb.append(",\"").append(STACK).append("\":[");
             String[] stackTrace = ti.getThrowableStrRep();
-            json.writeArrayFieldStart(STACK);
-            for (String row : stackTrace) {
-                json.writeString(row);
+            for (int i = 0; i < stackTrace.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendString(sb,stackTrace[i]);
             }
-            json.writeEndArray();
+            sb.append(']');
+        }
+        sb.append('}');
+    }
+
+    private static void appendName(StringBuilder sb,String name,Buffers b){
+        if (name == null) {
+            sb.append("null");
+            return;
+        }
+        String escaped=b.names.get(name);
+        if (escaped == null) {
+            int start=sb.length();
+            appendString(sb,name);
+            if (b.names.size() >= MAX_CACHED_NAMES) {
+                b.names.clear();
+            }
+            b.names.put(name,sb.substring(start));
+            return;
+        }
+        sb.append(escaped);
+    }
+
+    /** Append a JSON string literal, escaping like Jackson does by default. */
+    static void appendString(StringBuilder sb,String s){
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        int len=s.length();
+        int from=0;
+        for (int i = 0; i < len; i++) {
+            char c=s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            sb.append(s,from,i);
+            from=i+1;
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    sb.append("\\u00").append(HEX[c>>4]).append(HEX[c&0xf]);
+                    break;
+            }
+        }
+        sb.append(s,from,len).append('"');
+    }
+
+    /** The per-thread output buffer and caches. */
+    private static final class Buffers {
+        private StringBuilder sb=new StringBuilder(512);
+        private char[] chars=new char[512];
+        private String threadName;
+        private String escapedThreadName;
+        private final Map<String ,String> names=new HashMap<>();
+        /** The second of {@link #date}, in milliseconds since the epoch. */
+        private long dateSecond=Long.MIN_VALUE;
+        /** yyyy-MM-dd HH:mm:ss of dateSecond. */
+        private final char[] date=new char[19];
+
+        void writeTo(Writer writer)throws IOException{
+            int len=sb.length();
+            if (chars.length < len) {
+                chars=new char[Math.max(len,2*chars.length)];
+            }
+            sb.getChars(0,len,chars,0);
+            writer.write(chars,0,len);
+            release();
+        }
+
+        void release(){
+            if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+                sb=new StringBuilder(512);
+            }
+            if (chars.length > MAX_RETAINED_CAPACITY) {
+                chars=new char[512];
+            }
+        }
+
+        /** Append the date as yyyy-MM-dd HH:mm:ss,SSS. */
+        void appendDate(StringBuilder out,long timestamp,TimeZone timeZone){
+            long second=Math.floorDiv(timestamp,1000L)*1000L;
+            if (second != dateSecond) {
+                formatSecond(second+timeZone.getOffset(timestamp));
+                dateSecond=second;
+            }
+            int millis=(int) (timestamp-second);
+            out.append(date).append(',')
+                    .append((char) ('0'+millis/100))
+                    .append((char) ('0'+millis/10%10))
+                    .append((char) ('0'+millis%10));
+        }
+
+        private void formatSecond(long localMillis){
+            long days=Math.floorDiv(localMillis,86400000L);
+            int secondOfDay=(int) (Math.floorDiv(localMillis,1000L)-days*86400L);
+            // civil date of the day, proleptic Gregorian calendar
+            long z=days+719468;
+            long era=Math.floorDiv(z,146097);
+            long doe=z-era*146097;
+            long yoe=(doe-doe/1460+doe/36524-doe/146096)/365;
+            long doy=doe-(365*yoe+yoe/4-yoe/100);
+            long mp=(5*doy+2)/153;
+            int day=(int) (doy-(153*mp+2)/5+1);
+            int month=(int) (mp<10?mp+3:mp-9);
+            long year=yoe+era*400+(month<=2?1:0);
+            put(0,(int) (year/100%100));
+            put(2,(int) (year%100));
+            date[4]='-';
+            put(5,month);
+            date[7]='-';
+            put(8,day);
+            date[10]=' ';
+            put(11,secondOfDay/3600);
+            date[13]=':';
+            put(14,secondOfDay/60%60);
+            date[16]=':';
+            put(17,secondOfDay%60);
+        }
+
+        private void put(int at,int twoDigits){
+            date[at]=(char) ('0'+twoDigits/10);
+            date[at+1]=(char) ('0'+twoDigits%10);
         }
-        json.writeEndObject();
-        json.flush();
-        json.close();
-        return writer;
     }
 
 
@@ -0,0 +1,25 @@
+package org.apache.hadoop.metrics2;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A general metrics exception wrapper.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class MetricsException extends RuntimeException {
+    private static final long serialVersionUID=1L;
+
+    public MetricsException(String message){
+        super(message);
+    }
+
+    public MetricsException(String message,Throwable cause){
+        super(message,cause);
+    }
+
+    public MetricsException(Throwable cause){
+        super(cause);
+    }
+}
@@ -0,0 +1,18 @@
+package org.apache.hadoop.metrics2;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.commons.configuration2.SubsetConfiguration;
+
+/**
+ * The plugin interface for the metrics framework.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface MetricsPlugin {
+    /**
+     * Initialize the plugin.
+     * @param conf the configuration object for the plugin
+     */
+    void init(SubsetConfiguration conf);
+}
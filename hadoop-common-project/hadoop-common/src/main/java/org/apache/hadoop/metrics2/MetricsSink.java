@@ -0,0 +1,29 @@
+package org.apache.hadoop.metrics2;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * The metrics sink interface.
+ * <p>
+ * Implementations of this interface consume the {@link MetricsRecord}s
+ * generated by metrics sources. The metrics system pushes the records to
+ * the sink using the {@link #putMetrics(MetricsRecord)} method from a
+ * thread dedicated to the sink, and calls {@link #flush()} after every
+ * batch. If the implementing class also implements
+ * {@link java.io.Closeable}, the sink is closed when it is stopped.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface MetricsSink extends MetricsPlugin {
+    /**
+     * Put a metrics record in the sink.
+     * @param record the record to put
+     */
+    void putMetrics(MetricsRecord record);
+
+    /**
+     * Flush any buffered metrics.
+     */
+    void flush();
+}
@@ -4,39 +4,63 @@ import com.apache.hadoop.classification.InterfaceAudience;
 import com.google.re2j.Matcher;
 import com.google.re2j.Pattern;
 import org.apache.commons.configuration2.SubsetConfiguration;
+import org.apache.hadoop.metrics2.MetricsException;
 import org.apache.hadoop.metrics2.MetricsFilter;
 import org.apache.hadoop.metrics2.MetricsTag;
+import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheStats;
 import org.apache.hadoop.thirdparty.com.google.common.collect.Maps;
 
 import java.util.Map;
 
-
+/**
+ * Base class for pattern based filters.
+ * <p>
+ * Patterns are compiled once by {@link #init}; subclasses may compile them
+ * into {@link NameMatcher}s which avoid regular expressions altogether.
+ * The decisions for names and tags are memoized in bounded caches of
+ * {@value #CACHE_SIZE_KEY} entries each (default
+ * {@value #CACHE_SIZE_DEFAULT}, 0 to disable), as the same metric names
+ * are filtered every interval; {@link #nameCacheStats()} and
+ * {@link #tagCacheStats()} report the hit rates.
+ */
 @InterfaceAudience.Private
 public abstract class AbstractPatternFilter extends MetricsFilter {
     protected static final String INCLUDE_KEY="include";
     protected static final String EXCLUDE_KEY="exclude";
     protected static final String INCLUDE_TAGS_KEY="include.tags";
     protected static final String EXCLUDE_TAGS_KEY="exclude.tags";
-    private Pattern includePattern;
-    private Pattern excludePattern;
-    private final Map<String ,Pattern> includeTagPatterns;
-    private final Map<String ,Pattern> excludeTagPatterns;
+    protected static final String CACHE_SIZE_KEY="cache.size";
+    protected static final int CACHE_SIZE_DEFAULT=4096;
+
+    /** How a tag matched the tag patterns. */
+    private enum TagMatch { INCLUDED, EXCLUDED, NONE }
+
+    private NameMatcher includePattern;
+    private NameMatcher excludePattern;
+    private final Map<String ,NameMatcher> includeTagPatterns;
+    private final Map<String ,NameMatcher> excludeTagPatterns;
     private final Pattern tagPattern=Pattern.compile("^(\\w+):(.*)");
+    private Cache<String ,Boolean> nameCache;
+    private Cache<MetricsTag ,TagMatch> tagCache;
 
     AbstractPatternFilter(){
         includeTagPatterns= Maps.newHashMap();
         excludeTagPatterns=Maps.newHashMap();
+        setCacheSize(CACHE_SIZE_DEFAULT);
     }
 
     @Override
     public void init(SubsetConfiguration conf){
+        setCacheSize(conf.getInt(CACHE_SIZE_KEY,CACHE_SIZE_DEFAULT));
         String patternString = conf.getString(INCLUDE_KEY);
         if (patternString != null && !patternString.isEmpty()) {
-            setIncludePattern(compile(patternString));
+            includePattern=compileMatcher(patternString);
         }
         patternString=conf.getString(EXCLUDE_KEY);
         if (patternString != null && !patternString.isEmpty()) {
-            setExcludePattern(compile(patternString));
+            excludePattern=compileMatcher(patternString);
         }
         String[] patternStrings = conf.getStringArray(INCLUDE_TAGS_KEY);
         if (patternStrings != null && patternStrings.length > 0) {
@@ -45,7 +69,7 @@ public abstract class AbstractPatternFilter extends MetricsFilter {
                 if (!matcher.matches()) {
                     throw new MetricsException("Illegal tag pattern: "+pstr);
                 }
-                setIncludeTagPattern(matcher.group(1),compile(matcher.group(2)));
+                includeTagPatterns.put(matcher.group(1),compileMatcher(matcher.group(2)));
             }
         }
         patternStrings = conf.getStringArray(EXCLUDE_TAGS_KEY);
@@ -55,32 +79,74 @@ public abstract class AbstractPatternFilter extends MetricsFilter {
                 if (!matcher.matches()) {
                     throw new MetricsException("Illegal tag pattern: "+pstr);
                 }
-                setExcludeTagPattern(matcher.group(1),compile(matcher.group(2)));
+                excludeTagPatterns.put(matcher.group(1),compileMatcher(matcher.group(2)));
             }
         }
+        invalidateCaches();
+    }
+
+    void setCacheSize(int size){
+        if (size > 0) {
+            nameCache=CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+            tagCache=CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+        }else {
+            nameCache=null;
+            tagCache=null;
+        }
+    }
+
+    private void invalidateCaches(){
+        if (nameCache != null) {
+            nameCache.invalidateAll();
+            tagCache.invalidateAll();
+        }
     }
+
     void setIncludePattern(Pattern includePattern){
-        this.includePattern=includePattern;
+        this.includePattern=NameMatcher.of(includePattern);
+        invalidateCaches();
     }
 
     public void setExcludePattern(Pattern excludePattern) {
-        this.excludePattern = excludePattern;
+        this.excludePattern = NameMatcher.of(excludePattern);
+        invalidateCaches();
     }
     void setIncludeTagPattern(String name,Pattern pattern){
-        includeTagPatterns.put(name,pattern);
+        includeTagPatterns.put(name,NameMatcher.of(pattern));
+        invalidateCaches();
     }
     void setExcludeTagPattern(String name,Pattern pattern){
-        excludeTagPatterns.put(name,pattern);
+        excludeTagPatterns.put(name,NameMatcher.of(pattern));
+        invalidateCaches();
     }
+
+    private TagMatch match(MetricsTag tag){
+        Cache<MetricsTag ,TagMatch> cache=tagCache;
+        TagMatch match=cache==null?null:cache.getIfPresent(tag);
+        if (match == null) {
+            match=TagMatch.NONE;
+            String value=tag.value();
+            if (value != null) {
+                NameMatcher ipat = includeTagPatterns.get(tag.name());
+                NameMatcher epat=excludeTagPatterns.get(tag.name());
+                if (ipat != null && ipat.matches(value)) {
+                    match=TagMatch.INCLUDED;
+                }else if (epat != null && epat.matches(value)) {
+                    match=TagMatch.EXCLUDED;
+                }
+            }
+            if (cache != null) {
+                cache.put(tag,match);
+            }
+        }
+        return match;
+    }
+
     @Override
     public boolean accepts(MetricsTag tag){
-        Pattern ipat = includeTagPatterns.get(tag.name());
-        if (ipat != null && ipat.matcher(tag.value()).matches()) {
-            return true;
-        }
-        Pattern epat=excludeTagPatterns.get(tag.name());
-        if (epat != null && epat.matcher(tag.value()).matches()) {
-            return false;
+        TagMatch match=match(tag);
+        if (match != TagMatch.NONE) {
+            return match == TagMatch.INCLUDED;
         }
         if (!includeTagPatterns.isEmpty() && excludeTagPatterns.isEmpty()) {
             return false;
@@ -89,14 +155,13 @@ public abstract class AbstractPatternFilter extends MetricsFilter {
     }
     @Override
     public boolean accepts(Iterable<MetricsTag> tags){
+        if (includeTagPatterns.isEmpty() && excludeTagPatterns.isEmpty()) {
+            return true;
+        }
         for (MetricsTag tag : tags) {
-            Pattern ipat = includeTagPatterns.get(tag.name());
-            if (ipat != null && ipat.matcher(tag.value()).matches()) {
-                return true;
-            }
-            Pattern epat=excludeTagPatterns.get(tag.name());
-            if (epat != null && epat.matcher(tag.value()).matches()) {
-                return false;
+            TagMatch match=match(tag);
+            if (match != TagMatch.NONE) {
+                return match == TagMatch.INCLUDED;
             }
         }
         if (!includeTagPatterns.isEmpty() && excludeTagPatterns.isEmpty()) {
@@ -107,10 +172,26 @@ public abstract class AbstractPatternFilter extends MetricsFilter {
 
     @Override
     public boolean accepts(String name){
-        if (includePattern != null && includePattern.matcher(name).matches()) {
+        if (includePattern == null && excludePattern == null) {
             return true;
         }
-        if (excludePattern != null && excludePattern.matcher(name).matches()) {
+        Cache<String ,Boolean> cache=nameCache;
+        if (cache == null) {
+            return evaluate(name);
+        }
+        Boolean accepted=cache.getIfPresent(name);
+        if (accepted == null) {
+            accepted=evaluate(name);
+            cache.put(name,accepted);
+        }
+        return accepted;
+    }
+
+    private boolean evaluate(String name){
+        if (includePattern != null && includePattern.matches(name)) {
+            return true;
+        }
+        if (excludePattern != null && excludePattern.matches(name)) {
             return false;
         }
         if (includePattern!=null && excludePattern!=null) {
@@ -118,6 +199,26 @@ public abstract class AbstractPatternFilter extends MetricsFilter {
         }
         return true;
     }
+
+    /** Statistics of the name decision cache; empty if caching is disabled. */
+    public CacheStats nameCacheStats(){
+        Cache<String ,Boolean> cache=nameCache;
+        return cache==null?new CacheStats(0,0,0,0,0,0):cache.stats();
+    }
+
+    /** Statistics of the tag decision cache; empty if caching is disabled. */
+    public CacheStats tagCacheStats(){
+        Cache<MetricsTag ,TagMatch> cache=tagCache;
+        return cache==null?new CacheStats(0,0,0,0,0,0):cache.stats();
+    }
+
     protected abstract Pattern compile(String s);
 
+    /**
+     * Compile a pattern string into a matcher; by default the regular
+     * expression returned by {@link #compile(String)}.
+     */
+    NameMatcher compileMatcher(String s){
+        return NameMatcher.of(compile(s));
+    }
 }
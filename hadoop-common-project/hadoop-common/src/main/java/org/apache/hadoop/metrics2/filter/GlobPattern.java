@@ -0,0 +1,169 @@
+package org.apache.hadoop.metrics2.filter;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.google.re2j.Pattern;
+import com.google.re2j.PatternSyntaxException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles shell style globs for the metrics filters: {@code *} and
+ * {@code ?} wildcards, {@code [...]} character classes negated by a
+ * leading {@code !} or {@code ^}, {@code {a,b}} alternatives and
+ * {@code \} escapes.
+ */
+@InterfaceAudience.Private
+public final class GlobPattern {
+    private static final char BACKSLASH='\\';
+
+    private GlobPattern(){
+    }
+
+    /**
+     * Compile a glob into a regular expression.
+     * @param glob the glob pattern string
+     * @return the pattern matching the same names
+     */
+    public static Pattern compile(String glob){
+        return Pattern.compile(toRegex(glob));
+    }
+
+    /**
+     * Compile a glob into a {@link NameMatcher}. Globs which consist of
+     * literal names and prefixes, like {@code jvm.*} or
+     * {@code {Rpc*,Ugi*,FSNamesystem}}, match without a regular expression.
+     */
+    static NameMatcher compileMatcher(String glob){
+        List<String> literals=new ArrayList<>();
+        List<String> prefixes=new ArrayList<>();
+        String body=glob;
+        if (body.length() > 1 && body.charAt(0) == '{' && body.charAt(body.length()-1) == '}') {
+            body=body.substring(1,body.length()-1);
+        }else if (body.indexOf(',') >= 0) {
+            // a comma outside braces is literal
+            return NameMatcher.of(compile(glob));
+        }
+        for (String alternative : body.split(",",-1)) {
+            int wildcard=firstSpecial(alternative);
+            if (wildcard < 0) {
+                literals.add(alternative);
+            }else if (wildcard == alternative.length()-1 && alternative.charAt(wildcard) == '*') {
+                prefixes.add(alternative.substring(0,wildcard));
+            }else {
+                return NameMatcher.of(compile(glob));
+            }
+        }
+        return NameMatcher.of(literals,prefixes);
+    }
+
+    private static int firstSpecial(String s){
+        for (int i = 0; i < s.length(); i++) {
+            switch (s.charAt(i)) {
+                case '*':
+                case '?':
+                case '[':
+                case ']':
+                case '{':
+                case '}':
+                case BACKSLASH:
+                    return i;
+                default:
+                    break;
+            }
+        }
+        return -1;
+    }
+
+    static String toRegex(String glob){
+        int len=glob.length();
+        StringBuilder regex=new StringBuilder(len+16);
+        boolean inClass=false;
+        int curlies=0;
+        for (int i = 0; i < len; i++) {
+            char c=glob.charAt(i);
+            switch (c) {
+                case BACKSLASH:
+                    if (++i >= len) {
+                        error("Missing escaped character",glob,i);
+                    }
+                    regex.append(c).append(glob.charAt(i));
+                    continue;
+                case '.':
+                case '$':
+                case '(':
+                case ')':
+                case '|':
+                case '+':
+                    // escape regex special chars that are not glob special chars
+                    regex.append(BACKSLASH);
+                    break;
+                case '*':
+                    if (!inClass) {
+                        regex.append('.');
+                    }
+                    break;
+                case '?':
+                    regex.append(inClass?"?":".");
+                    continue;
+                case '{':
+                    if (!inClass) {
+                        regex.append("(?:");
+                        curlies++;
+                        continue;
+                    }
+                    break;
+                case ',':
+                    if (!inClass && curlies > 0) {
+                        regex.append('|');
+                        continue;
+                    }
+                    break;
+                case '}':
+                    if (!inClass && curlies > 0) {
+                        regex.append(')');
+                        curlies--;
+                        continue;
+                    }
+                    break;
+                case '[':
+                    if (inClass) {
+                        error("Unclosed character class",glob,i);
+                    }
+                    inClass=true;
+                    regex.append(c);
+                    if (i+1 < len && (glob.charAt(i+1) == '!' || glob.charAt(i+1) == '^')) {
+                        regex.append('^');
+                        i++;
+                    }
+                    continue;
+                case ']':
+                    if (inClass) {
+                        inClass=false;
+                    }else {
+                        regex.append(BACKSLASH);
+                    }
+                    break;
+                case '^':
+                    if (!inClass) {
+                        regex.append(BACKSLASH);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            regex.append(c);
+        }
+        if (inClass) {
+            error("Unclosed character class",glob,len);
+        }
+        if (curlies > 0) {
+            error("Unclosed group",glob,len);
+        }
+        return regex.toString();
+    }
+
+    private static void error(String message,String pattern,int pos){
+        throw new PatternSyntaxException(message+" at "+pos,pattern);
+    }
+}
@@ -11,4 +11,9 @@ public class GlobalFilter extends AbstractPatternFilter{
     protected Pattern compile(String s) {
         return GlobPattern.compile(s);
     }
+
+    @Override
+    NameMatcher compileMatcher(String s) {
+        return GlobPattern.compileMatcher(s);
+    }
 }
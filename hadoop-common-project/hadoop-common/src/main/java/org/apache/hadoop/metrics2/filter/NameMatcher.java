@@ -0,0 +1,85 @@
+package org.apache.hadoop.metrics2.filter;
+
+import com.google.re2j.Pattern;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches whole names against a compiled filter pattern. Patterns that
+ * amount to sets of literal names and prefixes are matched without a
+ * regular expression.
+ */
+abstract class NameMatcher {
+    abstract boolean matches(String name);
+
+    static NameMatcher of(Pattern pattern){
+        return new RegexMatcher(pattern);
+    }
+
+    /**
+     * Match names equal to one of the literals or starting with one of the
+     * prefixes.
+     */
+    static NameMatcher of(List<String> literals,List<String> prefixes){
+        return new LiteralMatcher(literals,prefixes);
+    }
+
+    private static final class RegexMatcher extends NameMatcher {
+        private final Pattern pattern;
+
+        RegexMatcher(Pattern pattern){
+            this.pattern=pattern;
+        }
+
+        @Override
+        boolean matches(String name) {
+            return pattern.matcher(name).matches();
+        }
+
+        @Override
+        public String toString() {
+            return pattern.pattern();
+        }
+    }
+
+    private static final class LiteralMatcher extends NameMatcher {
+        private final Set<String> literals;
+        /** Sorted, without prefixes that have a shorter prefix among them. */
+        private final String[] prefixes;
+
+        LiteralMatcher(List<String> literals,List<String> prefixes){
+            this.literals=new HashSet<>(literals);
+            String[] sorted=prefixes.toArray(new String[0]);
+            Arrays.sort(sorted);
+            int n=0;
+            for (String prefix : sorted) {
+                if (n == 0 || !prefix.startsWith(sorted[n-1])) {
+                    sorted[n++]=prefix;
+                }
+            }
+            this.prefixes=Arrays.copyOf(sorted,n);
+        }
+
+        @Override
+        boolean matches(String name) {
+            if (literals.contains(name)) {
+                return true;
+            }
+            // the only candidate is the greatest prefix not after the name
+            int i=Arrays.binarySearch(prefixes,name);
+            if (i >= 0) {
+                return true;
+            }
+            i=-i-2;
+            return i >= 0 && name.startsWith(prefixes[i]);
+        }
+
+        @Override
+        public String toString() {
+            return literals+" "+Arrays.toString(prefixes)+"*";
+        }
+    }
+}
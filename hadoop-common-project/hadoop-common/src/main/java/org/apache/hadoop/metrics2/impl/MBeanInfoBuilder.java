@@ -2,12 +2,15 @@ package org.apache.hadoop.metrics2.impl;
 
 import org.apache.hadoop.metrics2.*;
 import org.apache.hadoop.thirdparty.com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanInfo;
 import java.util.List;
 
 class MBeanInfoBuilder implements MetricsVisitor {
+    private static final Logger LOG=LoggerFactory.getLogger(MBeanInfoBuilder.class);
     private final String name,description;
     private List<MBeanAttributeInfo> attrs;
     private Iterable<MetricsRecordImpl> recs;
@@ -29,19 +32,19 @@ class MBeanInfoBuilder implements MetricsVisitor {
         return newAttrInfo(info.name(),info.description(),type);
     }
     @Override
-    public void guage(MetricsInfo info,int value){
+    public void gauge(MetricsInfo info,int value){
         attrs.add(newAttrInfo(info,"java.lang.Integer"));
     }
     @Override
-    public void guage(MetricsInfo info,long value){
+    public void gauge(MetricsInfo info,long value){
         attrs.add(newAttrInfo(info,"java.lang.Long"));
     }
     @Override
-    public void guage(MetricsInfo info,float value){
+    public void gauge(MetricsInfo info,float value){
         attrs.add(newAttrInfo(info,"java.lang.Float"));
     }
     @Override
-    public void guage(MetricsInfo info,double value){
+    public void gauge(MetricsInfo info,double value){
         attrs.add(newAttrInfo(info,"java.lang.Double"));
     }
     @Override
@@ -66,7 +69,7 @@ class MBeanInfoBuilder implements MetricsVisitor {
             }
             ++curRecNo;
         }
-        MetricsSystemImpl.LOG.debug("{}",attrs);
+        LOG.debug("{}",attrs);
         MBeanAttributeInfo[] attrsArray = new MBeanAttributeInfo[attrs.size()];
         return new MBeanInfo(name,description,attrs.toArray(attrsArray),
                 null,null,null);
@@ -0,0 +1,106 @@
+package org.apache.hadoop.metrics2.impl;
+
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.MetricType;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsVisitor;
+
+/**
+ * A metric value that is overwritten in place by every snapshot of a
+ * pooled {@link MetricsRecordBuilderImpl}, standing in for the immutable
+ * {@code MetricCounterLong}, {@code MetricGaugeDouble} etc.
+ */
+final class MetricCell extends AbstractMetric {
+    private static final int INT=0;
+    private static final int LONG=1;
+    private static final int FLOAT=2;
+    private static final int DOUBLE=3;
+
+    private MetricType type;
+    private int kind;
+    /** The value; the raw bits for floating point values. */
+    private long bits;
+
+    MetricCell(MetricsInfo info){
+        super(info);
+    }
+
+    void set(MetricType type,int value){
+        this.type=type;
+        this.kind=INT;
+        this.bits=value;
+    }
+
+    void set(MetricType type,long value){
+        this.type=type;
+        this.kind=LONG;
+        this.bits=value;
+    }
+
+    void set(MetricType type,float value){
+        this.type=type;
+        this.kind=FLOAT;
+        this.bits=Float.floatToRawIntBits(value);
+    }
+
+    void set(MetricType type,double value){
+        this.type=type;
+        this.kind=DOUBLE;
+        this.bits=Double.doubleToRawLongBits(value);
+    }
+
+    /** A copy which is not affected by later snapshots. */
+    MetricCell copy(){
+        MetricCell copy=new MetricCell(info());
+        copy.type=type;
+        copy.kind=kind;
+        copy.bits=bits;
+        return copy;
+    }
+
+    @Override
+    public Number value() {
+        switch (kind) {
+            case INT:
+                return (int) bits;
+            case LONG:
+                return bits;
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            default:
+                return Double.longBitsToDouble(bits);
+        }
+    }
+
+    @Override
+    public MetricType type() {
+        return type;
+    }
+
+    @Override
+    public void visit(MetricsVisitor visitor) {
+        boolean counter=type == MetricType.COUNTER;
+        switch (kind) {
+            case INT:
+                if (counter) {
+                    visitor.counter(this,(int) bits);
+                }else {
+                    visitor.gauge(this,(int) bits);
+                }
+                break;
+            case LONG:
+                if (counter) {
+                    visitor.counter(this,bits);
+                }else {
+                    visitor.gauge(this,bits);
+                }
+                break;
+            case FLOAT:
+                visitor.gauge(this,Float.intBitsToFloat((int) bits));
+                break;
+            default:
+                visitor.gauge(this,Double.longBitsToDouble(bits));
+                break;
+        }
+    }
+}
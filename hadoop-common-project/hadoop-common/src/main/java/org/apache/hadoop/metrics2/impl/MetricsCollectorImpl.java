@@ -13,26 +13,87 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+/**
+ * Collects the records of a snapshot.
+ * <p>
+ * A pooled collector keeps its record builders and reuses them, in the
+ * order records are added, for the next snapshot after {@link #clear()};
+ * together with the builders' in-place metric cells a source snapshot
+ * then allocates nothing. The records returned by {@link #getRecords()}
+ * stay valid only until the collector is cleared, so consumers that keep
+ * them longer, like the queue of a sink, need
+ * {@link MetricsRecordImpl#copy() copies}.
+ */
 @InterfaceAudience.Private
 @VisibleForTesting
 public class MetricsCollectorImpl implements MetricsCollector,Iterable<MetricsRecordBuilderImpl> {
     private final List<MetricsRecordBuilderImpl> rbs= Lists.newArrayList();
     private MetricsFilter recordFilter,metricFilter;
 
+    private final boolean pooled;
+    private final List<MetricsRecordBuilderImpl> pool;
+    private int poolIndex;
+    /** Builder for records rejected by the record filter, shared when pooled. */
+    private MetricsRecordBuilderImpl rejected;
+    private final List<MetricsRecordImpl> records;
+
+    public MetricsCollectorImpl(){
+        this(false);
+    }
+
+    /**
+     * @param pooled whether to reuse the record builders and records of
+     *               previous snapshots.
+     */
+    public MetricsCollectorImpl(boolean pooled){
+        this.pooled=pooled;
+        this.pool=pooled?new ArrayList<>():null;
+        this.records=pooled?new ArrayList<>():null;
+    }
+
     @Override
     public MetricsRecordBuilder addRecord(MetricsInfo info) {
         boolean acceptable=recordFilter==null||recordFilter.accepts(info.name());
+        if (pooled) {
+            return addPooledRecord(info,acceptable);
+        }
         MetricsRecordBuilderImpl rb = new MetricsRecordBuilderImpl(this, info, recordFilter, metricFilter, acceptable);
         if (acceptable) rbs.add(rb);
         return rb;
     }
 
+    private MetricsRecordBuilder addPooledRecord(MetricsInfo info,boolean acceptable){
+        MetricsRecordBuilderImpl rb;
+        if (!acceptable) {
+            if (rejected == null) {
+                rejected=new MetricsRecordBuilderImpl(this,info,recordFilter,metricFilter,false,true);
+            }
+            rb=rejected;
+        }else if (poolIndex < pool.size()) {
+            rb=pool.get(poolIndex++);
+        }else {
+            rb=new MetricsRecordBuilderImpl(this,info,recordFilter,metricFilter,true,true);
+            pool.add(rb);
+            poolIndex++;
+        }
+        rb.reset(info,acceptable);
+        if (acceptable) rbs.add(rb);
+        return rb;
+    }
+
     @Override
     public MetricsRecordBuilder addRecord(String name) {
         return addRecord(Interns.info(name,name+" record"));
     }
+
     public List<MetricsRecordImpl> getRecords(){
-        List<MetricsRecordImpl> recs = Lists.newArrayListWithCapacity(rbs.size());
+        List<MetricsRecordImpl> recs;
+        if (pooled) {
+            recs=records;
+            recs.clear();
+        }else {
+            recs = Lists.newArrayListWithCapacity(rbs.size());
+        }
         for (MetricsRecordBuilderImpl rb : rbs) {
             MetricsRecordImpl mr = rb.getRecord();
             if (mr != null) {
@@ -49,13 +110,25 @@ public class MetricsCollectorImpl implements MetricsCollector,Iterable<MetricsRe
     @InterfaceAudience.Private
     public void clear(){
         rbs.clear();
+        poolIndex=0;
     }
     MetricsCollectorImpl setRecordFilter(MetricsFilter rf){
         recordFilter=rf;
+        resetPool();
         return this;
     }
     MetricsCollectorImpl setMetricsFilter(MetricsFilter mf){
         metricFilter=mf;
+        resetPool();
         return this;
     }
+
+    /** Drop the pooled builders, which hold on to the filters. */
+    private void resetPool(){
+        if (pooled) {
+            clear();
+            pool.clear();
+            rejected=null;
+        }
+    }
 }
@@ -24,6 +24,10 @@ public class MetricsConfig extends SubsetConfiguration {
     static final int RETRY_BACKOFF_DEFAULT=2;
     static final String RETRY_COUNT_KEY="retry.count";
     static final int RETRY_COUNT_DEFAULT=1;
+    static final String BATCH_SIZE_KEY="batch.size";
+    static final int BATCH_SIZE_DEFAULT=1;
+    static final String FLUSH_INTERVAL_KEY="flush.interval.ms";
+    static final int FLUSH_INTERVAL_DEFAULT=0;
     static final String JMX_CACHE_TTL_KEY="jmx.cache.ttl";
     static final String START_MBEANS_KEY="source.start_mbeans";
     static final String PLUGIN_URLS_KEY="plugin.urls";
@@ -2,24 +2,48 @@ package org.apache.hadoop.metrics2.impl;
 
 import org.apache.hadoop.metrics2.*;
 import org.apache.hadoop.metrics2.lib.Interns;
-import org.apache.hadoop.thirdparty.com.google.common.collect.Collections2;
 import org.apache.hadoop.thirdparty.com.google.common.collect.Lists;
 import org.apache.hadoop.util.Time;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Builds a record from the metrics of one snapshot.
+ * <p>
+ * A pooled builder is kept by its {@link MetricsCollectorImpl} and
+ * {@link #reset reset} for the same record of the next snapshot. Its
+ * metrics are {@link MetricCell}s which are overwritten in place and its
+ * record is reused, so a snapshot of a source whose shape does not change
+ * allocates nothing. The metric filter decision for every added metric is
+ * remembered by position and reused while the same info is added there,
+ * and metrics the filter rejects never get a cell.
+ */
 class MetricsRecordBuilderImpl extends MetricsRecordBuilder {
     private final MetricsCollector parent;
-    private final long timestamp;
-    private final MetricsInfo recInfo;
+    private long timestamp;
+    private MetricsInfo recInfo;
     private final List<AbstractMetric> metrics;
     private final List<MetricsTag> tags;
     private final MetricsFilter recordFilter,metricFilter;
-    private final boolean acceptable;
+    private boolean acceptable;
+
+    private final boolean pooled;
+    private MetricsRecordImpl record;
+    /** Infos added at each position by the last snapshot, with their filter decisions and cells. */
+    private MetricsInfo[] slotInfos;
+    private boolean[] slotAccepted;
+    private MetricCell[] slotCells;
+    private int slot;
 
     MetricsRecordBuilderImpl(MetricsCollector parent,MetricsInfo info,
                              MetricsFilter rf,MetricsFilter mf,boolean acceptable){
+        this(parent,info,rf,mf,acceptable,false);
+    }
+
+    MetricsRecordBuilderImpl(MetricsCollector parent,MetricsInfo info,
+                             MetricsFilter rf,MetricsFilter mf,boolean acceptable,boolean pooled){
         this.parent=parent;
         timestamp= Time.now();
         recInfo=info;
@@ -28,6 +52,22 @@ class MetricsRecordBuilderImpl extends MetricsRecordBuilder {
         recordFilter=rf;
         metricFilter=mf;
         this.acceptable=acceptable;
+        this.pooled=pooled;
+        if (pooled) {
+            slotInfos=new MetricsInfo[8];
+            slotAccepted=new boolean[8];
+            slotCells=new MetricCell[8];
+        }
+    }
+
+    /** Start building the next snapshot of a record with a pooled builder. */
+    void reset(MetricsInfo info,boolean acceptable){
+        timestamp=Time.now();
+        recInfo=info;
+        this.acceptable=acceptable;
+        tags.clear();
+        metrics.clear();
+        slot=0;
     }
 
     @Override
@@ -57,59 +97,130 @@ class MetricsRecordBuilderImpl extends MetricsRecordBuilder {
 
     @Override
     public MetricsRecordBuilder addCounter(MetricsInfo info, long value) {
-        if (acceptable && (metricFilter==null || metricFilter.accepts(info.name()))){
-            metrics.add(new MetricCounterLong(info,value));
+        if (accepts(info)) {
+            if (pooled) {
+                cell(info).set(MetricType.COUNTER,value);
+            }else {
+                metrics.add(new MetricCounterLong(info,value));
+            }
         }
         return this;
     }
 
     @Override
     public MetricsRecordBuilder addCounter(MetricsInfo info, int value) {
-        if (acceptable && (metricFilter==null || metricFilter.accepts(info.name()))){
-            metrics.add(new MetricCounterInt(info,value));
+        if (accepts(info)) {
+            if (pooled) {
+                cell(info).set(MetricType.COUNTER,value);
+            }else {
+                metrics.add(new MetricCounterInt(info,value));
+            }
         }
         return this;
     }
 
     @Override
     public MetricsRecordBuilder addGauge(MetricsInfo info, int value) {
-        if (acceptable && (metricFilter==null || metricFilter.accepts(info.name()))){
-            metrics.add(new MetricGaugeInt(info,value));
+        if (accepts(info)) {
+            if (pooled) {
+                cell(info).set(MetricType.GAUGE,value);
+            }else {
+                metrics.add(new MetricGaugeInt(info,value));
+            }
         }
         return this;
     }
 
     @Override
     public MetricsRecordBuilder addGauge(MetricsInfo info, long value) {
-        if (acceptable && (metricFilter==null || metricFilter.accepts(info.name()))){
-            metrics.add(new MetricGaugeLong(info,value));
+        if (accepts(info)) {
+            if (pooled) {
+                cell(info).set(MetricType.GAUGE,value);
+            }else {
+                metrics.add(new MetricGaugeLong(info,value));
+            }
         }
         return this;
     }
 
     @Override
     public MetricsRecordBuilder addGauge(MetricsInfo info, double value) {
-        if (acceptable && (metricFilter==null || metricFilter.accepts(info.name()))){
-            metrics.add(new MetricGaugeDouble(info,value));
+        if (accepts(info)) {
+            if (pooled) {
+                cell(info).set(MetricType.GAUGE,value);
+            }else {
+                metrics.add(new MetricGaugeDouble(info,value));
+            }
         }
         return this;
     }
 
     @Override
     public MetricsRecordBuilder addGauge(MetricsInfo info, float value) {
-        if (acceptable && (metricFilter==null || metricFilter.accepts(info.name()))){
-            metrics.add(new MetricGaugeFloat(info,value));
+        if (accepts(info)) {
+            if (pooled) {
+                cell(info).set(MetricType.GAUGE,value);
+            }else {
+                metrics.add(new MetricGaugeFloat(info,value));
+            }
         }
         return this;
     }
 
+    /** Apply the metric filter; a pooled builder moves on to the next slot. */
+    private boolean accepts(MetricsInfo info){
+        if (!acceptable) {
+            return false;
+        }
+        if (!pooled) {
+            return metricFilter==null || metricFilter.accepts(info.name());
+        }
+        int i=slot++;
+        if (i == slotInfos.length) {
+            slotInfos=Arrays.copyOf(slotInfos,2*i);
+            slotAccepted=Arrays.copyOf(slotAccepted,2*i);
+            slotCells=Arrays.copyOf(slotCells,2*i);
+        }
+        if (slotInfos[i] != info) {
+            slotInfos[i]=info;
+            slotAccepted[i]=metricFilter==null || metricFilter.accepts(info.name());
+            slotCells[i]=null;
+        }
+        return slotAccepted[i];
+    }
+
+    /** The cell of the slot just accepted, added to the metrics. */
+    private MetricCell cell(MetricsInfo info){
+        MetricCell cell=slotCells[slot-1];
+        if (cell == null) {
+            cell=new MetricCell(info);
+            slotCells[slot-1]=cell;
+        }
+        metrics.add(cell);
+        return cell;
+    }
+
     @Override
     public MetricsRecordBuilder setContext(String value) {
         return tag(MsInfo.Context,value);
     }
+
+    /**
+     * The record built, or null if it is filtered out. The record of a
+     * pooled builder is overwritten by the next snapshot; see
+     * {@link MetricsRecordImpl#copy()}.
+     */
     public MetricsRecordImpl getRecord(){
         if (acceptable && (recordFilter == null || recordFilter.accepts(tags))) {
-            return new MetricsRecordImpl(recInfo,timestamp,tags(),metrics());
+            if (!pooled) {
+                return new MetricsRecordImpl(recInfo,timestamp,tags(),metrics());
+            }
+            if (record == null) {
+                record=new MetricsRecordImpl(recInfo,timestamp,tags(),metrics());
+            }else {
+                record.reuse(recInfo,timestamp);
+            }
+            return record;
         }
         return null;
     }
@@ -1,4 +1,94 @@
 package org.apache.hadoop.metrics2.impl;
 
-public class MetricsRecordImpl {
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsTag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkNotNull;
+
+public class MetricsRecordImpl extends AbstractMetricsRecord {
+    protected static final String DEFAULT_CONTEXT="default";
+
+    private long timestamp;
+    private MetricsInfo info;
+    private final List<MetricsTag> tags;
+    private final Iterable<AbstractMetric> metrics;
+
+    /**
+     * Construct a metrics record
+     * @param info  {@link MetricsInfo} of the record
+     * @param timestamp of the record
+     * @param tags  of the record
+     * @param metrics of the record
+     */
+    public MetricsRecordImpl(MetricsInfo info,long timestamp,
+                             List<MetricsTag> tags,Iterable<AbstractMetric> metrics){
+        checkArgument(timestamp > 0,"timestamp");
+        this.timestamp=timestamp;
+        this.info=checkNotNull(info,"info");
+        this.tags=checkNotNull(tags,"tags");
+        this.metrics=checkNotNull(metrics,"metrics");
+    }
+
+    /** Point a record of a pooled builder at the next snapshot. */
+    void reuse(MetricsInfo info,long timestamp){
+        this.info=info;
+        this.timestamp=timestamp;
+    }
+
+    /**
+     * A copy of this record which later snapshots do not change, for
+     * consumers that keep records of a pooled collector.
+     */
+    MetricsRecordImpl copy(){
+        List<AbstractMetric> metricsCopy=new ArrayList<>();
+        for (AbstractMetric metric : metrics) {
+            metricsCopy.add(metric instanceof MetricCell?((MetricCell) metric).copy():metric);
+        }
+        return new MetricsRecordImpl(info,timestamp,new ArrayList<>(tags),metricsCopy);
+    }
+
+    @Override
+    public long timestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String name() {
+        return info.name();
+    }
+
+    MetricsInfo info(){
+        return info;
+    }
+
+    @Override
+    public String description() {
+        return info.description();
+    }
+
+    @Override
+    public String context() {
+        // usually the first tag
+        for (MetricsTag t : tags) {
+            if (t.info() == MsInfo.Context) {
+                return t.value();
+            }
+        }
+        return DEFAULT_CONTEXT;
+    }
+
+    @Override
+    public List<MetricsTag> tags() {
+        return tags;
+    }
+
+    @Override
+    public Iterable<AbstractMetric> metrics() {
+        return metrics;
+    }
 }
@@ -0,0 +1,214 @@
+package org.apache.hadoop.metrics2.impl;
+
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSink;
+import org.apache.hadoop.metrics2.lib.MutableStat;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.hadoop.metrics2.impl.MetricsConfig.*;
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Delivers metrics buffers to a sink from a thread of its own, so a slow
+ * or failing sink does not hold up the producer or the other sinks.
+ * <p>
+ * Buffers are put on a bounded {@link SinkQueue} which drops the oldest
+ * buffer when full. The sink thread takes up to {@code batchSize} buffers
+ * at a time, waiting up to {@code flushIntervalMs} for a batch to fill,
+ * puts all their records and flushes the sink once per batch. A batch that
+ * fails is retried after {@code retryDelay} seconds, the delay growing by
+ * {@code retryBackoff} with every attempt, and dropped after
+ * {@code retryCount} retries.
+ * <p>
+ * The adapter reports the queue size, the number of dropped buffers and
+ * the latency of publishing batches through {@link #snapshot}.
+ */
+class MetricsSinkAdapter {
+    private static final Logger LOG=LoggerFactory.getLogger(MetricsSinkAdapter.class);
+
+    private final String name,description;
+    private final MetricsSink sink;
+    private final SinkQueue<MetricsBuffer> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int retryDelay;
+    private final float retryBackoff;
+    private final int retryCount;
+    private final Thread sinkThread;
+    private volatile boolean stopping=false;
+
+    private final AtomicLong dropped=new AtomicLong();
+    private final MutableStat latency;
+    private final MetricsInfo droppedInfo;
+    private final MetricsInfo qsizeInfo;
+
+    MetricsSinkAdapter(String name,String description,MetricsSink sink,
+                       int queueCapacity,int batchSize,long flushIntervalMs,
+                       int retryDelay,float retryBackoff,int retryCount){
+        this.name=checkNotNull(name,"name");
+        this.description=description;
+        this.sink=checkNotNull(sink,"sink object");
+        checkArgument(queueCapacity > 0,"queue capacity");
+        checkArgument(batchSize > 0,"batch size");
+        checkArgument(flushIntervalMs >= 0,"flush interval");
+        checkArgument(retryDelay > 0,"retry delay");
+        checkArgument(retryBackoff > 1,"retry backoff");
+        checkArgument(retryCount >= 0,"retry count");
+        this.queue=new SinkQueue<>(queueCapacity);
+        this.batchSize=batchSize;
+        this.flushIntervalMs=flushIntervalMs;
+        this.retryDelay=retryDelay;
+        this.retryBackoff=retryBackoff;
+        this.retryCount=retryCount;
+        latency=new MutableStat("Sink_"+name,"Sink end to end latency","Ops","Time");
+        droppedInfo=info("Sink_"+name+"Dropped","Dropped updates per sink");
+        qsizeInfo=info("Sink_"+name+"Qsize","Queue size");
+        sinkThread=new Thread(this::publishLoop);
+        sinkThread.setName(name);
+        sinkThread.setDaemon(true);
+    }
+
+    /**
+     * Create an adapter for a sink configured by the subset of the metrics
+     * configuration for the sink instance.
+     */
+    static MetricsSinkAdapter create(String name,String description,MetricsSink sink,MetricsConfig conf){
+        return new MetricsSinkAdapter(name,description,sink,
+                conf.getInt(QUEUE_CAPACITY_KEY,QUEUE_CAPACITY_DEFAULT),
+                conf.getInt(BATCH_SIZE_KEY,BATCH_SIZE_DEFAULT),
+                conf.getLong(FLUSH_INTERVAL_KEY,FLUSH_INTERVAL_DEFAULT),
+                conf.getInt(RETRY_DELAY_KEY,RETRY_DELAY_DEFAULT),
+                conf.getFloat(RETRY_BACKOFF_KEY,RETRY_BACKOFF_DEFAULT),
+                conf.getInt(RETRY_COUNT_KEY,RETRY_COUNT_DEFAULT));
+    }
+
+    /**
+     * Queue a buffer for the sink; never blocks.
+     * @return false if an older buffer had to be dropped to make room.
+     */
+    boolean putMetrics(MetricsBuffer buffer){
+        if (queue.enqueue(buffer) != null) {
+            long n=dropped.incrementAndGet();
+            if (n == 1 || Long.bitCount(n) == 1) {
+                LOG.warn("Sink {} is falling behind, dropped {} buffers so far",name,n);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void publishLoop(){
+        List<MetricsBuffer> batch=new ArrayList<>(Math.min(batchSize,queue.capacity()));
+        while (!stopping) {
+            try {
+                queue.drainTo(batch,batchSize,flushIntervalMs);
+            }catch (InterruptedException e){
+                LOG.info("{} thread interrupted.",name);
+                break;
+            }
+            if (!publishWithRetry(batch)) {
+                break;
+            }
+            batch.clear();
+        }
+    }
+
+    /** @return false if the thread was interrupted while waiting to retry. */
+    private boolean publishWithRetry(List<MetricsBuffer> batch){
+        long delayMs=TimeUnit.SECONDS.toMillis(retryDelay);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                long startTime=Time.monotonicNow();
+                publish(batch);
+                latency.add(Time.monotonicNow()-startTime);
+                return true;
+            }catch (Exception e){
+                if (attempt >= retryCount) {
+                    dropped.addAndGet(batch.size());
+                    LOG.error("Got sink exception and over retry limit, dropping {} buffers of sink {}",
+                            batch.size(),name,e);
+                    return true;
+                }
+                LOG.warn("Got sink exception, retry in {}ms",delayMs,e);
+                try {
+                    Thread.sleep(delayMs);
+                }catch (InterruptedException ie){
+                    LOG.info("{} thread interrupted while waiting for retry",name,ie);
+                    return false;
+                }
+                delayMs=(long) (delayMs*retryBackoff);
+            }
+        }
+    }
+
+    private void publish(List<MetricsBuffer> batch){
+        for (MetricsBuffer buffer : batch) {
+            for (MetricsBuffer.Entry entry : buffer) {
+                for (MetricsRecordImpl record : entry.records()) {
+                    sink.putMetrics(record);
+                }
+            }
+        }
+        sink.flush();
+    }
+
+    void start(){
+        sinkThread.start();
+        LOG.info("Sink {} started",name);
+    }
+
+    void stop(){
+        stopping=true;
+        sinkThread.interrupt();
+        try {
+            sinkThread.join();
+        }catch (InterruptedException e){
+            LOG.warn("Stop interrupted",e);
+            Thread.currentThread().interrupt();
+        }
+        queue.clear();
+        if (sink instanceof Closeable) {
+            try {
+                ((Closeable) sink).close();
+            }catch (IOException e){
+                LOG.warn("Error closing sink {}",name,e);
+            }
+        }
+    }
+
+    String name(){
+        return name;
+    }
+
+    String description(){
+        return description;
+    }
+
+    void snapshot(MetricsRecordBuilder rb,boolean all){
+        rb.addGauge(qsizeInfo,queue.size())
+          .addCounter(droppedInfo,dropped.get());
+        latency.snapshot(rb,all);
+    }
+
+    @VisibleForTesting
+    long droppedCount(){
+        return dropped.get();
+    }
+
+    MetricsSink sink(){
+        return sink;
+    }
+}
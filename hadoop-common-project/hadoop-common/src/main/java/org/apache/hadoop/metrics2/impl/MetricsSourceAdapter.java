@@ -0,0 +1,269 @@
+package org.apache.hadoop.metrics2.impl;
+
+import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsFilter;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.MetricsTag;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Exposes a metrics source as a read only dynamic MBean.
+ * <p>
+ * JMX reads are served from the last snapshot of the source, which is
+ * taken again only when it is older than the JMX cache TTL, so monitoring
+ * agents polling every few seconds do not each snapshot the source. One
+ * reader at a time refreshes a stale snapshot; the others meanwhile get
+ * the stale one instead of queueing up behind the source's locks.
+ * {@link #getAttributes(String[])} serves all names from one snapshot.
+ * The {@link MBeanInfo} is built again only when the set of attributes
+ * changes.
+ */
+class MetricsSourceAdapter implements DynamicMBean {
+    private static final Logger LOG=LoggerFactory.getLogger(MetricsSourceAdapter.class);
+
+    private final String prefix,name;
+    private final MetricsSource source;
+    private final MetricsFilter recordFilter,metricFilter;
+    private final long jmxCacheTTL;
+    private final MBeanInfoBuilder infoBuilder;
+    /** Held while taking a snapshot for JMX; guards the fields below. */
+    private final ReentrantLock refreshLock=new ReentrantLock();
+    private final MetricsCollectorImpl collector=new MetricsCollectorImpl(true);
+    private String[] attrNames=new String[0];
+    private Class<?>[] attrTypes=new Class<?>[0];
+
+    private volatile JmxCache jmxCache;
+    private ObjectName mbeanName;
+
+    /**
+     * @param jmxCacheTTL how long, in milliseconds, a snapshot serves
+     *                    JMX reads.
+     */
+    MetricsSourceAdapter(String prefix,String name,String description,
+                         MetricsSource source,MetricsFilter recordFilter,
+                         MetricsFilter metricFilter,long jmxCacheTTL){
+        this.prefix=checkNotNull(prefix,"prefix");
+        this.name=checkNotNull(name,"name");
+        this.source=checkNotNull(source,"source");
+        this.recordFilter=recordFilter;
+        this.metricFilter=metricFilter;
+        checkArgument(jmxCacheTTL > 0,"JMX cache TTL");
+        this.jmxCacheTTL=jmxCacheTTL;
+        infoBuilder=new MBeanInfoBuilder(name,description);
+        collector.setRecordFilter(recordFilter).setMetricsFilter(metricFilter);
+    }
+
+    /** Attribute values and MBean info of one snapshot. */
+    private static final class JmxCache {
+        private final long timestamp;
+        private final Map<String ,Attribute> attrs;
+        private final MBeanInfo info;
+
+        JmxCache(long timestamp,Map<String ,Attribute> attrs,MBeanInfo info){
+            this.timestamp=timestamp;
+            this.attrs=attrs;
+            this.info=info;
+        }
+    }
+
+    private JmxCache jmxCache(){
+        JmxCache cache=jmxCache;
+        if (cache != null && Time.monotonicNow()-cache.timestamp < jmxCacheTTL) {
+            return cache;
+        }
+        if (cache != null) {
+            if (!refreshLock.tryLock()) {
+                // another reader is refreshing; the stale values will do
+                return cache;
+            }
+        }else {
+            refreshLock.lock();
+        }
+        try {
+            cache=jmxCache;
+            if (cache == null || Time.monotonicNow()-cache.timestamp >= jmxCacheTTL) {
+                cache=refresh(cache);
+                jmxCache=cache;
+            }
+            return cache;
+        }finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private JmxCache refresh(JmxCache previous){
+        long now=Time.monotonicNow();
+        collector.clear();
+        try {
+            source.getMetrics(collector,true);
+        }catch (Exception e){
+            LOG.error("Error getting metrics from source {}",name,e);
+        }
+        List<MetricsRecordImpl> recs=collector.getRecords();
+        Map<String ,Attribute> attrs=new HashMap<>(previous==null?16:previous.attrs.size()*2);
+        List<String> names=new ArrayList<>(attrNames.length);
+        List<Class<?>> types=new ArrayList<>(attrTypes.length);
+        int recNo=0;
+        for (MetricsRecordImpl rec : recs) {
+            for (MetricsTag t : rec.tags()) {
+                addAttribute(attrs,names,types,"tag."+t.name(),recNo,t.value(),String.class);
+            }
+            for (AbstractMetric m : rec.metrics()) {
+                Number value=m.value();
+                addAttribute(attrs,names,types,m.name(),recNo,value,value.getClass());
+            }
+            recNo++;
+        }
+        MBeanInfo info=previous==null?null:previous.info;
+        if (info == null || !sameAttributes(names,types)) {
+            info=infoBuilder.reset(recs).get();
+            attrNames=names.toArray(new String[0]);
+            attrTypes=types.toArray(new Class<?>[0]);
+            LOG.debug("MBean info of source {} rebuilt",name);
+        }
+        return new JmxCache(now,attrs,info);
+    }
+
+    private static void addAttribute(Map<String ,Attribute> attrs,List<String> names,
+                                     List<Class<?>> types,String name,int recNo,
+                                     Object value,Class<?> type){
+        String key=recNo>0?name+"."+recNo:name;
+        attrs.put(key,new Attribute(key,value));
+        names.add(key);
+        types.add(type);
+    }
+
+    private boolean sameAttributes(List<String> names,List<Class<?>> types){
+        if (names.size() != attrNames.length) {
+            return false;
+        }
+        for (int i = 0; i < attrNames.length; i++) {
+            if (!attrNames[i].equals(names.get(i)) || attrTypes[i] != types.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Attribute a=jmxCache().attrs.get(attribute);
+        if (a == null) {
+            throw new AttributeNotFoundException(attribute+" not found");
+        }
+        LOG.debug("{}: {}",attribute,a);
+        return a.getValue();
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        throw new UnsupportedOperationException("Metrics are read-only.");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String ,Attribute> attrs=jmxCache().attrs;
+        AttributeList ret=new AttributeList(attributes.length);
+        for (String key : attributes) {
+            Attribute attr=attrs.get(key);
+            LOG.debug("{}: {}",key,attr);
+            if (attr != null) {
+                ret.add(attr);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        throw new UnsupportedOperationException("Metrics are read-only.");
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return jmxCache().info;
+    }
+
+    /** Register the MBean with the platform MBean server. */
+    synchronized void startMBeans(){
+        if (mbeanName != null) {
+            LOG.warn("MBean {} already initialized!",name);
+            return;
+        }
+        try {
+            ObjectName objectName=new ObjectName("Hadoop:service="+prefix+",name="+name);
+            MBeanServer mbs=ManagementFactory.getPlatformMBeanServer();
+            try {
+                mbs.registerMBean(this,objectName);
+            }catch (InstanceAlreadyExistsException e){
+                mbs.unregisterMBean(objectName);
+                mbs.registerMBean(this,objectName);
+            }
+            mbeanName=objectName;
+            LOG.debug("MBean for source {} registered.",name);
+        }catch (Exception e){
+            throw new MetricsException("Error registering MBean for source "+name,e);
+        }
+    }
+
+    synchronized void stopMBeans(){
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            }catch (Exception e){
+                LOG.warn("Error unregistering MBean {}",mbeanName,e);
+            }
+            mbeanName=null;
+        }
+    }
+
+    @VisibleForTesting
+    ObjectName getMBeanName(){
+        return mbeanName;
+    }
+
+    @VisibleForTesting
+    long getJmxCacheTTL(){
+        return jmxCacheTTL;
+    }
+
+    String name(){
+        return name;
+    }
+
+    MetricsSource source(){
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return prefix+"."+name;
+    }
+}
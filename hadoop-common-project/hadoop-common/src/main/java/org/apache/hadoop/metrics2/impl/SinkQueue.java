@@ -0,0 +1,91 @@
+package org.apache.hadoop.metrics2.impl;
+
+import java.util.List;
+
+/**
+ * A bounded ring buffer between the producer of metrics buffers and the
+ * thread publishing them to a sink.
+ * <p>
+ * Producers never block: when the queue is full the oldest element is
+ * dropped to make room, as the newest snapshot is the most useful one to a
+ * sink that is falling behind. The single consumer takes elements in
+ * batches, lingering for a batch to fill up.
+ */
+class SinkQueue<T> {
+    private final Object[] data;
+    /** Index of the oldest element; guarded by this. */
+    private int head;
+    private int size;
+
+    SinkQueue(int capacity){
+        this.data=new Object[Math.max(1,capacity)];
+    }
+
+    /**
+     * Add an element, dropping the oldest one if the queue is full.
+     * @return the dropped element, or null if none was dropped.
+     */
+    synchronized T enqueue(T e){
+        T dropped=null;
+        int tail=(head+size)%data.length;
+        if (size == data.length) {
+            dropped=element(head);
+            head=(head+1)%data.length;
+        }else {
+            size++;
+        }
+        data[tail]=e;
+        notifyAll();
+        return dropped;
+    }
+
+    /**
+     * Move a batch of elements to a list. Waits for an element to arrive,
+     * then up to {@code lingerMs} for the batch to fill up.
+     * @param out receives the elements, oldest first.
+     * @param batchSize the maximum number of elements to move.
+     * @param lingerMs how long to wait for a full batch.
+     * @return the number of elements moved.
+     */
+    synchronized int drainTo(List<? super T> out,int batchSize,long lingerMs)throws InterruptedException{
+        while (size == 0) {
+            wait();
+        }
+        if (size < batchSize && lingerMs > 0) {
+            long deadline=System.nanoTime()+lingerMs*1000000L;
+            long left;
+            while (size < batchSize && (left=deadline-System.nanoTime()) > 0) {
+                wait(Math.max(1,left/1000000L));
+            }
+        }
+        int n=Math.min(size,batchSize);
+        for (int i = 0; i < n; i++) {
+            out.add(element(head));
+            data[head]=null;
+            head=(head+1)%data.length;
+        }
+        size-=n;
+        return n;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T element(int i){
+        return (T) data[i];
+    }
+
+    synchronized void clear(){
+        for (int i = 0; i < data.length; i++) {
+            data[i]=null;
+        }
+        head=0;
+        size=0;
+    }
+
+    synchronized int size(){
+        return size;
+    }
+
+    int capacity(){
+        return data.length;
+    }
+}
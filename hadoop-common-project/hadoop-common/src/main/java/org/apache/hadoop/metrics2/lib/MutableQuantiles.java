@@ -3,10 +3,158 @@ package org.apache.hadoop.metrics2.lib;
 import com.apache.hadoop.classification.InterfaceAudience;
 import com.apache.hadoop.classification.InterfaceStability;
 import com.apache.hadoop.classification.VisibleForTesting;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.util.LogLinearHistogram;
+import org.apache.hadoop.metrics2.util.Quantile;
+import org.apache.hadoop.metrics2.util.QuantileEstimator;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+/**
+ * Watches a stream of long values, maintaining online estimates of specific
+ * quantiles over the last rollover interval. The estimates are published as
+ * gauges together with the number of values of the interval.
+ * <p>
+ * Values are recorded in a {@link LogLinearHistogram} by default, so
+ * {@link #add(long)} takes no lock and does not allocate.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class MutableQuantiles extends MutableMetric{
     @VisibleForTesting
-    public static
+    public static final Quantile[] QUANTILES={new Quantile(0.50,0.050),
+            new Quantile(0.75,0.025),new Quantile(0.90,0.010),
+            new Quantile(0.95,0.005),new Quantile(0.99,0.001),
+            new Quantile(0.999,0.0001)};
+
+    private static final ScheduledExecutorService SCHEDULER;
+
+    static {
+        ScheduledThreadPoolExecutor executor=new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("MutableQuantiles-%d")
+                        .build());
+        executor.setRemoveOnCancelPolicy(true);
+        SCHEDULER=executor;
+    }
+
+    private final MetricsInfo numInfo;
+    private final MetricsInfo[] quantileInfos;
+    private final int interval;
+    private volatile QuantileEstimator estimator;
+    private volatile long previousCount=0;
+    private volatile Map<Quantile, Long> previousSnapshot=null;
+    private final ScheduledFuture<?> scheduledTask;
+
+    /**
+     * Instantiates a new {@link MutableQuantiles} for a metric that rolls
+     * itself over on the specified time interval.
+     * @param name of the metric
+     * @param description long-form textual description of the metric
+     * @param sampleName type of items in the stream (e.g., "Ops")
+     * @param valueName type of the values
+     * @param interval rollover interval (in seconds) of the estimator
+     */
+    public MutableQuantiles(String name,String description,String sampleName,
+                            String valueName,int interval){
+        String ucName=StringUtils.capitalize(name);
+        String usName=StringUtils.capitalize(sampleName);
+        String uvName=StringUtils.capitalize(valueName);
+        String desc=StringUtils.uncapitalize(description);
+        String lsName=StringUtils.uncapitalize(sampleName);
+        String lvName=StringUtils.uncapitalize(valueName);
+        numInfo=info(ucName+"Num"+usName,String.format(
+                "Number of %s for %s with %ds interval",lsName,desc,interval));
+        quantileInfos=new MetricsInfo[QUANTILES.length];
+        for (int i = 0; i < QUANTILES.length; i++) {
+            String percentile=percentile(QUANTILES[i]);
+            quantileInfos[i]=info(ucName+percentile+"thPercentile"+uvName,
+                    percentile+" percentile "+lvName+" with "+interval
+                            +" second interval for "+desc);
+        }
+        this.interval=interval;
+        this.estimator=new LogLinearHistogram(QUANTILES);
+        this.scheduledTask=SCHEDULER.scheduleWithFixedDelay(new RolloverSample(this),
+                interval,interval,TimeUnit.SECONDS);
+    }
+
+    /** 0.5 gives "50", 0.999 gives "999". */
+    private static String percentile(Quantile quantile){
+        String s=Double.toString(quantile.quantile*100);
+        if (s.endsWith(".0")) {
+            s=s.substring(0,s.length()-2);
+        }
+        return s.replace(".","");
+    }
+
+    @Override
+    public synchronized void snapshot(MetricsRecordBuilder builder, boolean all) {
+        if (all || changed()) {
+            Map<Quantile, Long> snapshot=previousSnapshot;
+            builder.addGauge(numInfo,previousCount);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                Long value=snapshot==null?null:snapshot.get(QUANTILES[i]);
+                builder.addGauge(quantileInfos[i],value==null?0L:value);
+            }
+            if (changed()) {
+                clearChanged();
+            }
+        }
+    }
+
+    public void add(long value){
+        estimator.insert(value);
+    }
+
+    public int getInterval(){
+        return interval;
+    }
+
+    public void stop(){
+        scheduledTask.cancel(false);
+    }
+
+    @VisibleForTesting
+    public synchronized QuantileEstimator getEstimator(){
+        return estimator;
+    }
+
+    public synchronized void setEstimator(QuantileEstimator quantileEstimator){
+        this.estimator=quantileEstimator;
+    }
+
+    private synchronized void rollover(){
+        QuantileEstimator current=estimator;
+        Map<Quantile, Long> snapshot=current.snapshot();
+        // count the values the snapshot saw, not those recorded since
+        previousCount=current instanceof LogLinearHistogram
+                ?((LogLinearHistogram) current).getSnapshotCount():current.getCount();
+        previousSnapshot=snapshot;
+        current.clear();
+        setChanged();
+    }
+
+    /** Runnable used to periodically roll over the internal estimator. */
+    private static class RolloverSample implements Runnable{
+        private final MutableQuantiles parent;
+
+        RolloverSample(MutableQuantiles parent){
+            this.parent=parent;
+        }
+
+        @Override
+        public void run() {
+            parent.rollover();
+        }
+    }
 }
@@ -6,9 +6,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.metrics2.MetricsInfo;
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.metrics2.util.SampleStat;
+import org.apache.hadoop.metrics2.util.StripedSampleStat;
 import org.apache.hadoop.util.Time;
 
 import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+/**
+ * A mutable metric with stats.
+ * <p>
+ * Samples are added to a {@link StripedSampleStat} without taking the
+ * metric's lock and merged into the interval stat when it is snapshot.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class MutableStat extends MutableMetric{
@@ -21,6 +29,7 @@ public class MutableStat extends MutableMetric{
     private final MetricsInfo maxInfo;
     private final MetricsInfo iNumInfo;
 
+    private final StripedSampleStat stripedStat=new StripedSampleStat();
     private final SampleStat intervalStat=new SampleStat();
     private final SampleStat prevStat=new SampleStat();
     private final SampleStat.MinMax minMax=new SampleStat.MinMax();
@@ -59,19 +68,30 @@ public class MutableStat extends MutableMetric{
     public synchronized void setUpdateTimeStamp(boolean updateTimeStamp) {
         this.updateTimeStamp = updateTimeStamp;
     }
-    public synchronized void add(long numSamples,long sum){
-        intervalStat.add(numSamples,sum);
-        setChanged();
+    public void add(long numSamples,long sum){
+        stripedStat.add(numSamples,sum);
+        markChanged();
+    }
+    public void add(long value){
+        stripedStat.add(value);
+        markChanged();
     }
-    public synchronized void add(long value){
-        intervalStat.add(value);
-        minMax.add(value);
-        setChanged();
+    private void markChanged(){
+        // a volatile read instead of a write per sample; a snapshot clears
+        // the flag before draining, so a sample it misses sets it again
+        if (!changed()) {
+            setChanged();
+        }
     }
 
     @Override
     public synchronized void snapshot(MetricsRecordBuilder builder, boolean all) {
-        if (all || changed()) {
+        boolean changed=changed();
+        if (all || changed) {
+            if (changed) {
+                clearChanged();
+                stripedStat.drainTo(intervalStat,minMax);
+            }
             numSamples+=intervalStat.numSamples();
             builder.addCounter(numInfo,numSamples)
                     .addGauge(avgInfo,intervalStat.mean());
@@ -83,7 +103,7 @@ public class MutableStat extends MutableMetric{
                         .addGauge(maxInfo, minMax.max())
                         .addGauge(iNumInfo, intervalStat.numSamples());
             }
-            if (changed()) {
+            if (changed) {
                 if (numSamples > 0) {
                     intervalStat.copyTo(prevStat);
                     intervalStat.reset();
@@ -91,14 +111,17 @@ public class MutableStat extends MutableMetric{
                         snapshotTimeStamp= Time.monotonicNow();
                     }
                 }
-                clearChanged();
             }
         }
     }
-    public SampleStat lastStat(){
-        return changed()?intervalStat:prevStat;
+    public synchronized SampleStat lastStat(){
+        if (changed()) {
+            stripedStat.drainTo(intervalStat,minMax);
+            return intervalStat;
+        }
+        return prevStat;
     }
-    public void resetMinMax(){
+    public synchronized void resetMinMax(){
         minMax.reset();
     }
     public long getSnapshotTimeStamp(){return snapshotTimeStamp;}
@@ -0,0 +1,79 @@
+package org.apache.hadoop.metrics2.sink;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.commons.configuration2.SubsetConfiguration;
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsRecord;
+import org.apache.hadoop.metrics2.MetricsSink;
+import org.apache.hadoop.metrics2.MetricsTag;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A metrics sink that writes a line per record to a file, or to standard
+ * output if no file name is configured.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class FileSink implements MetricsSink, Closeable {
+    private static final String FILENAME_KEY="filename";
+    private PrintStream writer;
+
+    @Override
+    public void init(SubsetConfiguration conf) {
+        String filename=conf.getString(FILENAME_KEY);
+        try {
+            writer=filename==null?System.out
+                    :new PrintStream(new FileOutputStream(filename,true),false,
+                            StandardCharsets.UTF_8.name());
+        }catch (Exception e){
+            throw new MetricsException("Error creating "+filename,e);
+        }
+    }
+
+    @Override
+    public void putMetrics(MetricsRecord record) {
+        writer.print(record.timestamp());
+        writer.print(" ");
+        writer.print(record.context());
+        writer.print(".");
+        writer.print(record.name());
+        String separator=": ";
+        for (MetricsTag tag : record.tags()) {
+            writer.print(separator);
+            separator=", ";
+            writer.print(tag.name());
+            writer.print("=");
+            writer.print(tag.value());
+        }
+        for (AbstractMetric metric : record.metrics()) {
+            writer.print(separator);
+            separator=", ";
+            writer.print(metric.name());
+            writer.print("=");
+            writer.print(metric.value());
+        }
+        writer.println();
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+        if (writer.checkError()) {
+            throw new MetricsException("Error writing metrics");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != System.out) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.apache.hadoop.metrics2.sink;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.commons.configuration2.SubsetConfiguration;
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsRecord;
+import org.apache.hadoop.metrics2.MetricsSink;
+import org.apache.hadoop.metrics2.MetricsTag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A metrics sink that sends records in the InfluxDB line protocol over TCP.
+ * <p>
+ * A record becomes one line: the measurement is {@code context.name}, the
+ * tags with a non-empty value become tags and the metrics become fields,
+ * integer metrics with the {@code i} suffix. Non-finite values are
+ * skipped as the protocol cannot express them. Lines are buffered and
+ * sent when the sink is flushed; on a write error the connection is
+ * dropped and opened again by the next record.
+ * <p>
+ * Configured by {@code host}, {@code port} (default {@value #DEFAULT_PORT})
+ * and {@code timeout} in milliseconds.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class LineProtocolSink implements MetricsSink, Closeable {
+    private static final Logger LOG=LoggerFactory.getLogger(LineProtocolSink.class);
+    private static final String HOST_KEY="host";
+    private static final String PORT_KEY="port";
+    private static final String TIMEOUT_KEY="timeout";
+    private static final int DEFAULT_PORT=8094;
+    private static final int DEFAULT_TIMEOUT=10000;
+    private static final int BUFFER_SIZE=64*1024;
+
+    private String host;
+    private int port;
+    private int timeout;
+    private Socket socket;
+    private OutputStream out;
+    private final StringBuilder line=new StringBuilder(256);
+
+    @Override
+    public void init(SubsetConfiguration conf) {
+        host=conf.getString(HOST_KEY);
+        if (host == null || host.isEmpty()) {
+            throw new MetricsException("LineProtocolSink requires "+HOST_KEY);
+        }
+        port=conf.getInt(PORT_KEY,DEFAULT_PORT);
+        timeout=conf.getInt(TIMEOUT_KEY,DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public void putMetrics(MetricsRecord record) {
+        line.setLength(0);
+        escape(record.context(),line,false);
+        line.append('.');
+        escape(record.name(),line,false);
+        for (MetricsTag tag : record.tags()) {
+            String value=tag.value();
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            line.append(',');
+            escape(tag.name(),line,true);
+            line.append('=');
+            escape(value,line,true);
+        }
+        char separator=' ';
+        for (AbstractMetric metric : record.metrics()) {
+            Number value=metric.value();
+            if (value instanceof Double || value instanceof Float) {
+                double d=value.doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    continue;
+                }
+                line.append(separator);
+                escape(metric.name(),line,true);
+                line.append('=').append(d);
+            }else {
+                line.append(separator);
+                escape(metric.name(),line,true);
+                line.append('=').append(value.longValue()).append('i');
+            }
+            separator=',';
+        }
+        if (separator == ' ') {
+            // a line needs at least one field
+            return;
+        }
+        line.append(' ').append(record.timestamp()*1000000L).append('\n');
+        write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Escape commas and spaces, and equal signs in tag keys, tag values and
+     * field keys.
+     */
+    private static void escape(String s,StringBuilder sb,boolean equals){
+        for (int i = 0; i < s.length(); i++) {
+            char c=s.charAt(i);
+            if (c == ',' || c == ' ' || (equals && c == '=')) {
+                sb.append('\\');
+            }else if (c == '\n') {
+                sb.append("\\n");
+                continue;
+            }
+            sb.append(c);
+        }
+    }
+
+    private void write(byte[] bytes){
+        try {
+            if (out == null) {
+                connect();
+            }
+            out.write(bytes);
+        }catch (IOException e){
+            disconnect();
+            throw new MetricsException("Error sending metrics to "+host+":"+port,e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+        }catch (IOException e){
+            disconnect();
+            throw new MetricsException("Error flushing metrics to "+host+":"+port,e);
+        }
+    }
+
+    private void connect()throws IOException{
+        Socket s=new Socket();
+        try {
+            s.connect(new InetSocketAddress(host,port),timeout);
+            s.setSoTimeout(timeout);
+            out=new BufferedOutputStream(s.getOutputStream(),BUFFER_SIZE);
+            socket=s;
+        }catch (IOException e){
+            s.close();
+            throw e;
+        }
+    }
+
+    private void disconnect(){
+        out=null;
+        if (socket != null) {
+            try {
+                socket.close();
+            }catch (IOException e){
+                LOG.debug("Error closing socket to {}:{}",host,port,e);
+            }
+            socket=null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        }finally {
+            disconnect();
+        }
+    }
+}
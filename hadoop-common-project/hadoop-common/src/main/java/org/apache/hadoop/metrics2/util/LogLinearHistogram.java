@@ -0,0 +1,160 @@
+package org.apache.hadoop.metrics2.util;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent histogram with log-linear buckets, estimating quantiles of
+ * non-negative values such as latencies.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} equal buckets, so
+ * an estimate is within 1/{@value #SUB_BUCKETS} of the true value; values
+ * below {@code 2*SUB_BUCKETS} are counted exactly and values from
+ * 2^{@value #MAX_VALUE_BITS} on fall into the last bucket. Recording
+ * increments one bucket of a stripe chosen by the recording thread: it
+ * takes no lock and allocates nothing once the stripe exists.
+ * <p>
+ * The buckets count since the histogram was created. {@link #snapshot()}
+ * reads them and reports the quantiles of the difference to the counts
+ * {@link #clear()} last kept as the baseline; clear then keeps the counts
+ * read by that snapshot. Values recorded while the two run are never lost
+ * but reported with the next interval.
+ */
+@InterfaceAudience.Private
+public class LogLinearHistogram implements QuantileEstimator {
+    static final int SUB_BUCKET_BITS=6;
+    static final int SUB_BUCKETS=1<<SUB_BUCKET_BITS;
+    static final int MAX_VALUE_BITS=40;
+    private static final long MAX_VALUE=(1L<<MAX_VALUE_BITS)-1;
+    static final int BUCKETS=bucketIndex(MAX_VALUE)+1;
+    private static final int MAX_STRIPES=8;
+
+    private final Quantile[] quantiles;
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+    private final int stripeMask;
+    /** Counts kept by the last clear; guarded by this. */
+    private long[] baseline=new long[BUCKETS];
+    /** Counts read by the last snapshot; guarded by this. */
+    private long[] totals=new long[BUCKETS];
+    private boolean snapshotTaken;
+    /** Number of values reported by the last snapshot; guarded by this. */
+    private long snapshotCount;
+
+    public LogLinearHistogram(Quantile[] quantiles){
+        this.quantiles=quantiles.clone();
+        Arrays.sort(this.quantiles);
+        int n=Integer.highestOneBit(Math.min(MAX_STRIPES,
+                Math.max(1,Runtime.getRuntime().availableProcessors()))*2-1);
+        this.stripes=new AtomicReferenceArray<>(n);
+        this.stripeMask=n-1;
+    }
+
+    @VisibleForTesting
+    static int bucketIndex(long value){
+        if (value < 2*SUB_BUCKETS) {
+            return value<0?0:(int) value;
+        }
+        long v=Math.min(value,MAX_VALUE);
+        int shift=63-Long.numberOfLeadingZeros(v)-SUB_BUCKET_BITS;
+        return shift*SUB_BUCKETS+(int) (v>>>shift);
+    }
+
+    /** Middle of the values counted by a bucket. */
+    @VisibleForTesting
+    static long bucketValue(int index){
+        if (index < 2*SUB_BUCKETS) {
+            return index;
+        }
+        int shift=index/SUB_BUCKETS-1;
+        long lower=(long) (index%SUB_BUCKETS+SUB_BUCKETS)<<shift;
+        return lower+(1L<<(shift-1));
+    }
+
+    @Override
+    public void insert(long value) {
+        long id=Thread.currentThread().getId();
+        int stripe=(int) ((id*0x9E3779B97F4A7C15L)>>>32)&stripeMask;
+        AtomicLongArray counts=stripes.get(stripe);
+        if (counts == null) {
+            stripes.compareAndSet(stripe,null,new AtomicLongArray(BUCKETS));
+            counts=stripes.get(stripe);
+        }
+        counts.getAndIncrement(bucketIndex(value));
+    }
+
+    @Override
+    public synchronized Map<Quantile, Long> snapshot() {
+        Arrays.fill(totals,0);
+        for (int s = 0; s < stripes.length(); s++) {
+            AtomicLongArray counts=stripes.get(s);
+            if (counts != null) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    totals[i]+=counts.get(i);
+                }
+            }
+        }
+        snapshotTaken=true;
+        long count=0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count+=totals[i]-baseline[i];
+        }
+        snapshotCount=count;
+        Map<Quantile, Long> values=new TreeMap<>();
+        if (count == 0) {
+            return values;
+        }
+        long seen=0;
+        int bucket=-1;
+        for (Quantile quantile : quantiles) {
+            long rank=Math.max(1,(long) Math.ceil(quantile.quantile*count));
+            while (seen < rank && bucket < BUCKETS-1) {
+                bucket++;
+                seen+=totals[bucket]-baseline[bucket];
+            }
+            values.put(quantile,bucketValue(bucket));
+        }
+        return values;
+    }
+
+    /**
+     * Number of values the last {@link #snapshot()} reported on. Unlike
+     * {@link #getCount()} it excludes values recorded since that snapshot.
+     */
+    public synchronized long getSnapshotCount(){
+        return snapshotCount;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        long count=0;
+        for (int s = 0; s < stripes.length(); s++) {
+            AtomicLongArray counts=stripes.get(s);
+            if (counts != null) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    count+=counts.get(i);
+                }
+            }
+        }
+        for (long c : baseline) {
+            count-=c;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (!snapshotTaken) {
+            snapshot();
+        }
+        long[] kept=baseline;
+        baseline=totals;
+        totals=kept;
+        snapshotTaken=false;
+    }
+}
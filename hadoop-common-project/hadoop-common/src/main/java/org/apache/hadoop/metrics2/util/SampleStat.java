@@ -39,6 +39,21 @@ public class SampleStat {
         return this;
     }
 
+    /**
+     * Merge the samples summarized by another count, mean and sum of
+     * squared deviations; min and max are left alone.
+     */
+    void merge(long nSamples,double otherMean,double otherS){
+        long n=numSamples+nSamples;
+        double delta=otherMean-mean;
+        mean+=delta*nSamples/n;
+        s+=otherS+delta*delta*numSamples*nSamples/n;
+        numSamples=n;
+    }
+    void addMinMax(double x){
+        minmax.add(x);
+    }
+
     public long numSamples(){return numSamples;}
     public double total(){return mean*numSamples;}
     public double mean(){return numSamples>0?mean:0.0;}
@@ -0,0 +1,131 @@
+package org.apache.hadoop.metrics2.util;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Accumulates samples in stripes of count, mean, sum of squared deviations,
+ * min and max, to be drained into a {@link SampleStat} periodically.
+ * <p>
+ * A sample is added to the stripe picked by the id of the adding thread
+ * with Welford's update, under that stripe's monitor only, so threads
+ * rarely wait for each other. Draining merges the stripes with the
+ * parallel form of the update, giving the mean and variance of adding the
+ * samples one by one up to floating point rounding.
+ */
+@InterfaceAudience.Private
+public class StripedSampleStat {
+    private static final int MAX_STRIPES=16;
+
+    private final AtomicReferenceArray<Cell> cells;
+    private final int mask;
+
+    public StripedSampleStat(){
+        int n=Integer.highestOneBit(Math.min(MAX_STRIPES,
+                Math.max(1,Runtime.getRuntime().availableProcessors()))*2-1);
+        this.cells=new AtomicReferenceArray<>(n);
+        this.mask=n-1;
+    }
+
+    private Cell cell(){
+        long id=Thread.currentThread().getId();
+        int i=(int) ((id*0x9E3779B97F4A7C15L)>>>32)&mask;
+        Cell cell=cells.get(i);
+        if (cell == null) {
+            cells.compareAndSet(i,null,new Cell());
+            cell=cells.get(i);
+        }
+        return cell;
+    }
+
+    /** Add a sample; it counts towards min and max. */
+    public void add(long x){
+        Cell cell=cell();
+        synchronized (cell){
+            cell.count++;
+            double meanOld=cell.mean;
+            cell.mean+=(x-meanOld)/cell.count;
+            cell.s+=(x-meanOld)*(x-cell.mean);
+            if (x < cell.min) {
+                cell.min=x;
+            }
+            if (x > cell.max) {
+                cell.max=x;
+            }
+        }
+    }
+
+    /**
+     * Add a number of samples of which only the total is known; like
+     * {@link SampleStat#add(long, double)} they count as samples of the
+     * average value and leave min and max alone.
+     */
+    public void add(long numSamples,long sum){
+        if (numSamples <= 0) {
+            return;
+        }
+        Cell cell=cell();
+        synchronized (cell){
+            cell.count+=numSamples;
+            double x=(double) sum/numSamples;
+            double meanOld=cell.mean;
+            cell.mean+=((double) numSamples/cell.count)*(x-meanOld);
+            cell.s+=numSamples*(x-meanOld)*(x-cell.mean);
+        }
+    }
+
+    /**
+     * Move the samples of all stripes into a stat.
+     * @param stat the stat to merge the samples into.
+     * @param minMax also receives the min and max of the samples; may be null.
+     * @return the number of samples moved.
+     */
+    public long drainTo(SampleStat stat,SampleStat.MinMax minMax){
+        long count=0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell cell=cells.get(i);
+            if (cell == null) {
+                continue;
+            }
+            synchronized (cell){
+                if (cell.count == 0) {
+                    continue;
+                }
+                count+=cell.count;
+                stat.merge(cell.count,cell.mean,cell.s);
+                if (cell.min <= cell.max) {
+                    stat.addMinMax(cell.min);
+                    stat.addMinMax(cell.max);
+                    if (minMax != null) {
+                        minMax.add(cell.min);
+                        minMax.add(cell.max);
+                    }
+                }
+                cell.reset();
+            }
+        }
+        return count;
+    }
+
+    /** A stripe; padded so that stripes do not share cache lines. */
+    @SuppressWarnings("unused")
+    private static final class Cell {
+        private long p0,p1,p2,p3,p4,p5,p6;
+        private long count;
+        private double mean;
+        /** Sum of squared deviations from the mean. */
+        private double s;
+        private long min=Long.MAX_VALUE;
+        private long max=Long.MIN_VALUE;
+        private long q0,q1,q2,q3,q4,q5,q6;
+
+        void reset(){
+            count=0;
+            mean=0;
+            s=0;
+            min=Long.MAX_VALUE;
+            max=Long.MIN_VALUE;
+        }
+    }
+}
@@ -40,6 +40,26 @@ public final class CrcUtil {
         int monomial=getMonomial(lengthB,mod);
         return composeWithMonomial(crcA,crcB,monomial,mod);
     }
+    /**
+     * Compose the CRCs of consecutive chunks into the CRC of their
+     * concatenation. Every chunk but the last is {@code chunkLength} bytes
+     * long, so one monomial serves all of them.
+     */
+    public static int composeChunks(int[] crcs,int offset,int count,
+                                    int chunkLength,long lastChunkLength,int mod){
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive, got "+count);
+        }
+        int monomial=getMonomial(chunkLength,mod);
+        int crc=crcs[offset];
+        for (int i = 1; i < count-1; i++) {
+            crc=composeWithMonomial(crc,crcs[offset+i],monomial,mod);
+        }
+        if (count > 1) {
+            crc=compose(crc,crcs[offset+count-1],lastChunkLength,mod);
+        }
+        return crc;
+    }
     public static byte[] intToBytes(int value){
         byte[] buf = new byte[4];
         try {
@@ -2,19 +2,39 @@ package org.apache.hadoop.util;
 
 import com.apache.hadoop.classification.InterfaceAudience;
 import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.ChecksumException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xerial.snappy.PureJavaCrc32C;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
+/**
+ * A checksum over chunks of {@code bytesPerChecksum} bytes, with a header
+ * describing its type and chunk size.
+ * <p>
+ * Besides the streaming {@link Checksum} API it offers bulk operations
+ * which calculate or verify the sums of many chunks in one call over
+ * arrays or {@link ByteBuffer}s, and
+ * {@link #calculateComposedCrc(ByteBuffer, ExecutorService, int)}, which
+ * computes the CRC of a whole range in parallel by composing the CRCs of
+ * its chunks with {@link CrcUtil}. CRC32C uses
+ * {@code java.util.zip.CRC32C} on Java 9 and later and
+ * {@link PureJavaCrc32C} otherwise.
+ */
 @InterfaceAudience.LimitedPrivate({"HDFS","MapReduce"})
 @InterfaceStability.Evolving
 public class DataChecksum implements Checksum {
@@ -124,17 +144,258 @@ public class DataChecksum implements Checksum {
     }
     public void writeHeader(DataOutputStream out)throws IOException{
         out.writeByte(type.id);
-        out.writeInt(bytePerChecksum);
+        out.writeInt(bytesPerChecksum);
     }
     public byte[] getHeader(){
         byte[] header = new byte[getChecksumHeaderSize()];
         header[0]=(byte) (type.id&0xff);
-        header[1]=(byte) ((bytesperChecksum>>24)&0xff);
-        header[2]=(byte) ((bytesperChecksum>>16)&0xff);
-        header[3]=(byte) ((bytesperChecksum>>8)&0xff);
-        header[4]=(byte) (bytesperChecksum&0xff);
+        header[1]=(byte) ((bytesPerChecksum>>24)&0xff);
+        header[2]=(byte) ((bytesPerChecksum>>16)&0xff);
+        header[3]=(byte) ((bytesPerChecksum>>8)&0xff);
+        header[4]=(byte) (bytesPerChecksum&0xff);
         return header;
     }
+
+    public static int getChecksumHeaderSize(){
+        return 1+4;
+    }
+
+    private final Type type;
+    private final Checksum summer;
+    private final int bytesPerChecksum;
+    private int inSum=0;
+
+    private DataChecksum(Type type,Checksum checksum,int chunkSize){
+        this.type=type;
+        this.summer=checksum;
+        this.bytesPerChecksum=chunkSize;
+    }
+
+    public Type getChecksumType(){
+        return type;
+    }
+
+    public int getChecksumSize(){
+        return type.size;
+    }
+
+    /** Size of the checksums of {@code dataSize} bytes of data. */
+    public int getChecksumSize(int dataSize){
+        return ((dataSize-1)/getBytesPerChecksum()+1)*getChecksumSize();
+    }
+
+    public int getBytesPerChecksum(){
+        return bytesPerChecksum;
+    }
+
+    public int getNumBytesInSum(){
+        return inSum;
+    }
+
+    @Override
+    public long getValue() {
+        return summer.getValue();
+    }
+
+    @Override
+    public void reset() {
+        summer.reset();
+        inSum=0;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (len > 0) {
+            summer.update(b,off,len);
+            inSum+=len;
+        }
+    }
+
+    @Override
+    public void update(int b) {
+        summer.update(b);
+        inSum+=1;
+    }
+
+    /**
+     * Write the current checksum into the array in big-endian order.
+     * @return the number of bytes written.
+     */
+    public int writeValue(byte[] buf,int offset,boolean reset)throws IOException{
+        if (type.size <= 0) {
+            return 0;
+        }
+        if (type.size == 4) {
+            CrcUtil.writeInt(buf,offset,(int) summer.getValue());
+        }else {
+            throw new IOException("Unknown Checksum "+type);
+        }
+        if (reset) {
+            reset();
+        }
+        return type.size;
+    }
+
+    /** Compare the current checksum with the one stored in the array. */
+    public boolean compare(byte[] buf,int offset){
+        if (type.size == 4) {
+            int checksum=((buf[offset]&0xff)<<24)|
+                    ((buf[offset+1]&0xff)<<16)|
+                    ((buf[offset+2]&0xff)<<8)|
+                    ((buf[offset+3]&0xff));
+            return checksum == (int) summer.getValue();
+        }
+        return type.size == 0;
+    }
+
+    /**
+     * Calculate the checksums of all chunks of the remaining data and store
+     * them at the position of {@code checksums}. The positions of both
+     * buffers are unchanged. The running checksum is reset.
+     */
+    public void calculateChunkedSums(ByteBuffer data,ByteBuffer checksums){
+        if (type.size == 0) {
+            return;
+        }
+        int start=data.position();
+        int end=data.limit();
+        int sumPos=checksums.position();
+        for (int off = start; off < end; off+=bytesPerChecksum) {
+            int n=Math.min(bytesPerChecksum,end-off);
+            checksums.putInt(sumPos,chunkCrc(data,off,n));
+            sumPos+=4;
+        }
+        inSum=0;
+    }
+
+    /** Calculate the checksums of all chunks of an array range. */
+    public void calculateChunkedSums(byte[] data,int dataOffset,int dataLength,
+                                     byte[] sums,int sumsOffset){
+        calculateChunkedSums(ByteBuffer.wrap(data,dataOffset,dataLength),
+                ByteBuffer.wrap(sums,sumsOffset,sums.length-sumsOffset));
+    }
+
+    /**
+     * Verify the checksums of all chunks of the remaining data against the
+     * ones at the position of {@code checksums}. The positions of both
+     * buffers are unchanged. The running checksum is reset.
+     * @param basePos position in the file of the first byte of data, used
+     *                to report where a mismatch was found.
+     * @throws ChecksumException on the first chunk which does not match.
+     */
+    public void verifyChunkedSums(ByteBuffer data,ByteBuffer checksums,
+                                  String fileName,long basePos)throws ChecksumException{
+        if (type.size == 0) {
+            return;
+        }
+        int start=data.position();
+        int end=data.limit();
+        int sumPos=checksums.position();
+        for (int off = start; off < end; off+=bytesPerChecksum) {
+            int n=Math.min(bytesPerChecksum,end-off);
+            int expected=checksums.getInt(sumPos);
+            int calculated=chunkCrc(data,off,n);
+            if (calculated != expected) {
+                long errPos=basePos+off-start;
+                throw new ChecksumException("Checksum error: "+fileName+" at "+errPos
+                        +" exp: "+expected+" got: "+calculated,errPos);
+            }
+            sumPos+=4;
+        }
+        inSum=0;
+    }
+
+    /** Verify the checksums of all chunks of an array range. */
+    public void verifyChunkedSums(byte[] data,int dataOffset,int dataLength,
+                                  byte[] checksums,int checksumsOffset,
+                                  String fileName,long basePos)throws ChecksumException{
+        verifyChunkedSums(ByteBuffer.wrap(data,dataOffset,dataLength),
+                ByteBuffer.wrap(checksums,checksumsOffset,checksums.length-checksumsOffset),
+                fileName,basePos);
+    }
+
+    /**
+     * The CRC of the whole remaining data, as if it had been checksummed in
+     * one pass. The data is cut into up to {@code parallelism} ranges of
+     * whole chunks; every range computes the CRCs of its chunks and composes
+     * them, and the range CRCs are composed in order.
+     * @param executor runs the ranges; null computes them in the caller.
+     */
+    public int calculateComposedCrc(ByteBuffer data,ExecutorService executor,
+                                    int parallelism)throws IOException{
+        final int mod=getCrcPolynomialForType(type);
+        final int start=data.position();
+        final int length=data.remaining();
+        if (length == 0) {
+            return 0;
+        }
+        int chunks=(length-1)/bytesPerChecksum+1;
+        int ranges=executor==null?1:Math.max(1,Math.min(parallelism,chunks));
+        int chunksPerRange=(chunks-1)/ranges+1;
+        long rangeLength=(long) chunksPerRange*bytesPerChecksum;
+        if (ranges == 1) {
+            return composeRange(data,start,length,mod);
+        }
+        final ByteBuffer shared=data.duplicate();
+        List<Future<Integer>> futures=new ArrayList<>(ranges);
+        List<Integer> lengths=new ArrayList<>(ranges);
+        for (long off = 0; off < length; off+=rangeLength) {
+            final int rangeStart=(int) (start+off);
+            final int n=(int) Math.min(rangeLength,length-off);
+            futures.add(executor.submit(()->newDataChecksum(type,bytesPerChecksum)
+                    .composeRange(shared,rangeStart,n,mod)));
+            lengths.add(n);
+        }
+        int crc=0;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                int rangeCrc=futures.get(i).get();
+                crc=i==0?rangeCrc:CrcUtil.compose(crc,rangeCrc,lengths.get(i),mod);
+            }
+        }catch (InterruptedException e){
+            for (Future<Integer> f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("interrupted computing CRC").initCause(e);
+        }catch (ExecutionException e){
+            throw new IOException("Failed to compute CRC",e.getCause());
+        }
+        return crc;
+    }
+
+    private int composeRange(ByteBuffer data,int start,int length,int mod){
+        int chunks=(length-1)/bytesPerChecksum+1;
+        int[] crcs=new int[chunks];
+        for (int i = 0; i < chunks; i++) {
+            int off=start+i*bytesPerChecksum;
+            crcs[i]=chunkCrc(data,off,Math.min(bytesPerChecksum,start+length-off));
+        }
+        int last=length-(chunks-1)*bytesPerChecksum;
+        return CrcUtil.composeChunks(crcs,0,chunks,bytesPerChecksum,last,mod);
+    }
+
+    /** The checksum of an absolute range of the buffer. */
+    private int chunkCrc(ByteBuffer data,int off,int len){
+        if (data.hasArray()) {
+            summer.reset();
+            summer.update(data.array(),data.arrayOffset()+off,len);
+            return (int) summer.getValue();
+        }
+        if (summer instanceof PureJavaCrc32C) {
+            return PureJavaCrc32C.crc32c(data,off,len);
+        }
+        ByteBuffer range=data.duplicate();
+        range.limit(off+len);
+        range.position(off);
+        summer.reset();
+        if (summer instanceof CRC32) {
+            ((CRC32) summer).update(range);
+        }else {
+            Java9Crc32CFactory.update(summer,range);
+        }
+        return (int) summer.getValue();
+    }
     static class ChecksumNull implements Checksum{
         public ChecksumNull(){}
 
@@ -160,18 +421,32 @@ public class DataChecksum implements Checksum {
     }
     private static class Java9Crc32CFactory{
         private static final MethodHandle NEW_CRC32C_MH;
+        /** Checksum.update(ByteBuffer), which Java 9 added. */
+        private static final MethodHandle UPDATE_BUFFER_MH;
         static {
             MethodHandle newCRC32C=null;
+            MethodHandle updateBuffer=null;
             try {
                 newCRC32C= MethodHandles.publicLookup()
                         .findConstructor(
                                 Class.forName("java.util.zip.CRC32C"),
                                 MethodType.methodType(void.class)
                         );
+                updateBuffer=MethodHandles.publicLookup()
+                        .findVirtual(Checksum.class,"update",
+                                MethodType.methodType(void.class,ByteBuffer.class));
             }catch (ReflectiveOperationException e){
                 throw new RuntimeException(e);
             }
             NEW_CRC32C_MH=newCRC32C;
+            UPDATE_BUFFER_MH=updateBuffer;
+        }
+        static void update(Checksum checksum,ByteBuffer buffer){
+            try {
+                UPDATE_BUFFER_MH.invokeExact(checksum,buffer);
+            }catch (Throwable e){
+                throw (e instanceof RuntimeException)?(RuntimeException)e:new RuntimeException(e);
+            }
         }
         public static Checksum createChecksum(){
             try {
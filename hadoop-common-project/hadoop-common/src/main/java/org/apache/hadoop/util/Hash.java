@@ -1,4 +1,79 @@
 package org.apache.hadoop.util;
 
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_UTIL_HASH_TYPE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_UTIL_HASH_TYPE_KEY;
+
+/**
+ * Base class of hash functions over byte arrays.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Stable
 public abstract class Hash {
+    public static final int INVALID_HASH=-1;
+    /** The hash of older bloom filter files. */
+    public static final int JENKINS_HASH=0;
+    public static final int MURMUR_HASH=1;
+    public static final int MURMUR3_HASH=2;
+
+    /**
+     * Map a hash name ("jenkins", "murmur" or "murmur3") to its type constant.
+     * @return the type or {@link #INVALID_HASH}.
+     */
+    public static int parseHashType(String name){
+        if ("jenkins".equalsIgnoreCase(name)) {
+            return JENKINS_HASH;
+        }else if ("murmur".equalsIgnoreCase(name)) {
+            return MURMUR_HASH;
+        }else if ("murmur3".equalsIgnoreCase(name)) {
+            return MURMUR3_HASH;
+        }else {
+            return INVALID_HASH;
+        }
+    }
+
+    public static int getHashType(Configuration conf){
+        String name=conf.get(HADOOP_UTIL_HASH_TYPE_KEY,HADOOP_UTIL_HASH_TYPE_DEFAULT);
+        return parseHashType(name);
+    }
+
+    /** @return the hash function of the type, or null if it is unsupported. */
+    public static Hash getInstance(int type){
+        switch (type){
+            case JENKINS_HASH:
+                return JenkinsHash.getInstance();
+            case MURMUR_HASH:
+                return MurmurHash.getInstance();
+            case MURMUR3_HASH:
+                return Murmur3Hash.getInstance();
+            default:
+                return null;
+        }
+    }
+
+    public static Hash getInstance(Configuration conf){
+        return getInstance(getHashType(conf));
+    }
+
+    public int hash(byte[] bytes){
+        return hash(bytes,bytes.length,-1);
+    }
+
+    public int hash(byte[] bytes,int initval){
+        return hash(bytes,0,bytes.length,initval);
+    }
+
+    public int hash(byte[] bytes,int length,int initval){
+        return hash(bytes,0,length,initval);
+    }
+
+    /**
+     * Hash {@code length} bytes starting at {@code offset}.
+     * @param initval seed of the hash; a previous hash value may be passed
+     *                to derive a sequence of hashes.
+     */
+    public abstract int hash(byte[] bytes,int offset,int length,int initval);
 }
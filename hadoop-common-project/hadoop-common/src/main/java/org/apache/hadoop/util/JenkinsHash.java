@@ -0,0 +1,65 @@
+package org.apache.hadoop.util;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Bob Jenkins' lookup3 {@code hashlittle}, the hash of bloom filter files
+ * written before {@link Hash#MURMUR_HASH} became the default.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Stable
+public class JenkinsHash extends Hash {
+    private static final JenkinsHash INSTANCE=new JenkinsHash();
+
+    public static Hash getInstance(){
+        return INSTANCE;
+    }
+
+    @Override
+    public int hash(byte[] key, int offset, int length, int initval) {
+        int a, b, c;
+        a=b=c=0xdeadbeef+length+initval;
+        int i=offset;
+        for (; length > 12; i+=12, length-=12) {
+            a+=littleInt(key,i);
+            b+=littleInt(key,i+4);
+            c+=littleInt(key,i+8);
+            a-=c; a^=Integer.rotateLeft(c,4); c+=b;
+            b-=a; b^=Integer.rotateLeft(a,6); a+=c;
+            c-=b; c^=Integer.rotateLeft(b,8); b+=a;
+            a-=c; a^=Integer.rotateLeft(c,16); c+=b;
+            b-=a; b^=Integer.rotateLeft(a,19); a+=c;
+            c-=b; c^=Integer.rotateLeft(b,4); b+=a;
+        }
+        switch (length) {
+            case 12: c+=(key[i+11]&0xff)<<24;
+            case 11: c+=(key[i+10]&0xff)<<16;
+            case 10: c+=(key[i+9]&0xff)<<8;
+            case 9: c+=key[i+8]&0xff;
+            case 8: b+=(key[i+7]&0xff)<<24;
+            case 7: b+=(key[i+6]&0xff)<<16;
+            case 6: b+=(key[i+5]&0xff)<<8;
+            case 5: b+=key[i+4]&0xff;
+            case 4: a+=(key[i+3]&0xff)<<24;
+            case 3: a+=(key[i+2]&0xff)<<16;
+            case 2: a+=(key[i+1]&0xff)<<8;
+            case 1: a+=key[i]&0xff;
+                break;
+            default:
+                return c;
+        }
+        c^=b; c-=Integer.rotateLeft(b,14);
+        a^=c; a-=Integer.rotateLeft(c,11);
+        b^=a; b-=Integer.rotateLeft(a,25);
+        c^=b; c-=Integer.rotateLeft(b,16);
+        a^=c; a-=Integer.rotateLeft(c,4);
+        b^=a; b-=Integer.rotateLeft(a,14);
+        c^=b; c-=Integer.rotateLeft(b,24);
+        return c;
+    }
+
+    private static int littleInt(byte[] b,int i){
+        return (b[i]&0xff)|(b[i+1]&0xff)<<8|(b[i+2]&0xff)<<16|(b[i+3]&0xff)<<24;
+    }
+}
@@ -0,0 +1,116 @@
+package org.apache.hadoop.util;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * MurmurHash3, x64 128-bit variant.
+ * <p>
+ * {@link #hash64(byte[], int, int, long)} returns the first 64 bits of the
+ * 128-bit result, which is enough to derive any number of bloom filter
+ * probes by double hashing with its two 32-bit halves.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class Murmur3Hash extends Hash {
+    private static final Murmur3Hash INSTANCE=new Murmur3Hash();
+    private static final long C1=0x87c37b91114253d5L;
+    private static final long C2=0x4cf5ad432745937fL;
+
+    public static Hash getInstance(){
+        return INSTANCE;
+    }
+
+    @Override
+    public int hash(byte[] bytes, int offset, int length, int initval) {
+        return (int) hash64(bytes,offset,length,initval&0xffffffffL);
+    }
+
+    private static long getLong(byte[] data,int i){
+        return (data[i]&0xffL)
+                |((data[i+1]&0xffL)<<8)
+                |((data[i+2]&0xffL)<<16)
+                |((data[i+3]&0xffL)<<24)
+                |((data[i+4]&0xffL)<<32)
+                |((data[i+5]&0xffL)<<40)
+                |((data[i+6]&0xffL)<<48)
+                |((data[i+7]&0xffL)<<56);
+    }
+
+    private static long fmix64(long k){
+        k^=k>>>33;
+        k*=0xff51afd7ed558ccdL;
+        k^=k>>>33;
+        k*=0xc4ceb9fe1a85ec53L;
+        k^=k>>>33;
+        return k;
+    }
+
+    /** The first 64 bits of MurmurHash3_x64_128. */
+    public static long hash64(byte[] data,int offset,int length,long seed){
+        long h1=seed;
+        long h2=seed;
+        int nblocks=length>>4;
+        for (int i = 0; i < nblocks; i++) {
+            int p=offset+(i<<4);
+            long k1=getLong(data,p);
+            long k2=getLong(data,p+8);
+
+            k1*=C1;
+            k1=Long.rotateLeft(k1,31);
+            k1*=C2;
+            h1^=k1;
+            h1=Long.rotateLeft(h1,27);
+            h1+=h2;
+            h1=h1*5+0x52dce729;
+
+            k2*=C2;
+            k2=Long.rotateLeft(k2,33);
+            k2*=C1;
+            h2^=k2;
+            h2=Long.rotateLeft(h2,31);
+            h2+=h1;
+            h2=h2*5+0x38495ab5;
+        }
+        int tail=offset+(nblocks<<4);
+        long k1=0;
+        long k2=0;
+        switch (length&15){
+            case 15: k2^=(data[tail+14]&0xffL)<<48;
+            case 14: k2^=(data[tail+13]&0xffL)<<40;
+            case 13: k2^=(data[tail+12]&0xffL)<<32;
+            case 12: k2^=(data[tail+11]&0xffL)<<24;
+            case 11: k2^=(data[tail+10]&0xffL)<<16;
+            case 10: k2^=(data[tail+9]&0xffL)<<8;
+            case 9:
+                k2^=data[tail+8]&0xffL;
+                k2*=C2;
+                k2=Long.rotateLeft(k2,33);
+                k2*=C1;
+                h2^=k2;
+            case 8: k1^=(data[tail+7]&0xffL)<<56;
+            case 7: k1^=(data[tail+6]&0xffL)<<48;
+            case 6: k1^=(data[tail+5]&0xffL)<<40;
+            case 5: k1^=(data[tail+4]&0xffL)<<32;
+            case 4: k1^=(data[tail+3]&0xffL)<<24;
+            case 3: k1^=(data[tail+2]&0xffL)<<16;
+            case 2: k1^=(data[tail+1]&0xffL)<<8;
+            case 1:
+                k1^=data[tail]&0xffL;
+                k1*=C1;
+                k1=Long.rotateLeft(k1,31);
+                k1*=C2;
+                h1^=k1;
+            default:
+                break;
+        }
+        h1^=length;
+        h2^=length;
+        h1+=h2;
+        h2+=h1;
+        h1=fmix64(h1);
+        h2=fmix64(h2);
+        h1+=h2;
+        return h1;
+    }
+}
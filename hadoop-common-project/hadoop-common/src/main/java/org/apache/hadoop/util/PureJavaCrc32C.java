@@ -0,0 +1,159 @@
+package org.apache.hadoop.util;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C (Castagnoli) in pure Java, for JVMs without
+ * {@code java.util.zip.CRC32C}.
+ * <p>
+ * Uses slicing-by-16: sixteen 256-entry tables let the loop consume 16
+ * bytes per iteration with independent table lookups instead of one
+ * dependent lookup per byte. Direct buffers are read with little-endian
+ * long loads, so they are checksummed without copying.
+ */
+@InterfaceAudience.LimitedPrivate({"HDFS","MapReduce"})
+@InterfaceStability.Stable
+public class PureJavaCrc32C implements Checksum {
+    /** Tables T0..T15, T[k][n] at {@code k*256+n}. */
+    private static final int[] T=new int[16*256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c=n;
+            for (int i = 0; i < 8; i++) {
+                c=(c&1)!=0?(c>>>1)^CrcUtil.CASTAGNOLI_POLYNOMIAL:c>>>1;
+            }
+            T[n]=c;
+        }
+        for (int k = 1; k < 16; k++) {
+            for (int n = 0; n < 256; n++) {
+                int prev=T[(k-1)*256+n];
+                T[k*256+n]=(prev>>>8)^T[prev&0xff];
+            }
+        }
+    }
+
+    /** The current CRC, pre-inverted. */
+    private int crc;
+
+    public PureJavaCrc32C(){
+        reset();
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc)&0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+        crc=0xffffffff;
+    }
+
+    @Override
+    public void update(int b) {
+        crc=(crc>>>8)^T[(crc^b)&0xff];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        crc=update(crc,b,off,len);
+    }
+
+    /** Update with the remaining bytes of the buffer and consume them. */
+    public void update(ByteBuffer buffer){
+        int pos=buffer.position();
+        int len=buffer.remaining();
+        if (buffer.hasArray()) {
+            crc=update(crc,buffer.array(),buffer.arrayOffset()+pos,len);
+        }else {
+            crc=update(crc,buffer,pos,len);
+        }
+        buffer.position(pos+len);
+    }
+
+    /**
+     * The CRC32C of a byte range, as {@code java.util.zip.CRC32C} would
+     * return it.
+     */
+    public static int crc32c(byte[] b,int off,int len){
+        return ~update(0xffffffff,b,off,len);
+    }
+
+    /** The CRC32C of an absolute range of a buffer; the position is unchanged. */
+    public static int crc32c(ByteBuffer buffer,int off,int len){
+        if (buffer.hasArray()) {
+            return ~update(0xffffffff,buffer.array(),buffer.arrayOffset()+off,len);
+        }
+        return ~update(0xffffffff,buffer,off,len);
+    }
+
+    private static int update(int crc,byte[] b,int off,int len){
+        int c=crc;
+        while (len >= 16) {
+            c^=(b[off]&0xff)|(b[off+1]&0xff)<<8|(b[off+2]&0xff)<<16|(b[off+3]&0xff)<<24;
+            c=T[15*256+(c&0xff)]
+                    ^T[14*256+((c>>>8)&0xff)]
+                    ^T[13*256+((c>>>16)&0xff)]
+                    ^T[12*256+(c>>>24)]
+                    ^T[11*256+(b[off+4]&0xff)]
+                    ^T[10*256+(b[off+5]&0xff)]
+                    ^T[9*256+(b[off+6]&0xff)]
+                    ^T[8*256+(b[off+7]&0xff)]
+                    ^T[7*256+(b[off+8]&0xff)]
+                    ^T[6*256+(b[off+9]&0xff)]
+                    ^T[5*256+(b[off+10]&0xff)]
+                    ^T[4*256+(b[off+11]&0xff)]
+                    ^T[3*256+(b[off+12]&0xff)]
+                    ^T[2*256+(b[off+13]&0xff)]
+                    ^T[256+(b[off+14]&0xff)]
+                    ^T[b[off+15]&0xff];
+            off+=16;
+            len-=16;
+        }
+        while (len-- > 0) {
+            c=(c>>>8)^T[(c^b[off++])&0xff];
+        }
+        return c;
+    }
+
+    private static int update(int crc,ByteBuffer buffer,int off,int len){
+        ByteBuffer b=buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int c=crc;
+        while (len >= 16) {
+            long lo=b.getLong(off);
+            long hi=b.getLong(off+8);
+            c^=(int) lo;
+            int l1=(int) (lo>>>32);
+            int h0=(int) hi;
+            int h1=(int) (hi>>>32);
+            c=T[15*256+(c&0xff)]
+                    ^T[14*256+((c>>>8)&0xff)]
+                    ^T[13*256+((c>>>16)&0xff)]
+                    ^T[12*256+(c>>>24)]
+                    ^T[11*256+(l1&0xff)]
+                    ^T[10*256+((l1>>>8)&0xff)]
+                    ^T[9*256+((l1>>>16)&0xff)]
+                    ^T[8*256+(l1>>>24)]
+                    ^T[7*256+(h0&0xff)]
+                    ^T[6*256+((h0>>>8)&0xff)]
+                    ^T[5*256+((h0>>>16)&0xff)]
+                    ^T[4*256+(h0>>>24)]
+                    ^T[3*256+(h1&0xff)]
+                    ^T[2*256+((h1>>>8)&0xff)]
+                    ^T[256+((h1>>>16)&0xff)]
+                    ^T[h1>>>24];
+            off+=16;
+            len-=16;
+        }
+        while (len-- > 0) {
+            c=(c>>>8)^T[(c^b.get(off++))&0xff];
+        }
+        return c;
+    }
+}
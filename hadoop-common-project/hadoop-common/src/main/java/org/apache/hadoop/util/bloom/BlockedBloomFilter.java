@@ -0,0 +1,227 @@
+package org.apache.hadoop.util.bloom;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.util.Hash;
+import org.apache.hadoop.util.Murmur3Hash;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.apache.hadoop.thirdparty.com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A cache-line blocked Bloom filter.
+ * <p>
+ * The bit vector is partitioned into blocks of 512 bits, the size of a
+ * cache line. One 64-bit MurmurHash3 of the key selects the block from its
+ * upper half and all {@code nbHash} bits inside the block from its lower
+ * half, so a lookup touches a single cache line and computes a single hash
+ * whatever the number of probes. For the same number of bits the false
+ * positive rate is slightly higher than that of a {@link BloomFilter};
+ * {@link #create(long, double)} sizes the filter from the expected number
+ * of keys and the target rate.
+ * <p>
+ * The serialized form starts with a version of its own, so readers of a
+ * bloom file can tell it apart from the other filters.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class BlockedBloomFilter extends Filter {
+    /** Version marker written in place of {@link Filter}'s. */
+    public static final int VERSION=-2;
+    static final int BLOCK_BITS=512;
+    private static final int BLOCK_LONGS=BLOCK_BITS/Long.SIZE;
+    private static final int MAX_BLOCKS=Integer.MAX_VALUE/BLOCK_BITS;
+    private static final int GOLDEN_RATIO=0x9e3779b9;
+
+    private int numBlocks;
+    private long[] words;
+
+    public BlockedBloomFilter(){}
+
+    /**
+     * @param numBlocks number of 512-bit blocks.
+     * @param nbHash number of bits set per key.
+     */
+    public BlockedBloomFilter(int numBlocks,int nbHash){
+        checkArgument(numBlocks>0&&numBlocks<=MAX_BLOCKS,"numBlocks out of range: %s",numBlocks);
+        checkArgument(nbHash>0,"nbHash must be positive: %s",nbHash);
+        this.vectorSize=numBlocks*BLOCK_BITS;
+        this.nbHash=nbHash;
+        this.hashType=Hash.MURMUR3_HASH;
+        this.numBlocks=numBlocks;
+        this.words=new long[numBlocks*BLOCK_LONGS];
+    }
+
+    /**
+     * Size a filter for {@code expectedKeys} keys and a target false
+     * positive probability: {@code m = -n ln(p) / ln(2)^2} bits and
+     * {@code k = m/n ln(2)} probes.
+     */
+    public static BlockedBloomFilter create(long expectedKeys,double fpp){
+        checkArgument(expectedKeys>0,"expectedKeys must be positive: %s",expectedKeys);
+        checkArgument(fpp>0.0&&fpp<1.0,"fpp must be in (0, 1): %s",fpp);
+        double bits=-expectedKeys*Math.log(fpp)/(Math.log(2)*Math.log(2));
+        long blocks=(long) Math.ceil(bits/BLOCK_BITS);
+        int numBlocks=(int) Math.max(1,Math.min(blocks,MAX_BLOCKS));
+        int nbHash=(int) Math.max(1,Math.round(bits/expectedKeys*Math.log(2)));
+        return new BlockedBloomFilter(numBlocks,Math.min(nbHash,BLOCK_BITS/8));
+    }
+
+    public int getNumBlocks(){
+        return numBlocks;
+    }
+
+    public int getNbHash(){
+        return nbHash;
+    }
+
+    @Override
+    public void add(Key key) {
+        if (key == null) {
+            throw new NullPointerException("key cannot be null");
+        }
+        add(key.getBytes(),0,key.getBytes().length);
+    }
+
+    public void add(byte[] bytes,int offset,int length){
+        long h=Murmur3Hash.hash64(bytes,offset,length,0);
+        int base=blockOf(h)*BLOCK_LONGS;
+        int probe=(int) h;
+        for (int i = 0; i < nbHash; i++) {
+            int bit=probe>>>23;
+            words[base+(bit>>>6)]|=1L<<bit;
+            probe*=GOLDEN_RATIO;
+        }
+    }
+
+    @Override
+    public boolean membershipTest(Key key) {
+        if (key == null) {
+            throw new NullPointerException("key cannot be null");
+        }
+        return membershipTest(key.getBytes(),0,key.getBytes().length);
+    }
+
+    @Override
+    public boolean membershipTest(byte[] bytes, int offset, int length) {
+        long h=Murmur3Hash.hash64(bytes,offset,length,0);
+        int base=blockOf(h)*BLOCK_LONGS;
+        int probe=(int) h;
+        for (int i = 0; i < nbHash; i++) {
+            int bit=probe>>>23;
+            if ((words[base+(bit>>>6)]&(1L<<bit)) == 0) {
+                return false;
+            }
+            probe*=GOLDEN_RATIO;
+        }
+        return true;
+    }
+
+    /** Map the upper 32 bits of the hash onto [0, numBlocks) without a division. */
+    private int blockOf(long h){
+        return (int) (((h>>>32)*numBlocks)>>>32);
+    }
+
+    @Override
+    public void and(Filter filter) {
+        long[] other=checkCompatible(filter);
+        for (int i = 0; i < words.length; i++) {
+            words[i]&=other[i];
+        }
+    }
+
+    @Override
+    public void or(Filter filter) {
+        long[] other=checkCompatible(filter);
+        for (int i = 0; i < words.length; i++) {
+            words[i]|=other[i];
+        }
+    }
+
+    @Override
+    public void xor(Filter filter) {
+        long[] other=checkCompatible(filter);
+        for (int i = 0; i < words.length; i++) {
+            words[i]^=other[i];
+        }
+    }
+
+    @Override
+    public void not() {
+        for (int i = 0; i < words.length; i++) {
+            words[i]=~words[i];
+        }
+    }
+
+    private long[] checkCompatible(Filter filter){
+        if (filter == null
+                || !(filter instanceof BlockedBloomFilter)
+                || filter.vectorSize != this.vectorSize
+                || filter.nbHash != this.nbHash) {
+            throw new IllegalArgumentException("filters cannot be combined");
+        }
+        return ((BlockedBloomFilter) filter).words;
+    }
+
+    /** Fraction of the bits which are set. */
+    public double getFillRatio(){
+        long set=0;
+        for (long w : words) {
+            set+=Long.bitCount(w);
+        }
+        return (double) set/vectorSize;
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(nbHash);
+        out.writeByte(hashType);
+        out.writeInt(vectorSize);
+        for (long w : words) {
+            out.writeLong(w);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int ver=in.readInt();
+        if (ver != VERSION) {
+            throw new IOException("Not a blocked bloom filter, version: "+ver);
+        }
+        this.nbHash=in.readInt();
+        this.hashType=in.readByte();
+        this.vectorSize=in.readInt();
+        if (hashType != Hash.MURMUR3_HASH || nbHash <= 0
+                || vectorSize <= 0 || vectorSize%BLOCK_BITS != 0) {
+            throw new IOException("Corrupt blocked bloom filter: nbHash="+nbHash
+                    +", hashType="+hashType+", vectorSize="+vectorSize);
+        }
+        this.numBlocks=vectorSize/BLOCK_BITS;
+        this.words=new long[numBlocks*BLOCK_LONGS];
+        for (int i = 0; i < words.length; i++) {
+            words[i]=in.readLong();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BlockedBloomFilter)) {
+            return false;
+        }
+        BlockedBloomFilter other=(BlockedBloomFilter) o;
+        return nbHash == other.nbHash && Arrays.equals(words,other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31*nbHash+Arrays.hashCode(words);
+    }
+}
@@ -0,0 +1,135 @@
+package org.apache.hadoop.util.bloom;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * The classic Bloom filter: {@code nbHash} bits spread over a vector of
+ * {@code vectorSize} bits per key.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public class BloomFilter extends Filter {
+    private static final byte[] bitvalues=new byte[]{
+            (byte) 0x01,(byte) 0x02,(byte) 0x04,(byte) 0x08,
+            (byte) 0x10,(byte) 0x20,(byte) 0x40,(byte) 0x80
+    };
+
+    BitSet bits;
+
+    public BloomFilter(){
+        super();
+    }
+
+    public BloomFilter(int vectorSize,int nbHash,int hashType){
+        super(vectorSize,nbHash,hashType);
+        bits=new BitSet(this.vectorSize);
+    }
+
+    @Override
+    public void add(Key key) {
+        if (key == null) {
+            throw new NullPointerException("key cannot be null");
+        }
+        int[] h=hash.hash(key);
+        for (int i = 0; i < nbHash; i++) {
+            bits.set(h[i]);
+        }
+    }
+
+    @Override
+    public boolean membershipTest(Key key) {
+        if (key == null) {
+            throw new NullPointerException("key cannot be null");
+        }
+        return membershipTest(hash.hash(key));
+    }
+
+    @Override
+    public boolean membershipTest(byte[] bytes, int offset, int length) {
+        return membershipTest(hash.hash(bytes,offset,length,new int[nbHash]));
+    }
+
+    /** Test positions computed by a hash function of the same shape. */
+    boolean membershipTest(int[] h){
+        for (int i = 0; i < nbHash; i++) {
+            if (!bits.get(h[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void and(Filter filter) {
+        checkCompatible(filter);
+        this.bits.and(((BloomFilter) filter).bits);
+    }
+
+    @Override
+    public void or(Filter filter) {
+        checkCompatible(filter);
+        this.bits.or(((BloomFilter) filter).bits);
+    }
+
+    @Override
+    public void xor(Filter filter) {
+        checkCompatible(filter);
+        this.bits.xor(((BloomFilter) filter).bits);
+    }
+
+    @Override
+    public void not() {
+        bits.flip(0,vectorSize);
+    }
+
+    private void checkCompatible(Filter filter){
+        if (filter == null
+                || !(filter instanceof BloomFilter)
+                || filter.vectorSize != this.vectorSize
+                || filter.nbHash != this.nbHash) {
+            throw new IllegalArgumentException("filters cannot be combined");
+        }
+    }
+
+    public int getVectorSize(){
+        return this.vectorSize;
+    }
+
+    @Override
+    public String toString() {
+        return bits.toString();
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        super.writer(out);
+        byte[] bytes=new byte[getNBytes()];
+        for (int i = bits.nextSetBit(0); i >= 0 && i < vectorSize; i=bits.nextSetBit(i+1)) {
+            bytes[i>>>3]|=bitvalues[i&7];
+        }
+        out.write(bytes);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        bits=new BitSet(this.vectorSize);
+        byte[] bytes=new byte[getNBytes()];
+        in.readFully(bytes);
+        for (int i = 0; i < vectorSize; i++) {
+            if ((bytes[i>>>3]&bitvalues[i&7]) != 0) {
+                bits.set(i);
+            }
+        }
+    }
+
+    private int getNBytes(){
+        return (int) (((long) vectorSize+7)/8);
+    }
+}
@@ -1,4 +1,169 @@
 package org.apache.hadoop.util.bloom;
 
-public class DynamicBloomFilter {
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter which grows by rows: once {@code nr} keys have been added
+ * to the active row a new {@link BloomFilter} row is started, so the false
+ * positive rate stays bounded when the number of keys is not known in
+ * advance. A key is a member if any row contains it.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public class DynamicBloomFilter extends Filter {
+    private int nr;
+    private int currentNbRecord;
+    private BloomFilter[] matrix;
+
+    public DynamicBloomFilter(){}
+
+    /**
+     * @param vectorSize bits per row.
+     * @param nbHash number of hash functions.
+     * @param hashType type of the hash, see {@link org.apache.hadoop.util.Hash}.
+     * @param nr number of keys a row holds before a new one is started.
+     */
+    public DynamicBloomFilter(int vectorSize,int nbHash,int hashType,int nr){
+        super(vectorSize,nbHash,hashType);
+        this.nr=nr;
+        this.currentNbRecord=0;
+        matrix=new BloomFilter[1];
+        matrix[0]=new BloomFilter(this.vectorSize,this.nbHash,this.hashType);
+    }
+
+    @Override
+    public void add(Key key) {
+        if (key == null) {
+            throw new NullPointerException("Key can not be null");
+        }
+        BloomFilter bf=getActiveStandardBF();
+        if (bf == null) {
+            addRow();
+            bf=matrix[matrix.length-1];
+            currentNbRecord=0;
+        }
+        bf.add(key);
+        currentNbRecord++;
+    }
+
+    @Override
+    public boolean membershipTest(Key key) {
+        if (key == null) {
+            return true;
+        }
+        return membershipTest(hash.hash(key));
+    }
+
+    /** All rows share the hash shape, so the positions are computed once. */
+    @Override
+    public boolean membershipTest(byte[] bytes, int offset, int length) {
+        return membershipTest(hash.hash(bytes,offset,length,new int[nbHash]));
+    }
+
+    private boolean membershipTest(int[] h){
+        for (BloomFilter row : matrix) {
+            if (row.membershipTest(h)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void and(Filter filter) {
+        DynamicBloomFilter dbf=checkCompatible(filter);
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i].and(dbf.matrix[i]);
+        }
+    }
+
+    @Override
+    public void or(Filter filter) {
+        DynamicBloomFilter dbf=checkCompatible(filter);
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i].or(dbf.matrix[i]);
+        }
+    }
+
+    @Override
+    public void xor(Filter filter) {
+        DynamicBloomFilter dbf=checkCompatible(filter);
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i].xor(dbf.matrix[i]);
+        }
+    }
+
+    @Override
+    public void not() {
+        for (BloomFilter row : matrix) {
+            row.not();
+        }
+    }
+
+    private DynamicBloomFilter checkCompatible(Filter filter){
+        if (filter == null
+                || !(filter instanceof DynamicBloomFilter)
+                || filter.vectorSize != this.vectorSize
+                || filter.nbHash != this.nbHash) {
+            throw new IllegalArgumentException("filters cannot be combined");
+        }
+        DynamicBloomFilter dbf=(DynamicBloomFilter) filter;
+        if (dbf.matrix.length != this.matrix.length || dbf.nr != this.nr) {
+            throw new IllegalArgumentException("filters cannot be combined");
+        }
+        return dbf;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res=new StringBuilder();
+        for (BloomFilter row : matrix) {
+            res.append(row);
+            res.append(Character.LINE_SEPARATOR);
+        }
+        return res.toString();
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        super.writer(out);
+        out.writeInt(nr);
+        out.writeInt(currentNbRecord);
+        out.writeInt(matrix.length);
+        for (BloomFilter row : matrix) {
+            row.writer(out);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        nr=in.readInt();
+        currentNbRecord=in.readInt();
+        int len=in.readInt();
+        matrix=new BloomFilter[len];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i]=new BloomFilter();
+            matrix[i].readFields(in);
+        }
+    }
+
+    private void addRow(){
+        BloomFilter[] tmp=new BloomFilter[matrix.length+1];
+        System.arraycopy(matrix,0,tmp,0,matrix.length);
+        tmp[tmp.length-1]=new BloomFilter(vectorSize,nbHash,hashType);
+        matrix=tmp;
+    }
+
+    private BloomFilter getActiveStandardBF(){
+        if (currentNbRecord >= nr) {
+            return null;
+        }
+        return matrix[matrix.length-1];
+    }
 }
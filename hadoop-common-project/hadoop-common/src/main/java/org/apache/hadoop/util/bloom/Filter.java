@@ -1,4 +1,115 @@
 package org.apache.hadoop.util.bloom;
 
-public abstract class Filter {
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.Hash;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Base class of the membership filters.
+ * <p>
+ * The serialized form starts with {@link #VERSION}, the number of hash
+ * functions, the hash type and the vector size.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public abstract class Filter implements Writable {
+    private static final int VERSION=-1;
+
+    protected int vectorSize;
+    protected HashFunction hash;
+    protected int nbHash;
+    protected int hashType;
+
+    protected Filter(){}
+
+    protected Filter(int vectorSize,int nbHash,int hashType){
+        this.vectorSize=vectorSize;
+        this.nbHash=nbHash;
+        this.hashType=hashType;
+        this.hash=new HashFunction(this.vectorSize,this.nbHash,this.hashType);
+    }
+
+    public abstract void add(Key key);
+
+    public abstract boolean membershipTest(Key key);
+
+    /**
+     * Test the serialized bytes of a key without wrapping them in a
+     * {@link Key}. Subclasses on hot lookup paths override this to avoid
+     * any allocation.
+     */
+    public boolean membershipTest(byte[] bytes,int offset,int length){
+        byte[] copy=new byte[length];
+        System.arraycopy(bytes,offset,copy,0,length);
+        return membershipTest(new Key(copy));
+    }
+
+    public abstract void and(Filter filter);
+
+    public abstract void or(Filter filter);
+
+    public abstract void xor(Filter filter);
+
+    public abstract void not();
+
+    public void add(List<Key> keys){
+        if (keys == null) {
+            throw new IllegalArgumentException("ArrayList<Key> may not be null");
+        }
+        for (Key key : keys) {
+            add(key);
+        }
+    }
+
+    public void add(Collection<Key> keys){
+        if (keys == null) {
+            throw new IllegalArgumentException("Collection<Key> may not be null");
+        }
+        for (Key key : keys) {
+            add(key);
+        }
+    }
+
+    public void add(Key[] keys){
+        if (keys == null) {
+            throw new IllegalArgumentException("Key[] may not be null");
+        }
+        for (Key key : keys) {
+            add(key);
+        }
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(this.nbHash);
+        out.writeByte(this.hashType);
+        out.writeInt(this.vectorSize);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int ver=in.readInt();
+        if (ver > 0) {
+            this.nbHash=ver;
+            this.hashType=Hash.JENKINS_HASH;
+        }else if (ver == VERSION) {
+            this.nbHash=in.readInt();
+            this.hashType=in.readByte();
+        }else {
+            throw new IOException("Unsupported version: "+ver);
+        }
+        this.vectorSize=in.readInt();
+        if (Hash.getInstance(this.hashType) == null) {
+            throw new IOException("Unsupported hash type: "+this.hashType);
+        }
+        this.hash=new HashFunction(this.vectorSize,this.nbHash,this.hashType);
+    }
 }
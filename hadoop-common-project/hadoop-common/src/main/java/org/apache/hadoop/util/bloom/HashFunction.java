@@ -0,0 +1,71 @@
+package org.apache.hadoop.util.bloom;
+
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.util.Hash;
+import org.apache.hadoop.util.Murmur3Hash;
+
+/**
+ * Derives the {@code nbHash} bit positions of a key in a vector of
+ * {@code maxValue} bits.
+ * <p>
+ * For {@link Hash#MURMUR3_HASH} the positions come from one 64-bit hash by
+ * double hashing, {@code h1 + i * h2}. The other hash types chain the hash
+ * function, seeding every round with the previous result, which is the
+ * layout of existing bloom filter files.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public final class HashFunction {
+    private final int nbHash;
+    private final int maxValue;
+    private final int hashType;
+    private final Hash hashFunction;
+
+    public HashFunction(int maxValue,int nbHash,int hashType){
+        if (maxValue <= 0) {
+            throw new IllegalArgumentException("maxValue must be > 0");
+        }
+        if (nbHash <= 0) {
+            throw new IllegalArgumentException("nbHash must be > 0");
+        }
+        this.maxValue=maxValue;
+        this.nbHash=nbHash;
+        this.hashType=hashType;
+        this.hashFunction=Hash.getInstance(hashType);
+        if (this.hashFunction == null) {
+            throw new IllegalArgumentException("hashType must be known");
+        }
+    }
+
+    public void clear(){}
+
+    public int[] hash(Key k){
+        return hash(k.getBytes(),0,k.getBytes().length,new int[nbHash]);
+    }
+
+    /**
+     * Fill {@code result} with the positions of the bytes.
+     * @return result.
+     */
+    public int[] hash(byte[] b,int offset,int length,int[] result){
+        if (length == 0) {
+            throw new IllegalArgumentException("key length must be > 0");
+        }
+        if (hashType == Hash.MURMUR3_HASH) {
+            long h=Murmur3Hash.hash64(b,offset,length,0);
+            int h1=(int) h;
+            int h2=(int) (h>>>32);
+            for (int i = 0; i < nbHash; i++) {
+                int combined=h1+i*h2;
+                result[i]=(combined&Integer.MAX_VALUE)%maxValue;
+            }
+            return result;
+        }
+        for (int i = 0, initval = 0; i < nbHash; i++) {
+            initval=hashFunction.hash(b,offset,length,initval);
+            result[i]=Math.abs(initval%maxValue);
+        }
+        return result;
+    }
+}
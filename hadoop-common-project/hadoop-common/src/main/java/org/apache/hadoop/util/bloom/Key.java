@@ -1,4 +1,97 @@
 package org.apache.hadoop.util.bloom;
 
-public class Key {
+import com.apache.hadoop.classification.InterfaceAudience;
+import com.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The element a {@link Filter} hashes: a byte array and a weight.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Stable
+public class Key implements WritableComparable<Key> {
+    byte[] bytes;
+    double weight;
+
+    public Key(){}
+
+    public Key(byte[] value){
+        this(value,1.0);
+    }
+
+    public Key(byte[] value,double weight){
+        set(value,weight);
+    }
+
+    public void set(byte[] value,double weight){
+        if (value == null) {
+            throw new IllegalArgumentException("value can not be null");
+        }
+        this.bytes=value;
+        this.weight=weight;
+    }
+
+    public byte[] getBytes(){
+        return this.bytes;
+    }
+
+    public double getWeight(){
+        return weight;
+    }
+
+    public void incrementWeight(double weight){
+        this.weight+=weight;
+    }
+
+    public void incrementWeight(){
+        this.weight++;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Key)) {
+            return false;
+        }
+        return this.compareTo((Key) o)==0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result=0;
+        for (int i = 0; i < bytes.length; i++) {
+            result^=Byte.valueOf(bytes[i]).hashCode();
+        }
+        result^=Double.valueOf(weight).hashCode();
+        return result;
+    }
+
+    @Override
+    public void writer(DataOutput out) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeDouble(weight);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.bytes=new byte[in.readInt()];
+        in.readFully(this.bytes);
+        weight=in.readDouble();
+    }
+
+    @Override
+    public int compareTo(Key other) {
+        int result=this.bytes.length-other.getBytes().length;
+        for (int i = 0; result == 0 && i < bytes.length; i++) {
+            result=this.bytes[i]-other.bytes[i];
+        }
+        if (result == 0) {
+            result=Double.compare(weight,other.weight);
+        }
+        return result;
+    }
 }
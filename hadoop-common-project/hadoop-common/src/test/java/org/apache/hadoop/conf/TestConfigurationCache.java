@@ -0,0 +1,176 @@
+package org.apache.hadoop.conf;
+
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that compiled configuration resources round trip and are only
+ * used while the resource has the digest, or for local files the length
+ * and modification time, they were compiled from.
+ */
+public class TestConfigurationCache {
+    private static final String ID = "file:/etc/hadoop/core-site.xml";
+    private static final long OLD = System.currentTimeMillis() - 60000;
+
+    private File dir;
+    private File confFile;
+    private ConfigurationCache cache;
+    private String savedDir;
+
+    @Before
+    public void setUp() throws IOException {
+        File base = new File(System.getProperty("test.build.data", "target/test/data"),
+                "TestConfigurationCache").getAbsoluteFile();
+        dir = new File(base, "cache");
+        confFile = new File(base, "test-site.xml");
+        delete(base);
+        assertTrue(dir.mkdirs());
+        cache = new ConfigurationCache(dir);
+        savedDir = System.getProperty(ConfigurationCache.CACHE_DIR_PROPERTY);
+    }
+
+    @After
+    public void tearDown() {
+        if (savedDir == null) {
+            System.clearProperty(ConfigurationCache.CACHE_DIR_PROPERTY);
+        } else {
+            System.setProperty(ConfigurationCache.CACHE_DIR_PROPERTY, savedDir);
+        }
+        delete(dir.getParentFile());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        byte[] digest = ConfigurationCache.digest(bytes("v1"));
+        List<ConfigurationCache.Property> properties = Arrays.asList(
+                new ConfigurationCache.Property("a", "1", null, false, new String[]{ID}),
+                new ConfigurationCache.Property("b", null, "HDFS,CLIENT", true,
+                        new String[]{ID, "programmatically"}),
+                new ConfigurationCache.Property("c\u00e9", "1", "", false, new String[0]));
+        cache.store(ID, false, -1, -1, digest, properties);
+
+        List<ConfigurationCache.Property> loaded = cache.load(ID, false, digest);
+        assertNotNull(loaded);
+        assertEquals(properties.size(), loaded.size());
+        for (int i = 0; i < properties.size(); i++) {
+            ConfigurationCache.Property expected = properties.get(i);
+            ConfigurationCache.Property actual = loaded.get(i);
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.value, actual.value);
+            assertEquals(expected.tag, actual.tag);
+            assertEquals(expected.isFinal, actual.isFinal);
+            assertArrayEquals(expected.sources, actual.sources);
+        }
+        // compiled separately for the restricted parser
+        assertNull(cache.load(ID, true, digest));
+        // no stamp recorded for a resource which is not a local file
+        assertNull(cache.load(ID, false, -1, -1));
+    }
+
+    @Test
+    public void testStaleDigest() {
+        byte[] v1 = ConfigurationCache.digest(bytes("v1"));
+        byte[] v2 = ConfigurationCache.digest(bytes("v2"));
+        cache.store(ID, false, -1, -1, v1, properties("1"));
+        assertNull(cache.load(ID, false, v2));
+
+        cache.store(ID, false, -1, -1, v2, properties("2"));
+        assertNull(cache.load(ID, false, v1));
+        assertEquals("2", cache.load(ID, false, v2).get(0).value);
+    }
+
+    @Test
+    public void testStamp() {
+        byte[] digest = ConfigurationCache.digest(bytes("v1"));
+        cache.store(ID, false, 100, OLD, digest, properties("1"));
+        assertEquals("1", cache.load(ID, false, 100, OLD).get(0).value);
+        assertEquals("1", cache.load(ID, false, digest).get(0).value);
+        assertNull(cache.load(ID, false, 101, OLD));
+        assertNull(cache.load(ID, false, 100, OLD + 1000));
+    }
+
+    @Test
+    public void testRecentStampIsNotRecorded() {
+        long now = System.currentTimeMillis();
+        byte[] digest = ConfigurationCache.digest(bytes("v1"));
+        cache.store(ID, false, 100, now, digest, properties("1"));
+        assertNull(cache.load(ID, false, 100, now));
+        assertEquals("1", cache.load(ID, false, digest).get(0).value);
+    }
+
+    @Test
+    public void testUnreadableFileIsIgnored() throws IOException {
+        byte[] digest = ConfigurationCache.digest(bytes("v1"));
+        cache.store(ID, false, -1, -1, digest, properties("1"));
+        File[] compiled = dir.listFiles();
+        assertEquals(1, compiled.length);
+        Files.write(compiled[0].toPath(), bytes("not a compiled file"));
+        assertNull(cache.load(ID, false, digest));
+    }
+
+    @Test
+    public void testConfigurationReloadsChangedFile() throws IOException {
+        System.setProperty(ConfigurationCache.CACHE_DIR_PROPERTY, dir.getPath());
+        writeConf("aaa", OLD);
+        assertEquals("aaa", load().get("test.key"));
+        assertEquals(1, dir.listFiles().length);
+        // served from the compiled file
+        assertEquals("aaa", load().get("test.key"));
+
+        // same length, new modification time
+        writeConf("bbb", OLD + 2000);
+        assertEquals("bbb", load().get("test.key"));
+        // new modification time, same content
+        assertTrue(confFile.setLastModified(OLD + 4000));
+        assertEquals("bbb", load().get("test.key"));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    private Configuration load() {
+        Configuration conf = new Configuration(false);
+        conf.addResource(new Path(confFile.getPath()));
+        return conf;
+    }
+
+    private void writeConf(String value, long modified) throws IOException {
+        Files.write(confFile.toPath(), bytes("<?xml version=\"1.0\"?>\n<configuration>\n"
+                + "<property><name>test.key</name><value>" + value + "</value></property>\n"
+                + "</configuration>\n"));
+        assertTrue(confFile.setLastModified(modified));
+    }
+
+    private static List<ConfigurationCache.Property> properties(String value) {
+        return Arrays.asList(new ConfigurationCache.Property("a", value, null, false,
+                new String[]{ID}));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        assertFalse(file.exists() && !file.delete());
+    }
+}
@@ -0,0 +1,66 @@
+package org.apache.hadoop.fs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.FS_STATISTICS_STRIPED_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeys.FS_STATISTICS_STRIPED_SCHEME_KEY;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the statistics of a file system use the backend selected by
+ * its configuration. Statistics are shared per base URI, so every case
+ * uses an authority of its own.
+ */
+public class TestAbstractFileSystemStatistics {
+
+    @Test
+    public void testDefaultIsPerThread() {
+        Configuration conf = new Configuration(false);
+        assertFalse(AbstractFileSystem.getStatistics(
+                URI.create("hdfs://default-conf:8020/"), conf).isStriped());
+        assertFalse(AbstractFileSystem.getStatistics(
+                URI.create("hdfs://no-conf:8020/")).isStriped());
+    }
+
+    @Test
+    public void testGlobalKeySelectsStriped() {
+        Configuration conf = new Configuration(false);
+        conf.setBoolean(FS_STATISTICS_STRIPED_KEY, true);
+        FileSystem.Statistics stats = AbstractFileSystem.getStatistics(
+                URI.create("hdfs://global-striped:8020/"), conf);
+        assertTrue(stats.isStriped());
+    }
+
+    @Test
+    public void testSchemeKeyOverridesGlobalKey() {
+        Configuration conf = new Configuration(false);
+        conf.setBoolean(FS_STATISTICS_STRIPED_KEY, true);
+        conf.setBoolean(String.format(FS_STATISTICS_STRIPED_SCHEME_KEY, "hdfs"), false);
+        assertFalse(AbstractFileSystem.getStatistics(
+                URI.create("hdfs://scheme-off:8020/"), conf).isStriped());
+        assertTrue(AbstractFileSystem.getStatistics(
+                URI.create("ftp://scheme-off/"), conf).isStriped());
+
+        conf = new Configuration(false);
+        conf.setBoolean(String.format(FS_STATISTICS_STRIPED_SCHEME_KEY, "ftp"), true);
+        assertTrue(AbstractFileSystem.getStatistics(
+                URI.create("ftp://scheme-on/"), conf).isStriped());
+        assertFalse(AbstractFileSystem.getStatistics(
+                URI.create("hdfs://scheme-on:8020/"), conf).isStriped());
+    }
+
+    @Test
+    public void testFirstConfigurationDecides() {
+        Configuration striped = new Configuration(false);
+        striped.setBoolean(FS_STATISTICS_STRIPED_KEY, true);
+        URI uri = URI.create("hdfs://first-wins:8020/");
+        FileSystem.Statistics stats = AbstractFileSystem.getStatistics(uri, striped);
+        assertSame(stats, AbstractFileSystem.getStatistics(uri, new Configuration(false)));
+        assertTrue(stats.isStriped());
+    }
+}
@@ -0,0 +1,159 @@
+package org.apache.hadoop.fs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem.Statistics;
+import org.apache.hadoop.fs.FileSystem.Statistics.StatisticsData;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.FS_STATISTICS_STRIPED_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that striped statistics count like the per-thread ones: totals of
+ * concurrent increments, reset, copies and the string form.
+ */
+public class TestStripedStatistics {
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 10000;
+
+    private static Statistics newStatistics(boolean striped) {
+        Configuration conf = new Configuration(false);
+        conf.setBoolean(FS_STATISTICS_STRIPED_KEY, striped);
+        Statistics stats = new Statistics("test", conf);
+        assertEquals(striped, stats.isStriped());
+        return stats;
+    }
+
+    /** One round of every kind of increment. */
+    private static void increment(Statistics stats) {
+        stats.incrementBytesRead(3);
+        stats.incrementBytesWritten(5);
+        stats.incrementReadOps(1);
+        stats.incrementLargeReadOps(1);
+        stats.incrementWriteOps(2);
+        stats.incrementBytesReadErasureCoded(7);
+        stats.incrementBytesReadByDistance(0, 1);
+        stats.incrementBytesReadByDistance(2, 2);
+        stats.incrementBytesReadByDistance(4, 4);
+        stats.incrementBytesReadByDistance(6, 8);
+    }
+
+    private static void assertRounds(long rounds, StatisticsData data) {
+        assertEquals(3 * rounds, data.getBytesRead());
+        assertEquals(5 * rounds, data.getBytesWritten());
+        assertEquals(rounds, data.getReadOps());
+        assertEquals(rounds, data.getLargeReadOps());
+        assertEquals(2 * rounds, data.getWriteOps());
+        assertEquals(7 * rounds, data.getBytesReadErasureCoded());
+        assertEquals(rounds, data.getBytesReadLocalHost());
+        assertEquals(2 * rounds, data.getBytesReadDistanceOfOneOrTwo());
+        assertEquals(4 * rounds, data.getBytesReadDistanceOfThreeOrFour());
+        assertEquals(8 * rounds, data.getBytesReadDistanceOfFiveOrLarger());
+    }
+
+    private static void assertRounds(long rounds, Statistics stats) {
+        assertRounds(rounds, stats.getData());
+        assertEquals(3 * rounds, stats.getBytesRead());
+        assertEquals(5 * rounds, stats.getBytesWritten());
+        // read ops include the large ones
+        assertEquals(2 * rounds, stats.getReadOps());
+        assertEquals(rounds, stats.getLargeReadOps());
+        assertEquals(2 * rounds, stats.getWriteOps());
+        assertEquals(7 * rounds, stats.getBytesReadErasureCoded());
+        assertEquals(rounds, stats.getBytesReadByDistance(0));
+        assertEquals(8 * rounds, stats.getBytesReadByDistance(5));
+    }
+
+    @Test
+    public void testConcurrentIncrementsAreSummed() throws Exception {
+        final Statistics stats = newStatistics(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < INCREMENTS; i++) {
+                    increment(stats);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertRounds((long) THREADS * INCREMENTS, stats);
+        // no per-thread counts: the thread statistics are the totals
+        assertRounds((long) THREADS * INCREMENTS, stats.getThreadStatistics());
+    }
+
+    @Test
+    public void testReset() {
+        Statistics stats = newStatistics(true);
+        for (int i = 0; i < 10; i++) {
+            increment(stats);
+        }
+        stats.reset();
+        assertRounds(0, stats);
+        increment(stats);
+        assertRounds(1, stats);
+    }
+
+    @Test
+    public void testCopyConstructor() {
+        Statistics stats = newStatistics(true);
+        for (int i = 0; i < 10; i++) {
+            increment(stats);
+        }
+        Statistics copy = new Statistics(stats);
+        assertTrue(copy.isStriped());
+        assertEquals(stats.getScheme(), copy.getScheme());
+        assertRounds(10, copy);
+        // the copy counts on its own
+        increment(stats);
+        assertRounds(10, copy);
+        increment(copy);
+        increment(copy);
+        assertRounds(12, copy);
+        assertRounds(11, stats);
+    }
+
+    @Test
+    public void testMatchesPerThreadStatistics() throws Exception {
+        Statistics striped = newStatistics(true);
+        Statistics perThread = newStatistics(false);
+        assertEquals(perThread.toString(), striped.toString());
+        for (Statistics stats : new Statistics[]{striped, perThread}) {
+            increment(stats);
+            Thread other = new Thread(() -> increment(stats));
+            other.start();
+            other.join();
+        }
+        assertEquals(perThread.toString(), striped.toString());
+        assertEquals(perThread.getData().toString(), striped.getData().toString());
+        assertEquals(perThread.getBytesRead(), striped.getBytesRead());
+        assertEquals(perThread.getBytesWritten(), striped.getBytesWritten());
+        for (int distance = 0; distance < 6; distance++) {
+            assertEquals(perThread.getBytesReadByDistance(distance),
+                    striped.getBytesReadByDistance(distance));
+        }
+        assertRounds(2, perThread);
+        assertRounds(2, striped);
+
+        perThread.reset();
+        striped.reset();
+        assertEquals(perThread.toString(), striped.toString());
+        assertEquals(0, striped.getBytesRead());
+    }
+}
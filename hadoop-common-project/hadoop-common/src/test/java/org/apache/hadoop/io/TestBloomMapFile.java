@@ -0,0 +1,162 @@
+package org.apache.hadoop.io;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Hash;
+import org.apache.hadoop.util.JenkinsHash;
+import org.apache.hadoop.util.bloom.DynamicBloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that bloom map files written with the Jenkins hash, the hash type
+ * of older files, keep their filter, and that a filter of an unknown hash
+ * type falls back to the plain map file.
+ */
+public class TestBloomMapFile {
+    private static final int KEYS=100;
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        conf = new Configuration();
+        dir = new Path(System.getProperty("test.build.data", "target/test/data"),
+                "TestBloomMapFile");
+        fs = dir.getFileSystem(conf);
+        fs.delete(dir, true);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fs.delete(dir, true);
+    }
+
+    @Test
+    public void testJenkinsHashMatchesLookup3() {
+        byte[] bytes = "Four score and seven years ago".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xdeadbeef, JenkinsHash.getInstance().hash(new byte[0], 0, 0, 0));
+        assertEquals(0x17770551, JenkinsHash.getInstance().hash(bytes, 0, bytes.length, 0));
+        assertEquals(0xcd628161, JenkinsHash.getInstance().hash(bytes, 0, bytes.length, 1));
+        assertEquals(Hash.JENKINS_HASH, Hash.parseHashType("jenkins"));
+    }
+
+    @Test
+    public void testReadJenkinsHashFile() throws IOException {
+        conf.set(CommonConfigurationKeysPublic.HADOOP_UTIL_HASH_TYPE_KEY, "jenkins");
+        writeMapFile();
+        BloomMapFile.Reader reader = new BloomMapFile.Reader(dir, conf);
+        try {
+            assertNotNull("filter of a jenkins hash file", reader.getBloomFilter());
+            Text value = new Text();
+            for (int i = 0; i < KEYS; i++) {
+                assertTrue(reader.probablyHashKey(new IntWritable(2 * i)));
+                assertNotNull(reader.get(new IntWritable(2 * i), value));
+                assertEquals("v" + 2 * i, value.toString());
+            }
+            int rejected = 0;
+            for (int i = 0; i < KEYS; i++) {
+                if (!reader.probablyHashKey(new IntWritable(2 * i + 1))) {
+                    rejected++;
+                }
+            }
+            assertTrue("absent keys rejected: " + rejected, rejected > KEYS / 2);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testReadLegacyJenkinsHashFilter() throws IOException {
+        writeMapFile();
+        // the layout before hash types were recorded: nbHash comes first
+        DynamicBloomFilter filter = new DynamicBloomFilter(1024, 5, Hash.JENKINS_HASH, KEYS);
+        filter.add(new Key(new byte[]{1, 2, 3}));
+        DataOutputBuffer buf = new DataOutputBuffer();
+        filter.writer(buf);
+        DataOutputStream out = fs.create(new Path(dir, BloomMapFile.BLOOM_FILE_NAME), true);
+        try {
+            out.writeInt(5);
+            // drop VERSION, nbHash and the hash type byte of the new layout
+            out.write(buf.getData(), 9, buf.getLength() - 9);
+        } finally {
+            out.close();
+        }
+        BloomMapFile.Reader reader = new BloomMapFile.Reader(dir, conf);
+        try {
+            assertNotNull(reader.getBloomFilter());
+            assertTrue(reader.getBloomFilter().membershipTest(new Key(new byte[]{1, 2, 3})));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testUnknownHashTypeFallsBackToMapFile() throws IOException {
+        writeMapFile();
+        DataOutputStream out = fs.create(new Path(dir, BloomMapFile.BLOOM_FILE_NAME), true);
+        try {
+            out.writeInt(-1);
+            out.writeInt(5);
+            out.writeByte(42);
+            out.writeInt(1024);
+        } finally {
+            out.close();
+        }
+        BloomMapFile.Reader reader = new BloomMapFile.Reader(dir, conf);
+        try {
+            assertNull(reader.getBloomFilter());
+            Text value = new Text();
+            assertNotNull(reader.get(new IntWritable(0), value));
+            assertNull(reader.get(new IntWritable(1), value));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testFilterRejectsUnknownHashType() {
+        DataOutputBuffer out = new DataOutputBuffer();
+        try {
+            out.writeInt(-1);
+            out.writeInt(5);
+            out.writeByte(42);
+            out.writeInt(1024);
+            DataInputBuffer in = new DataInputBuffer();
+            in.reset(out.getData(), out.getLength());
+            new DynamicBloomFilter().readFields(in);
+            fail("unknown hash type accepted");
+        } catch (IOException e) {
+            assertFalse(e.getMessage().isEmpty());
+        }
+    }
+
+    private void writeMapFile() throws IOException {
+        BloomMapFile.Writer writer = new BloomMapFile.Writer(conf, fs, dir.toString(),
+                IntWritable.class, Text.class);
+        try {
+            for (int i = 0; i < KEYS; i++) {
+                writer.append(new IntWritable(2 * i), new Text("v" + 2 * i));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
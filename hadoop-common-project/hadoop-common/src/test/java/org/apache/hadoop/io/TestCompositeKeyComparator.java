@@ -0,0 +1,152 @@
+package org.apache.hadoop.io;
+
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the raw comparator derived from {@link CompositeKey} orders
+ * serialized keys the way their {@code compareTo} orders the objects.
+ */
+public class TestCompositeKeyComparator {
+    private static final long[] VLONGS = {
+            0, -1, 1, -112, -113, 127, 128, Long.MIN_VALUE, Long.MAX_VALUE
+    };
+    private static final String[] TEXTS = {"", "a", "ab", "b", "\u00e9", "\ud83d\ude00"};
+
+    /** A key with one field of every kind. */
+    @CompositeKey({CompositeKey.Field.TEXT, CompositeKey.Field.VLONG, CompositeKey.Field.INT,
+            CompositeKey.Field.LONG, CompositeKey.Field.VINT, CompositeKey.Field.BYTES})
+    public static class MixedKey implements WritableComparable<MixedKey> {
+        private final Text text = new Text();
+        private final VLongWritable vlong = new VLongWritable();
+        private final IntWritable i = new IntWritable();
+        private final LongWritable l = new LongWritable();
+        private final VIntWritable vint = new VIntWritable();
+        private final BytesWritable bytes = new BytesWritable();
+
+        @Override
+        public void writer(DataOutput out) throws IOException {
+            text.writer(out);
+            vlong.writer(out);
+            i.writer(out);
+            l.writer(out);
+            vint.writer(out);
+            bytes.writer(out);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            text.readFields(in);
+            vlong.readFields(in);
+            i.readFields(in);
+            l.readFields(in);
+            vint.readFields(in);
+            bytes.readFields(in);
+        }
+
+        @Override
+        public int compareTo(MixedKey o) {
+            int c = text.compareTo(o.text);
+            if (c == 0) {
+                c = vlong.compareTo(o.vlong);
+            }
+            if (c == 0) {
+                c = i.compareTo(o.i);
+            }
+            if (c == 0) {
+                c = l.compareTo(o.l);
+            }
+            if (c == 0) {
+                c = vint.compareTo(o.vint);
+            }
+            if (c == 0) {
+                c = bytes.compareTo(o.bytes);
+            }
+            return c;
+        }
+
+        @Override
+        public String toString() {
+            return text + "," + vlong + "," + i + "," + l + "," + vint + "," + bytes;
+        }
+    }
+
+    @Test
+    public void testComparatorIsDerived() {
+        WritableComparator comparator = WritableComparator.get(MixedKey.class);
+        assertTrue(comparator instanceof CompositeKeyComparator);
+    }
+
+    @Test
+    public void testAgreesWithCompareTo() throws IOException {
+        WritableComparator comparator = WritableComparator.get(MixedKey.class);
+        Random random = new Random(0x5eed);
+        MixedKey[] keys = new MixedKey[500];
+        byte[][] serialized = new byte[keys.length][];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = randomKey(random);
+            serialized[k] = serialize(keys[k]);
+        }
+        for (int a = 0; a < keys.length; a++) {
+            for (int b = 0; b < keys.length; b++) {
+                int expected = Integer.signum(keys[a].compareTo(keys[b]));
+                // the keys are placed at an offset to check the start is honoured
+                byte[] b1 = withPrefix(serialized[a], a % 3);
+                byte[] b2 = withPrefix(serialized[b], b % 5);
+                int actual = Integer.signum(comparator.compare(b1, a % 3, serialized[a].length,
+                        b2, b % 5, serialized[b].length));
+                assertEquals(keys[a] + " vs " + keys[b], expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedKeyIsRejected() throws IOException {
+        WritableComparator comparator = WritableComparator.get(MixedKey.class);
+        MixedKey key = randomKey(new Random(1));
+        key.bytes.setSize(0);
+        byte[] full = serialize(key);
+        // cuts into the length of the last field
+        byte[] truncated = Arrays.copyOf(full, full.length - 1);
+        try {
+            comparator.compare(truncated, 0, truncated.length, full, 0, full.length);
+            fail("truncated key compared");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /** Draws fields from small domains so that ties on earlier fields are common. */
+    private static MixedKey randomKey(Random random) {
+        MixedKey key = new MixedKey();
+        key.text.set(TEXTS[random.nextInt(TEXTS.length)]);
+        key.vlong.set(VLONGS[random.nextInt(VLONGS.length)]);
+        key.i.set(random.nextInt(5) - 2);
+        key.l.set(random.nextBoolean() ? random.nextLong() : random.nextInt(3) - 1);
+        key.vint.set(random.nextBoolean() ? random.nextInt() : random.nextInt(300) - 150);
+        byte[] bytes = new byte[random.nextInt(3)];
+        random.nextBytes(bytes);
+        key.bytes.set(bytes, 0, bytes.length);
+        return key;
+    }
+
+    private static byte[] serialize(MixedKey key) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        key.writer(out);
+        return Arrays.copyOf(out.getData(), out.getLength());
+    }
+
+    private static byte[] withPrefix(byte[] bytes, int prefix) {
+        byte[] result = new byte[prefix + bytes.length];
+        System.arraycopy(bytes, 0, result, prefix, bytes.length);
+        return result;
+    }
+}
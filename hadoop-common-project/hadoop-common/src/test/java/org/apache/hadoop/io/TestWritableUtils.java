@@ -0,0 +1,82 @@
+package org.apache.hadoop.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the zero-compressed long format at the boundaries of its encoded
+ * sizes: values from -112 to 127 take one byte, all others a length byte
+ * followed by the big endian bytes.
+ */
+public class TestWritableUtils {
+    private static final long[] VALUES = {
+            0, -1, 1, -112, -113, 127, 128, -256, -257, 255, 256,
+            Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE
+    };
+
+    @Test
+    public void testOneByteBoundaries() throws IOException {
+        assertArrayEquals(new byte[]{-112}, encode(-112));
+        assertArrayEquals(new byte[]{-121, 112}, encode(-113));
+        assertArrayEquals(new byte[]{127}, encode(127));
+        assertArrayEquals(new byte[]{-113, (byte) 128}, encode(128));
+        assertEquals(9, encode(Long.MIN_VALUE).length);
+        assertEquals(9, encode(Long.MAX_VALUE).length);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (long value : VALUES) {
+            byte[] encoded = encode(value);
+            String what = "value " + value;
+            assertEquals(what, WritableUtils.getVIntSize(value), encoded.length);
+            assertEquals(what, encoded.length, WritableUtils.decodeVIntSize(encoded[0]));
+            assertEquals(what, value < 0, WritableUtils.isNegativeVInt(encoded[0]));
+
+            // the buffer fast path writes the same bytes as the stream path
+            DataOutputBuffer buffer = new DataOutputBuffer();
+            WritableUtils.writeVLong(buffer, value);
+            assertArrayEquals(what, encoded, Arrays.copyOf(buffer.getData(), buffer.getLength()));
+
+            assertEquals(what, value, WritableUtils.readVLong(
+                    new DataInputStream(new ByteArrayInputStream(encoded))));
+            DataInputBuffer in = new DataInputBuffer();
+            in.reset(encoded, encoded.length);
+            assertEquals(what, value, WritableUtils.readVLong(in));
+            assertEquals(what, value, WritableUtils.decodeVLong(encoded, 0));
+            assertEquals(what, value, WritableComparator.readVLong(encoded, 0));
+        }
+    }
+
+    @Test
+    public void testVIntRoundTrip() throws IOException {
+        for (long value : VALUES) {
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                continue;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WritableUtils.writeVInt(new DataOutputStream(bytes), (int) value);
+            byte[] encoded = bytes.toByteArray();
+            assertArrayEquals(encode(value), encoded);
+            assertEquals(value, WritableUtils.readVInt(
+                    new DataInputStream(new ByteArrayInputStream(encoded))));
+            assertEquals(value, WritableComparator.readVInt(encoded, 0));
+        }
+    }
+
+    /** Encode through the generic stream path. */
+    private static byte[] encode(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableUtils.writeVLong(new DataOutputStream(bytes), value);
+        return bytes.toByteArray();
+    }
+}